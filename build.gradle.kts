@@ -2,6 +2,7 @@ plugins {
     java
     `maven-publish`
     id("com.github.johnrengelman.shadow").version("7.1.0")
+    id("me.champeau.jmh").version("0.6.6")
 }
 
 group = "ru.ckateptb"
@@ -19,22 +20,61 @@ repositories {
     maven("https://hub.spigotmc.org/nexus/content/repositories/snapshots/")
 }
 
+sourceSets {
+    // VectorBatchKernel uses the incubating Vector API. It is compiled on its own so only it needs the module flag and
+    // prints the incubator warning, BatchIntersections loads it reflectively and falls back when it's missing
+    create("vector") {
+        compileClasspath += main.get().output + main.get().compileClasspath
+    }
+}
+
 dependencies {
     compileOnly("org.spigotmc:spigot-api:1.18-R0.1-SNAPSHOT")
     compileOnly("org.projectlombok", "lombok", "1.18.22")
     annotationProcessor("org.projectlombok", "lombok", "1.18.22")
+    jmh("org.spigotmc:spigot-api:1.18-R0.1-SNAPSHOT")
+    jmhRuntimeOnly(sourceSets["vector"].output)
+    testImplementation("org.spigotmc:spigot-api:1.18-R0.1-SNAPSHOT")
+    testImplementation("org.junit.jupiter:junit-jupiter:5.8.2")
+    testRuntimeOnly(sourceSets["vector"].output)
+}
+
+jmh {
+    // Run with ./gradlew jmh, results land in build/results/jmh
+    benchmarkMode.set(listOf("thrpt"))
+    profilers.set(listOf("gc"))
+    resultFormat.set("JSON")
+    fork.set(1)
+    warmupIterations.set(3)
+    iterations.set(5)
+    jvmArgs.addAll(listOf("--add-modules", "jdk.incubator.vector"))
 }
 
 tasks {
+    jar {
+        from(sourceSets["vector"].output)
+    }
     shadowJar {
         archiveFileName.set("${project.name}-${project.version}.${archiveExtension.getOrElse("jar")}")
+        from(sourceSets["vector"].output)
+    }
+    named<Jar>("sourcesJar") {
+        from(sourceSets["vector"].allSource)
     }
     build {
         dependsOn(shadowJar)
     }
+    test {
+        useJUnitPlatform()
+        // Lets the batch tests compare the vector kernel with the scalar one
+        jvmArgs("--add-modules", "jdk.incubator.vector")
+    }
     withType<JavaCompile> {
         options.encoding = "UTF-8"
     }
+    named<JavaCompile>("compileVectorJava") {
+        options.compilerArgs.addAll(listOf("--add-modules", "jdk.incubator.vector"))
+    }
     named<Copy>("processResources") {
         from("LICENSE") {
             rename { "${project.name.toUpperCase()}_${it}" }
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.ckateptb.caught.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import ru.ckateptb.caught.math.BatchIntersections;
+import ru.ckateptb.caught.math.Intersections;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Batch kernel against a loop of scalar tests over the same boxes. Run with -Dcaught.simd=false to measure the
+ * scalar fallback of the kernel.
+ */
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BatchIntersectionBenchmark {
+    @Param({"64", "4096"})
+    public int count;
+
+    private double[] minX;
+    private double[] minY;
+    private double[] minZ;
+    private double[] maxX;
+    private double[] maxY;
+    private double[] maxZ;
+    private long[] result;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(count);
+        minX = new double[count];
+        minY = new double[count];
+        minZ = new double[count];
+        maxX = new double[count];
+        maxY = new double[count];
+        maxZ = new double[count];
+        result = new long[BatchIntersections.words(count)];
+        for (int i = 0; i < count; i++) {
+            minX[i] = random.nextDouble() * 64 - 32;
+            minY[i] = random.nextDouble() * 16;
+            minZ[i] = random.nextDouble() * 64 - 32;
+            maxX[i] = minX[i] + 0.6;
+            maxY[i] = minY[i] + 1.8;
+            maxZ[i] = minZ[i] + 0.6;
+        }
+    }
+
+    @Benchmark
+    public int sphereBatch() {
+        return BatchIntersections.sphereIntersectsAabbs(0, 8, 0, 6, minX, minY, minZ, maxX, maxY, maxZ, count, result);
+    }
+
+    @Benchmark
+    public int sphereLoop() {
+        int hits = 0;
+        for (int i = 0; i < count; i++) {
+            if (Intersections.sphereIntersectsAabb(0, 8, 0, 6, minX[i], minY[i], minZ[i], maxX[i], maxY[i], maxZ[i])) hits++;
+        }
+        return hits;
+    }
+
+    @Benchmark
+    public int aabbBatch() {
+        return BatchIntersections.aabbIntersectsAabbs(-6, 2, -6, 6, 14, 6, minX, minY, minZ, maxX, maxY, maxZ, count, result);
+    }
+
+    @Benchmark
+    public int rayBatch() {
+        return BatchIntersections.rayIntersectsAabbs(-32, 8, -32, 0.7, 0.1, 0.7, 90, 0.5, minX, minY, minZ, maxX, maxY, maxZ, count, result);
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.ckateptb.caught.benchmark;
+
+import org.bukkit.util.Vector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import ru.ckateptb.caught.Collider;
+import ru.ckateptb.caught.block.BlockScan;
+import ru.ckateptb.caught.callback.BlockShapeCallback;
+import ru.ckateptb.caught.callback.CollisionCallbackResult;
+
+import java.util.concurrent.TimeUnit;
+
+import static ru.ckateptb.caught.benchmark.Shapes.*;
+
+/**
+ * Block collision scan of colliders resting on the terrain surface of a {@link SyntheticWorld}.
+ */
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BlockScanBenchmark {
+    @Param({AABB, SPHERE, OBB, CAPSULE, CYLINDER, COMPOSITE})
+    public String shape;
+    @Param({"0.5", "2", "6"})
+    public double size;
+
+    private SyntheticWorld world;
+    private Collider collider;
+    private BlockShapeCallback callback;
+    private int hits;
+
+    @Setup
+    public void setup() {
+        world = new SyntheticWorld("scan");
+        collider = Shapes.create(shape, world.getWorld(), new Vector(0.5, SyntheticWorld.GROUND + 1.5, 0.5), size);
+        callback = (x, y, z, blockShape) -> {
+            hits++;
+            return CollisionCallbackResult.CONTINUE;
+        };
+    }
+
+    @Benchmark
+    public int scan() {
+        hits = 0;
+        BlockScan.scan(collider, SyntheticWorld.MIN_HEIGHT, SyntheticWorld.MAX_HEIGHT, world, true, false, callback);
+        return hits;
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.ckateptb.caught.benchmark;
+
+import org.bukkit.util.Vector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import ru.ckateptb.caught.Collider;
+import ru.ckateptb.caught.math.ImmutableVector;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static ru.ckateptb.caught.benchmark.Shapes.*;
+
+/**
+ * Point containment of every shape, for points inside and around its bounds.
+ */
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ContainsBenchmark {
+    private static final int POINTS = 64;
+
+    @Param({AABB, SPHERE, OBB, RAY, CAPSULE, CYLINDER, DISK, COMPOSITE})
+    public String shape;
+
+    private Collider collider;
+    private final ImmutableVector[] points = new ImmutableVector[POINTS];
+    private int index;
+
+    @Setup
+    public void setup() {
+        collider = Shapes.create(shape, new SyntheticWorld("contains").getWorld(), new Vector(0, 0, 0), 1);
+        Random random = new Random(POINTS);
+        for (int i = 0; i < POINTS; i++) {
+            points[i] = new ImmutableVector(random.nextDouble() * 3 - 1.5, random.nextDouble() * 3 - 1.5, random.nextDouble() * 3 - 1.5);
+        }
+    }
+
+    @Benchmark
+    public boolean contains() {
+        return collider.contains(points[index++ & (POINTS - 1)]);
+    }
+}
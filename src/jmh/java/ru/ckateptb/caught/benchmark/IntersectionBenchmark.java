@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.ckateptb.caught.benchmark;
+
+import org.bukkit.World;
+import org.bukkit.util.Vector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import ru.ckateptb.caught.Collider;
+
+import java.util.concurrent.TimeUnit;
+
+import static ru.ckateptb.caught.benchmark.Shapes.*;
+
+/**
+ * Every shape pair of the intersection matrix, against targets spread so that about half of the tests hit.
+ */
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class IntersectionBenchmark {
+    private static final int TARGETS = 8;
+
+    @Param({AABB, SPHERE, OBB, RAY, CAPSULE, CYLINDER, DISK, COMPOSITE})
+    public String first;
+    @Param({AABB, SPHERE, OBB, RAY, CAPSULE, CYLINDER, DISK, COMPOSITE})
+    public String second;
+
+    private Collider collider;
+    private final Collider[] targets = new Collider[TARGETS];
+    private int index;
+
+    @Setup
+    public void setup() {
+        World world = new SyntheticWorld("intersection").getWorld();
+        collider = Shapes.create(first, world, new Vector(0, 0, 0), 1);
+        for (int i = 0; i < TARGETS; i++) {
+            double angle = Math.PI * 2 * i / TARGETS;
+            double distance = 0.5 + i * 0.5;
+            targets[i] = Shapes.create(second, world, new Vector(Math.cos(angle) * distance, (i % 3 - 1) * 0.5, Math.sin(angle) * distance), 1);
+        }
+    }
+
+    @Benchmark
+    public boolean intersects() {
+        return collider.intersects(targets[index++ & (TARGETS - 1)]);
+    }
+}
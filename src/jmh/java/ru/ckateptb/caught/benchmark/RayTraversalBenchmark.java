@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.ckateptb.caught.benchmark;
+
+import org.bukkit.util.Vector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import ru.ckateptb.caught.block.BlockScan;
+import ru.ckateptb.caught.callback.CollisionCallbackResult;
+import ru.ckateptb.caught.callback.RayBlockCallback;
+import ru.ckateptb.caught.callback.VoxelCallback;
+import ru.ckateptb.caught.collider.RayCollider;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Voxel walk of rays flying just above the terrain of a {@link SyntheticWorld}, so they travel their whole length.
+ */
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RayTraversalBenchmark {
+    @Param({"8", "32", "128"})
+    public double length;
+    @Param({"0", "0.5"})
+    public double raySize;
+
+    private SyntheticWorld world;
+    private RayCollider ray;
+    private VoxelCallback voxelCallback;
+    private RayBlockCallback blockCallback;
+    private int voxels;
+
+    @Setup
+    public void setup() {
+        world = new SyntheticWorld("ray");
+        ray = new RayCollider(world.getWorld(), new Vector(0.3, SyntheticWorld.GROUND + 6.2, 0.1), new Vector(0.6, 0.01, 0.8), length, raySize);
+        voxelCallback = (x, y, z, distance, face) -> {
+            voxels++;
+            return CollisionCallbackResult.CONTINUE;
+        };
+        blockCallback = (x, y, z, shape, distance, face) -> CollisionCallbackResult.END;
+    }
+
+    @Benchmark
+    public int traverse() {
+        voxels = 0;
+        ray.traverseVoxels(voxelCallback);
+        return voxels;
+    }
+
+    @Benchmark
+    public boolean cast() {
+        return BlockScan.cast(ray, SyntheticWorld.MIN_HEIGHT, SyntheticWorld.MAX_HEIGHT, world, true, true, false, blockCallback);
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.ckateptb.caught.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import ru.ckateptb.caught.math.ImmutableVector;
+import ru.ckateptb.caught.math.Rotation;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RotationBenchmark {
+    private static final int BUFFER = 256;
+
+    private Rotation rotation;
+    private Rotation other;
+    private ImmutableVector vector;
+    private final double[] in = {0.3, -1.2, 2.5};
+    private final double[] out = new double[3];
+    private final double[] x = new double[BUFFER];
+    private final double[] y = new double[BUFFER];
+    private final double[] z = new double[BUFFER];
+
+    @Setup
+    public void setup() {
+        rotation = new Rotation(new ImmutableVector(0.3, 1, 0.2), 0.6);
+        other = new Rotation(new ImmutableVector(1, 0, 0), 1.1);
+        vector = new ImmutableVector(in);
+        for (int i = 0; i < BUFFER; i++) {
+            x[i] = Math.cos(i);
+            y[i] = Math.sin(i);
+            z[i] = i * 0.01;
+        }
+    }
+
+    @Benchmark
+    public ImmutableVector applyToVector() {
+        return rotation.applyTo(vector);
+    }
+
+    @Benchmark
+    public double[] applyToArray() {
+        rotation.applyTo(in, out);
+        return out;
+    }
+
+    @Benchmark
+    public ImmutableVector applyInverseToVector() {
+        return rotation.applyInverseTo(vector);
+    }
+
+    @Benchmark
+    public Rotation compose() {
+        return rotation.applyTo(other);
+    }
+
+    @Benchmark
+    public double[][] matrix() {
+        return rotation.getMatrix();
+    }
+
+    @Benchmark
+    public double[] applyToBuffer() {
+        rotation.applyTo(x, y, z, 0, BUFFER, 0.5, 0, -0.5);
+        return x;
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.ckateptb.caught.benchmark;
+
+import org.bukkit.World;
+import org.bukkit.util.Vector;
+import ru.ckateptb.caught.Collider;
+import ru.ckateptb.caught.collider.AxisAlignedBoundingBoxCollider;
+import ru.ckateptb.caught.collider.CapsuleCollider;
+import ru.ckateptb.caught.collider.CompositeCollider;
+import ru.ckateptb.caught.collider.CylinderCollider;
+import ru.ckateptb.caught.collider.DiskCollider;
+import ru.ckateptb.caught.collider.OrientedBoundingBoxCollider;
+import ru.ckateptb.caught.collider.RayCollider;
+import ru.ckateptb.caught.collider.SphereCollider;
+import ru.ckateptb.caught.math.ImmutableVector;
+
+/**
+ * Builds a collider of every shape type around a center, each roughly {@code 2 * size} wide.
+ */
+final class Shapes {
+    static final String AABB = "AABB";
+    static final String SPHERE = "SPHERE";
+    static final String OBB = "OBB";
+    static final String RAY = "RAY";
+    static final String CAPSULE = "CAPSULE";
+    static final String CYLINDER = "CYLINDER";
+    static final String DISK = "DISK";
+    static final String COMPOSITE = "COMPOSITE";
+
+    private static final ImmutableVector TILT = new ImmutableVector(0.3, 1, 0.2).normalize();
+
+    private Shapes() {
+    }
+
+    static Collider create(String type, World world, Vector center, double size) {
+        ImmutableVector half = new ImmutableVector(size, size, size);
+        return switch (type) {
+            case AABB -> new AxisAlignedBoundingBoxCollider(world, half.multiply(-1), half).at(center);
+            case SPHERE -> new SphereCollider(world, center, size);
+            case OBB -> new OrientedBoundingBoxCollider(new AxisAlignedBoundingBoxCollider(world, half.multiply(-1), half), TILT, 0.6).at(center);
+            case RAY -> new RayCollider(world, new ImmutableVector(center).subtract(TILT.multiply(size)), TILT, 2 * size, 0);
+            case CAPSULE -> new CapsuleCollider(world, new ImmutableVector(center).subtract(TILT.multiply(size / 2)),
+                    new ImmutableVector(center).add(TILT.multiply(size / 2)), size / 2);
+            case CYLINDER -> new CylinderCollider(world, center, TILT, size, size * 0.6);
+            case DISK -> {
+                ImmutableVector thin = new ImmutableVector(size, 0.1, size);
+                OrientedBoundingBoxCollider box = new OrientedBoundingBoxCollider(new AxisAlignedBoundingBoxCollider(world, thin.multiply(-1), thin), TILT, 0.6).at(center);
+                yield new DiskCollider(world, box, new SphereCollider(world, center, size));
+            }
+            case COMPOSITE -> {
+                Collider[] children = new Collider[6];
+                for (int i = 0; i < children.length; i++) {
+                    double angle = Math.PI * 2 * i / children.length;
+                    Vector offset = new Vector(Math.cos(angle) * size * 0.7, (i % 2 - 0.5) * size, Math.sin(angle) * size * 0.7);
+                    children[i] = create(i % 2 == 0 ? SPHERE : AABB, world, center.clone().add(offset), size * 0.3);
+                }
+                yield new CompositeCollider(world, center, children);
+            }
+            default -> throw new IllegalArgumentException("Unknown shape " + type);
+        };
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.ckateptb.caught.benchmark;
+
+import org.bukkit.World;
+import org.bukkit.block.data.BlockData;
+import ru.ckateptb.caught.block.BlockShape;
+import ru.ckateptb.caught.block.BlockShapeSource;
+
+import java.lang.reflect.Proxy;
+
+/**
+ * In-memory world for benchmarks, no server needed: a bumpy stone terrain topped with slabs and water.
+ */
+final class SyntheticWorld implements BlockShapeSource {
+    static final int MIN_HEIGHT = -64;
+    static final int MAX_HEIGHT = 320;
+    static final int GROUND = 64;
+
+    private final World world;
+
+    SyntheticWorld(String name) {
+        this.world = (World) Proxy.newProxyInstance(World.class.getClassLoader(), new Class<?>[]{World.class}, (proxy, method, args) -> switch (method.getName()) {
+            case "equals" -> proxy == args[0];
+            case "hashCode" -> System.identityHashCode(proxy);
+            case "toString", "getName" -> name;
+            case "getMinHeight" -> MIN_HEIGHT;
+            case "getMaxHeight" -> MAX_HEIGHT;
+            default -> throw new UnsupportedOperationException(method.getName());
+        });
+    }
+
+    World getWorld() {
+        return world;
+    }
+
+    @Override
+    public BlockShape getShape(int x, int y, int z) {
+        int hash = hash(x, z);
+        int height = GROUND + (hash & 3);
+        if (y < height) return BlockShape.FULL;
+        if (y > height) return BlockShape.EMPTY;
+        return switch ((hash >>> 2) & 7) {
+            case 0 -> BlockShape.BOTTOM_SLAB;
+            case 1 -> BlockShape.TOP_SLAB;
+            case 2 -> BlockShape.LIQUID;
+            default -> BlockShape.EMPTY;
+        };
+    }
+
+    /**
+     * Shapes are generated directly, there is no block state to read.
+     */
+    @Override
+    public BlockData getBlockData(int x, int y, int z) {
+        return null;
+    }
+
+    private static int hash(int x, int z) {
+        int h = x * 0x45D9F3B ^ z * 0x119DE1F3;
+        h ^= h >>> 16;
+        return h * 0x45D9F3B;
+    }
+}
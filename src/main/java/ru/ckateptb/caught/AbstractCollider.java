@@ -22,7 +22,6 @@ import lombok.Setter;
 import org.bukkit.Location;
 import org.bukkit.World;
 import org.bukkit.util.Vector;
-import ru.ckateptb.caught.math.ImmutableVector;
 
 @Getter
 @Setter
@@ -35,7 +34,7 @@ public abstract class AbstractCollider implements Collider {
 
     @Override
     public boolean contains(Vector point) {
-        return contains(new ImmutableVector(point));
+        return contains(point.getX(), point.getY(), point.getZ());
     }
 
     @Override
@@ -45,6 +44,6 @@ public abstract class AbstractCollider implements Collider {
 
     @Override
     public boolean contains(Location location) {
-        return world.equals(location.getWorld()) && contains(location.toVector());
+        return world.equals(location.getWorld()) && contains(location.getX(), location.getY(), location.getZ());
     }
 }
@@ -25,13 +25,22 @@ import org.bukkit.entity.ArmorStand;
 import org.bukkit.entity.Entity;
 import org.bukkit.entity.LivingEntity;
 import org.bukkit.entity.Player;
+import org.bukkit.util.BoundingBox;
 import org.bukkit.util.Vector;
+import ru.ckateptb.caught.block.BlockScan;
+import ru.ckateptb.caught.block.UnloadedChunkPolicy;
+import ru.ckateptb.caught.block.WorldBlockShapeSource;
+import ru.ckateptb.caught.broadphase.EntityBroadphase;
 import ru.ckateptb.caught.callback.BlockCollisionCallback;
 import ru.ckateptb.caught.callback.CollisionCallbackResult;
 import ru.ckateptb.caught.callback.EntityCollisionCallback;
 import ru.ckateptb.caught.callback.PositionCollisionCallback;
 import ru.ckateptb.caught.collider.AxisAlignedBoundingBoxCollider;
+import ru.ckateptb.caught.collider.IntersectionMatrix;
 import ru.ckateptb.caught.math.ImmutableVector;
+import ru.ckateptb.caught.metrics.CollisionMetrics;
+import ru.ckateptb.caught.metrics.CollisionMetricsSink;
+import ru.ckateptb.caught.metrics.CollisionQuery;
 
 import java.util.Objects;
 import java.util.function.Predicate;
@@ -39,6 +48,14 @@ import java.util.function.Predicate;
 public interface Collider {
     boolean intersects(Collider collider);
 
+    /**
+     * @return the id of this shape in the {@link IntersectionMatrix}, custom colliders that handle intersections themselves
+     * may keep {@link IntersectionMatrix#UNKNOWN}
+     */
+    default int getShapeType() {
+        return IntersectionMatrix.UNKNOWN;
+    }
+
     ImmutableVector getPosition();
 
     Location getLocation();
@@ -47,12 +64,30 @@ public interface Collider {
 
     ImmutableVector getHalfExtents();
 
+    /**
+     * @return minimum corner of the world space box enclosing this collider
+     */
+    default ImmutableVector getMin() {
+        return getPosition().subtract(getHalfExtents());
+    }
+
+    /**
+     * @return maximum corner of the world space box enclosing this collider
+     */
+    default ImmutableVector getMax() {
+        return getPosition().add(getHalfExtents());
+    }
+
     boolean contains(Vector point);
 
     boolean contains(ImmutableVector point);
 
     boolean contains(Location location);
 
+    default boolean contains(double x, double y, double z) {
+        return contains(new ImmutableVector(x, y, z));
+    }
+
     World getWorld();
 
     void setWorld(World world);
@@ -79,22 +114,49 @@ public interface Collider {
 
     default boolean handleEntityCollision(boolean livingOnly, boolean armorStandCollision, EntityCollisionCallback callback, Predicate<Entity> filter) {
         World world = getWorld();
-        ImmutableVector halfExtents = getHalfExtents();
-        ImmutableVector position = getPosition();
-        filter = filter.and(entity -> {
-            if (livingOnly && !(entity instanceof LivingEntity)) return false;
-            if (entity instanceof Player player && player.getGameMode() == GameMode.SPECTATOR) return false;
-            return armorStandCollision || (entity instanceof ArmorStand armorStand && Objects.equals(armorStand.getCustomName(), "paralyze|armor|stand"));
-        });
-        for (Entity entity : world.getNearbyEntities(position.toLocation(world), halfExtents.getX(), halfExtents.getY(), halfExtents.getZ(), filter)) {
-            if (intersects(new AxisAlignedBoundingBoxCollider(entity).at(entity.getLocation().toVector()))) {
-                if (callback.onCollision(entity) == CollisionCallbackResult.CONTINUE) {
-                    continue;
+        ImmutableVector min = getMin();
+        ImmutableVector max = getMax();
+        filter = filter.and(entityFilter(livingOnly, armorStandCollision));
+        CollisionMetricsSink sink = CollisionMetrics.getSink();
+        long start = sink == null ? 0 : System.nanoTime();
+        int[] counts = sink == null ? null : new int[2]; // Candidates and hits, only tracked for metrics
+        boolean result = false;
+        EntityBroadphase broadphase = EntityBroadphase.getActive();
+        if (broadphase != null) {
+            result = broadphase.query(world, min, max, filter, (entity, bounds) -> {
+                if (counts != null) counts[0]++;
+                if (!intersects(bounds)) return CollisionCallbackResult.CONTINUE;
+                if (counts != null) counts[1]++;
+                return callback.onCollision(entity);
+            });
+        } else {
+            for (Entity entity : world.getNearbyEntities(BoundingBox.of(min, max), filter)) {
+                if (counts != null) counts[0]++;
+                if (intersects(new AxisAlignedBoundingBoxCollider(entity).at(entity.getLocation().toVector()))) {
+                    if (counts != null) counts[1]++;
+                    if (callback.onCollision(entity) == CollisionCallbackResult.CONTINUE) {
+                        continue;
+                    }
+                    result = true;
+                    break;
                 }
-                return true;
             }
         }
-        return false;
+        if (sink != null) {
+            sink.record(CollisionQuery.ENTITY, getShapeType(), System.nanoTime() - start, counts[0], counts[1], 0);
+        }
+        return result;
+    }
+
+    /**
+     * @return the filter applied to every entity collision query
+     */
+    static Predicate<Entity> entityFilter(boolean livingOnly, boolean armorStandCollision) {
+        return entity -> {
+            if (livingOnly && !(entity instanceof LivingEntity)) return false;
+            if (entity instanceof Player player && player.getGameMode() == GameMode.SPECTATOR) return false;
+            return armorStandCollision || (entity instanceof ArmorStand armorStand && Objects.equals(armorStand.getCustomName(), "paralyze|armor|stand"));
+        };
     }
 
     default boolean handleBlockCollision() {
@@ -126,38 +188,35 @@ public interface Collider {
     }
 
     default boolean handleBlockCollisions(boolean ignorePassable, boolean ignoreLiquids, BlockCollisionCallback callback, Predicate<Block> filter) {
+        return handleBlockCollisions(ignorePassable, ignoreLiquids, UnloadedChunkPolicy.LOAD, callback, filter);
+    }
+
+    default boolean handleBlockCollisions(UnloadedChunkPolicy policy, BlockCollisionCallback callback) {
+        return handleBlockCollisions(true, true, policy, callback, block -> true);
+    }
+
+    /**
+     * @param policy how blocks of unloaded chunks are treated, chunk load state is checked once per block column
+     */
+    default boolean handleBlockCollisions(boolean ignorePassable, boolean ignoreLiquids, UnloadedChunkPolicy policy, BlockCollisionCallback callback, Predicate<Block> filter) {
         World world = getWorld();
-        ImmutableVector position = getPosition();
-        double maxExtent = getHalfExtents().maxComponent();
-        int radius = (int) (Math.ceil(maxExtent) + 1);
-        double originX = position.getX();
-        double originY = position.getY();
-        double originZ = position.getZ();
-        boolean result = false;
-        for (double x = originX - radius; x <= originX + radius; x++) {
-            for (double y = originY - radius; y <= originY + radius; y++) {
-                for (double z = originZ - radius; z <= originZ + radius; z++) {
-                    ImmutableVector loc = new ImmutableVector(x, y, z);
-                    if (position.distance(loc) > radius) {
-                        continue;
-                    }
-                    Block block = loc.toLocation(world).getBlock();
-                    if (block.isPassable()) {
-                        if (block.isLiquid()) {
-                            if (ignoreLiquids) continue;
-                        } else if (ignorePassable) continue;
-                    }
-                    if (filter.test(block)) {
-                        AxisAlignedBoundingBoxCollider collider = new AxisAlignedBoundingBoxCollider(block).at(new ImmutableVector(block));
-                        if (intersects(collider)) {
-                            result = true;
-                            if (callback.onCollision(block) == CollisionCallbackResult.END) return true;
-                        }
-                    }
-                }
-            }
-        }
-        return result;
+        boolean[] result = new boolean[1];
+        BlockScan.scan(this, world.getMinHeight(), world.getMaxHeight(), new WorldBlockShapeSource(world, policy), ignorePassable, ignoreLiquids, (x, y, z, shape) -> {
+            Block block = world.getBlockAt(x, y, z);
+            if (!WorldBlockShapeSource.accepts(filter, shape, block)) return CollisionCallbackResult.CONTINUE;
+            result[0] = true;
+            return callback.onCollision(block);
+        });
+        return result[0];
+    }
+
+    /**
+     * Conservative test used to cull cells before their blocks are looked up.
+     *
+     * @return false only if this collider can't intersect the given world space box
+     */
+    default boolean mayIntersect(double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        return true;
     }
 
     default boolean handlePositionCollisions(double step, PositionCollisionCallback callback) {
@@ -167,7 +226,12 @@ public interface Collider {
         double originX = position.getX();
         double originY = position.getY();
         double originZ = position.getZ();
+        CollisionMetricsSink sink = CollisionMetrics.getSink();
+        long start = sink == null ? 0 : System.nanoTime();
+        int candidates = 0;
+        int hits = 0;
         boolean result = false;
+        search:
         for (double x = originX - radius; x <= originX + radius; x += step) {
             for (double y = originY - radius; y <= originY + radius; y += step) {
                 for (double z = originZ - radius; z <= originZ + radius; z += step) {
@@ -175,13 +239,18 @@ public interface Collider {
                     if (position.distance(loc) > radius) {
                         continue;
                     }
+                    candidates++;
                     if (contains(loc)) {
+                        hits++;
                         result = true;
-                        if (callback.onCollision(loc) == CollisionCallbackResult.END) return true;
+                        if (callback.onCollision(loc) == CollisionCallbackResult.END) break search;
                     }
                 }
             }
         }
+        if (sink != null) {
+            sink.record(CollisionQuery.POSITION, getShapeType(), System.nanoTime() - start, candidates, hits, 0);
+        }
         return result;
     }
 }
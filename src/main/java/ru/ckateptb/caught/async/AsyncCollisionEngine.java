@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.ckateptb.caught.async;
+
+import org.bukkit.Bukkit;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.BlockFace;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.plugin.Plugin;
+import ru.ckateptb.caught.Collider;
+import ru.ckateptb.caught.block.BlockScan;
+import ru.ckateptb.caught.block.BlockShape;
+import ru.ckateptb.caught.block.BlockShapeCache;
+import ru.ckateptb.caught.block.UnloadedChunkPolicy;
+import ru.ckateptb.caught.block.VoxelTraversal;
+import ru.ckateptb.caught.callback.CollisionCallbackResult;
+import ru.ckateptb.caught.collider.ColliderHandle;
+import ru.ckateptb.caught.collider.RayCollider;
+import ru.ckateptb.caught.math.ImmutableVector;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Runs block queries away from the main thread.
+ * <p>
+ * A query snapshots the chunks it touches and copies its collider on the calling main thread, then runs on the worker
+ * executor against the copies only, so the caller may move or change the collider as soon as the call returns. Colliders
+ * are copied like {@link ColliderHandle} does, custom colliders must return an independent copy from
+ * {@link Collider#at(org.bukkit.util.Vector)}.
+ * Results describe the blocks as they were when the query was issued, {@link #onMainThread} brings them back to the
+ * next tick where they can be applied to the live world.
+ */
+public class AsyncCollisionEngine {
+    private final Plugin plugin;
+    private final Executor executor;
+    private final Executor mainThreadExecutor;
+    // Block states whose shape a worker had to approximate, with a position they were seen at
+    private final Map<BlockData, Location> misses = new ConcurrentHashMap<>();
+
+    public AsyncCollisionEngine(Plugin plugin) {
+        this(plugin, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param executor runs the queries, any pool works, including a virtual thread per task executor
+     */
+    public AsyncCollisionEngine(Plugin plugin, Executor executor) {
+        this.plugin = plugin;
+        this.executor = executor;
+        this.mainThreadExecutor = task -> Bukkit.getScheduler().runTask(plugin, task);
+    }
+
+    public Plugin getPlugin() {
+        return plugin;
+    }
+
+    /**
+     * @return executor running tasks on the main thread in the next tick
+     */
+    public Executor getMainThreadExecutor() {
+        return mainThreadExecutor;
+    }
+
+    /**
+     * @return a future completed on the main thread with the result of the given one
+     */
+    public <T> CompletableFuture<T> onMainThread(CompletableFuture<T> future) {
+        return future.thenApplyAsync(Function.identity(), mainThreadExecutor);
+    }
+
+    public CompletableFuture<List<BlockHit>> handleBlockCollisions(Collider collider) {
+        return handleBlockCollisions(collider, true, true, UnloadedChunkPolicy.LOAD, data -> true);
+    }
+
+    /**
+     * Snapshot counterpart of {@link Collider#handleBlockCollisions(boolean, boolean, UnloadedChunkPolicy,
+     * ru.ckateptb.caught.callback.BlockCollisionCallback, Predicate)}, must be called on the main thread.
+     *
+     * @param filter tested against the snapshot block state, blocks of unloaded chunks reported as solid skip it
+     * @return every block colliding with the collider
+     */
+    public CompletableFuture<List<BlockHit>> handleBlockCollisions(Collider collider, boolean ignorePassable, boolean ignoreLiquids,
+                                                                   UnloadedChunkPolicy policy, Predicate<BlockData> filter) {
+        Collider snapshot = snapshot(collider);
+        World world = snapshot.getWorld();
+        ImmutableVector min = snapshot.getMin();
+        ImmutableVector max = snapshot.getMax();
+        Set<Long> keys = new LinkedHashSet<>();
+        for (int x = (int) Math.floor(min.getX()) >> 4; x <= (int) Math.floor(max.getX()) >> 4; x++) {
+            for (int z = (int) Math.floor(min.getZ()) >> 4; z <= (int) Math.floor(max.getZ()) >> 4; z++) {
+                keys.add(key(x, z));
+            }
+        }
+        Map<Long, ChunkSnapshot> chunks = capture(world, keys, policy);
+        int minHeight = world.getMinHeight();
+        int maxHeight = world.getMaxHeight();
+        return CompletableFuture.supplyAsync(() -> {
+            ChunkSnapshotSource source = new ChunkSnapshotSource(this, world, chunks, policy);
+            List<BlockHit> hits = new ArrayList<>();
+            BlockScan.scan(snapshot, minHeight, maxHeight, source, ignorePassable, ignoreLiquids, (x, y, z, shape) -> {
+                if (shape == BlockShape.UNLOADED || filter.test(source.getBlockData(x, y, z))) {
+                    hits.add(new BlockHit(world, x, y, z, shape, 0, BlockFace.SELF));
+                }
+                return CollisionCallbackResult.CONTINUE;
+            });
+            return hits;
+        }, executor);
+    }
+
+    /**
+     * Snapshot counterpart of {@link RayCollider#getBlock(boolean, boolean, boolean, UnloadedChunkPolicy, Predicate)},
+     * must be called on the main thread. Only the chunk columns along the ray are captured.
+     *
+     * @param filter tested against the snapshot block state, blocks of unloaded chunks reported as solid skip it
+     */
+    public CompletableFuture<Optional<BlockHit>> getBlock(RayCollider ray, boolean ignoreLiquids, boolean ignorePassable, boolean ignoreObstacles,
+                                                          UnloadedChunkPolicy policy, Predicate<BlockData> filter) {
+        RayCollider snapshot = snapshot(ray);
+        World world = snapshot.getWorld();
+        Map<Long, ChunkSnapshot> chunks = capture(world, chunksAlong(snapshot), policy);
+        int minHeight = world.getMinHeight();
+        int maxHeight = world.getMaxHeight();
+        return CompletableFuture.supplyAsync(() -> {
+            ChunkSnapshotSource source = new ChunkSnapshotSource(this, world, chunks, policy);
+            BlockHit[] hit = new BlockHit[1];
+            BlockScan.cast(snapshot, minHeight, maxHeight, source, ignoreLiquids, ignorePassable, ignoreObstacles, (x, y, z, shape, distance, face) -> {
+                if (shape != BlockShape.UNLOADED && !filter.test(source.getBlockData(x, y, z))) return CollisionCallbackResult.CONTINUE;
+                hit[0] = new BlockHit(world, x, y, z, shape, distance, face);
+                return CollisionCallbackResult.END;
+            });
+            return Optional.ofNullable(hit[0]);
+        }, executor);
+    }
+
+    // Private copy for the worker, the caller's collider isn't safe to read from another thread
+    private static <T extends Collider> T snapshot(T collider) {
+        return new ColliderHandle<>(collider).get();
+    }
+
+    // Walks the chunk grid in the horizontal plane, wide enough for every voxel the thick ray may visit
+    private static Set<Long> chunksAlong(RayCollider ray) {
+        Set<Long> keys = new LinkedHashSet<>();
+        ImmutableVector origin = ray.getOriginal();
+        double horizontal = Math.sqrt(ray.getDirectionX() * ray.getDirectionX() + ray.getDirectionZ() * ray.getDirectionZ());
+        double dx = horizontal > 0 ? ray.getDirectionX() / horizontal : 0;
+        double dz = horizontal > 0 ? ray.getDirectionZ() / horizontal : 0;
+        VoxelTraversal.traverse(origin.getX() / 16, 0.5, origin.getZ() / 16, dx, 0, dz,
+                ray.getMaxDistance() * horizontal / 16, (ray.getRaySize() + 1) / 16, (x, y, z, distance, face) -> {
+                    keys.add(key(x, z));
+                    return CollisionCallbackResult.CONTINUE;
+                });
+        return keys;
+    }
+
+    private Map<Long, ChunkSnapshot> capture(World world, Set<Long> keys, UnloadedChunkPolicy policy) {
+        if (!Bukkit.isPrimaryThread()) {
+            throw new IllegalStateException("Queries must be issued on the main thread");
+        }
+        warm();
+        Map<Long, ChunkSnapshot> chunks = new HashMap<>();
+        for (long key : keys) {
+            int x = (int) (key >> 32);
+            int z = (int) key;
+            if (policy == UnloadedChunkPolicy.LOAD || world.isChunkLoaded(x, z)) {
+                chunks.put(key, world.getChunkAt(x, z).getChunkSnapshot(false, false, false));
+            }
+        }
+        return chunks;
+    }
+
+    void miss(World world, BlockData data, int x, int y, int z) {
+        if (!misses.containsKey(data)) {
+            misses.putIfAbsent(data, new Location(world, x, y, z));
+        }
+    }
+
+    // Computes the shapes workers had to approximate, so later queries read them from the cache
+    private void warm() {
+        Iterator<Location> iterator = misses.values().iterator();
+        while (iterator.hasNext()) {
+            Location location = iterator.next();
+            iterator.remove();
+            World world = location.getWorld();
+            if (world != null && world.isChunkLoaded(location.getBlockX() >> 4, location.getBlockZ() >> 4)) {
+                BlockShapeCache.get(location.getBlock());
+            }
+        }
+    }
+
+    static long key(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.ckateptb.caught.async;
+
+import lombok.Getter;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+import ru.ckateptb.caught.block.BlockShape;
+
+/**
+ * Block found by an {@link AsyncCollisionEngine} query, as read from the snapshot the query ran on.
+ */
+@Getter
+public class BlockHit {
+    private final World world;
+    private final int x;
+    private final int y;
+    private final int z;
+    private final BlockShape shape;
+    private final double distance; // Distance along the ray, 0 for area scans.
+    private final BlockFace face; // Face the ray entered through, SELF for area scans.
+
+    public BlockHit(World world, int x, int y, int z, BlockShape shape, double distance, BlockFace face) {
+        this.world = world;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.shape = shape;
+        this.distance = distance;
+        this.face = face;
+    }
+
+    /**
+     * @return the live block, its state may have changed since the query ran. Reading it loads its chunk, so this is
+     * meant for the main thread
+     */
+    public Block getBlock() {
+        return world.getBlockAt(x, y, z);
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.ckateptb.caught.async;
+
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.World;
+import org.bukkit.block.data.BlockData;
+import ru.ckateptb.caught.block.BlockShape;
+import ru.ckateptb.caught.block.BlockShapeCache;
+import ru.ckateptb.caught.block.BlockShapeSource;
+import ru.ckateptb.caught.block.UnloadedChunkPolicy;
+
+import java.util.Map;
+
+/**
+ * Reads chunk snapshots captured on the main thread, safe to use from any single thread.
+ * Shapes missing from the {@link BlockShapeCache} are approximated and reported to the engine, which computes them on
+ * the main thread for later queries.
+ */
+final class ChunkSnapshotSource implements BlockShapeSource {
+    private final AsyncCollisionEngine engine;
+    private final World world;
+    private final Map<Long, ChunkSnapshot> chunks;
+    private final UnloadedChunkPolicy policy;
+    private long lastKey = Long.MIN_VALUE;
+    private ChunkSnapshot last;
+
+    ChunkSnapshotSource(AsyncCollisionEngine engine, World world, Map<Long, ChunkSnapshot> chunks, UnloadedChunkPolicy policy) {
+        this.engine = engine;
+        this.world = world;
+        this.chunks = chunks;
+        this.policy = policy;
+    }
+
+    @Override
+    public BlockShape getShape(int x, int y, int z) {
+        BlockData data = getBlockData(x, y, z);
+        if (data == null) {
+            return policy == UnloadedChunkPolicy.SOLID ? BlockShape.UNLOADED : null;
+        }
+        BlockShape shape = BlockShapeCache.getIfCached(data);
+        if (shape == null) {
+            if (BlockShapeCache.isCacheable(data)) {
+                engine.miss(world, data, x, y, z);
+            }
+            shape = BlockShapeCache.approximate(data);
+        }
+        return shape;
+    }
+
+    @Override
+    public BlockData getBlockData(int x, int y, int z) {
+        long key = AsyncCollisionEngine.key(x >> 4, z >> 4);
+        if (key != lastKey) {
+            lastKey = key;
+            last = chunks.get(key);
+        }
+        return last == null ? null : last.getBlockData(x & 15, y, z & 15);
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.ckateptb.caught.block;
+
+import ru.ckateptb.caught.Collider;
+import ru.ckateptb.caught.callback.BlockShapeCallback;
+import ru.ckateptb.caught.callback.CollisionCallbackResult;
+import ru.ckateptb.caught.callback.RayBlockCallback;
+import ru.ckateptb.caught.collider.RayCollider;
+import ru.ckateptb.caught.metrics.CollisionMetrics;
+import ru.ckateptb.caught.metrics.CollisionMetricsSink;
+import ru.ckateptb.caught.metrics.CollisionQuery;
+
+/**
+ * Block queries shared by the live world and snapshots, they only touch blocks through a {@link BlockShapeSource}.
+ */
+public final class BlockScan {
+    private BlockScan() {
+    }
+
+    /**
+     * Enumerates the blocks whose shape intersects the collider, over integer coordinates covering its world bounds.
+     * Runs a {@link BlockScanCursor} to the end.
+     *
+     * @return true if the callback ended the scan
+     */
+    public static boolean scan(Collider collider, int minHeight, int maxHeight, BlockShapeSource source,
+                               boolean ignorePassable, boolean ignoreLiquids, BlockShapeCallback callback) {
+        return new BlockScanCursor(collider, minHeight, maxHeight, source, ignorePassable, ignoreLiquids).finish(callback);
+    }
+
+    /**
+     * @return the shape of the block if it can collide under the given flags, null otherwise
+     */
+    static BlockShape candidate(BlockShapeSource source, int x, int y, int z, boolean ignorePassable, boolean ignoreLiquids) {
+        BlockShape shape = source.getShape(x, y, z);
+        if (shape == null) return null;
+        if (shape.isPassable()) {
+            if (shape.isLiquid()) {
+                if (ignoreLiquids) return null;
+            } else if (ignorePassable) return null;
+        }
+        return shape.isEmpty() ? null : shape;
+    }
+
+    /**
+     * Walks the voxels crossed by the ray and hands every candidate block to the callback until one is accepted.
+     * A rejected solid block ends the walk unless obstacles are ignored.
+     *
+     * @return true if the callback accepted a block
+     */
+    public static boolean cast(RayCollider ray, int minHeight, int maxHeight, BlockShapeSource source,
+                               boolean ignoreLiquids, boolean ignorePassable, boolean ignoreObstacles, RayBlockCallback callback) {
+        CollisionMetricsSink sink = CollisionMetrics.getSink();
+        long start = sink == null ? 0 : System.nanoTime();
+        int[] counts = sink == null ? null : new int[2]; // Voxels and candidates, only tracked for metrics
+        boolean[] accepted = new boolean[1];
+        ray.traverseVoxels((x, y, z, distance, face) -> {
+            if (counts != null) counts[0]++;
+            if (y < minHeight || y >= maxHeight) return CollisionCallbackResult.CONTINUE;
+            BlockShape shape = source.getShape(x, y, z);
+            if (shape == null) return CollisionCallbackResult.CONTINUE;
+            boolean passable = shape.isPassable();
+            if (passable) {
+                if (shape.isLiquid()) {
+                    if (ignoreLiquids) return CollisionCallbackResult.CONTINUE;
+                } else if (ignorePassable) return CollisionCallbackResult.CONTINUE;
+            }
+            if (counts != null) counts[1]++;
+            if (callback.onCollision(x, y, z, shape, distance, face) == CollisionCallbackResult.END) {
+                accepted[0] = true;
+                return CollisionCallbackResult.END;
+            }
+            return !ignoreObstacles && !passable ? CollisionCallbackResult.END : CollisionCallbackResult.CONTINUE;
+        });
+        if (sink != null) {
+            sink.record(CollisionQuery.RAY_BLOCK, ray.getShapeType(), System.nanoTime() - start,
+                    counts[1], accepted[0] ? 1 : 0, counts[0]);
+        }
+        return accepted[0];
+    }
+}
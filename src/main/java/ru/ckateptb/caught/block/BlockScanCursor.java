@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.ckateptb.caught.block;
+
+import org.bukkit.World;
+import ru.ckateptb.caught.Collider;
+import ru.ckateptb.caught.callback.BlockShapeCallback;
+import ru.ckateptb.caught.callback.CollisionCallbackResult;
+import ru.ckateptb.caught.collider.AxisAlignedBoundingBoxCollider;
+import ru.ckateptb.caught.collider.ColliderHandle;
+import ru.ckateptb.caught.math.ImmutableVector;
+import ru.ckateptb.caught.metrics.CollisionMetrics;
+import ru.ckateptb.caught.metrics.CollisionMetricsSink;
+import ru.ckateptb.caught.metrics.CollisionQuery;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Resumable block scan behind {@link BlockScan#scan}: visits the voxels a bounded number at a time, so scans of huge
+ * colliders can be spread over several ticks. Blocks are read when visited, so a scan spread over ticks sees
+ * every block as it is at that moment. The collider must not be moved in place while the scan is running.
+ */
+public class BlockScanCursor {
+    // Voxels visited between two clock reads when advancing until a deadline
+    private static final int CLOCK_INTERVAL = 64;
+
+    private final Collider collider;
+    private final World world;
+    private final BlockShapeSource source;
+    private final boolean ignorePassable;
+    private final boolean ignoreLiquids;
+    private final int minX;
+    private final int maxX;
+    private final int minY;
+    private final int maxY;
+    private final int minZ;
+    private final int maxZ;
+    private final long total;
+    // One box per shape met, moved onto each voxel instead of building a collider per voxel
+    private final Map<BlockShape, ColliderHandle<AxisAlignedBoundingBoxCollider>> boxes = new IdentityHashMap<>();
+    // Next voxel to visit
+    private int x;
+    private int y;
+    private int z;
+    private boolean done;
+    private boolean ended;
+    private long visited;
+    private long nanos;
+    private int candidates;
+    private int hits;
+    private boolean reported;
+
+    public BlockScanCursor(Collider collider, int minHeight, int maxHeight, BlockShapeSource source,
+                           boolean ignorePassable, boolean ignoreLiquids) {
+        this.collider = collider;
+        this.world = collider.getWorld();
+        this.source = source;
+        this.ignorePassable = ignorePassable;
+        this.ignoreLiquids = ignoreLiquids;
+        ImmutableVector min = collider.getMin();
+        ImmutableVector max = collider.getMax();
+        this.minX = (int) Math.floor(min.getX());
+        this.maxX = (int) Math.floor(max.getX());
+        this.minZ = (int) Math.floor(min.getZ());
+        this.maxZ = (int) Math.floor(max.getZ());
+        // Shapes taller than a block (fences, walls) reach into the voxel above their own
+        this.minY = Math.max((int) Math.floor(min.getY() - (BlockShape.MAX_HEIGHT - 1)), minHeight);
+        this.maxY = Math.min((int) Math.floor(max.getY()), maxHeight - 1);
+        this.total = minY > maxY ? 0 : (long) (maxX - minX + 1) * (maxY - minY + 1) * (maxZ - minZ + 1);
+        this.x = minX;
+        this.y = minY;
+        this.z = minZ;
+        this.done = total == 0;
+    }
+
+    public Collider getCollider() {
+        return collider;
+    }
+
+    /**
+     * @return true once every voxel was visited or the callback ended the scan
+     */
+    public boolean isDone() {
+        return done;
+    }
+
+    /**
+     * @return true if the callback ended the scan
+     */
+    public boolean isEnded() {
+        return ended;
+    }
+
+    /**
+     * @return voxels visited so far
+     */
+    public long getVisited() {
+        return visited;
+    }
+
+    /**
+     * @return voxels covered by the scan
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * Visits at most the given number of voxels.
+     *
+     * @return true if the scan is done
+     */
+    public boolean advance(long voxels, BlockShapeCallback callback) {
+        long start = System.nanoTime();
+        for (long i = 0; i < voxels && !done; i++) {
+            step(callback);
+        }
+        return pause(start);
+    }
+
+    /**
+     * Visits voxels until the deadline passes, the clock is read every few voxels so the deadline may be overrun by
+     * the cost of those.
+     *
+     * @param deadline value of {@link System#nanoTime()} at which to stop
+     * @return true if the scan is done
+     */
+    public boolean advanceUntil(long deadline, BlockShapeCallback callback) {
+        long start = System.nanoTime();
+        long now = start;
+        while (!done && now - deadline < 0) {
+            for (int i = 0; i < CLOCK_INTERVAL && !done; i++) {
+                step(callback);
+            }
+            now = System.nanoTime();
+        }
+        return pause(start);
+    }
+
+    /**
+     * Visits every remaining voxel.
+     *
+     * @return true if the callback ended the scan
+     */
+    public boolean finish(BlockShapeCallback callback) {
+        advance(Long.MAX_VALUE, callback);
+        return ended;
+    }
+
+    private void step(BlockShapeCallback callback) {
+        int x = this.x, y = this.y, z = this.z;
+        if (++this.y > maxY) {
+            this.y = minY;
+            if (++this.z > maxZ) {
+                this.z = minZ;
+                this.x++;
+            }
+        }
+        if (++visited == total) done = true;
+        if (!collider.mayIntersect(x, y, z, x + 1, y + BlockShape.MAX_HEIGHT, z + 1)) return;
+        BlockShape shape = BlockScan.candidate(source, x, y, z, ignorePassable, ignoreLiquids);
+        if (shape == null) return;
+        candidates++;
+        if (!collider.intersects(box(shape, x, y, z))) return;
+        hits++;
+        if (callback.onCollision(x, y, z, shape) == CollisionCallbackResult.END) {
+            ended = true;
+            done = true;
+        }
+    }
+
+    private AxisAlignedBoundingBoxCollider box(BlockShape shape, int x, int y, int z) {
+        ColliderHandle<AxisAlignedBoundingBoxCollider> box = boxes.get(shape);
+        if (box == null) {
+            box = new ColliderHandle<>(shape.at(world, x, y, z));
+            boxes.put(shape, box);
+        }
+        return box.moveTo(x, y, z).get();
+    }
+
+    // Accounts the time spent since start, the scan is reported to the metrics sink once done
+    private boolean pause(long start) {
+        nanos += System.nanoTime() - start;
+        if (done && !reported) {
+            reported = true;
+            CollisionMetricsSink sink = CollisionMetrics.getSink();
+            if (sink != null) {
+                sink.record(CollisionQuery.BLOCK, collider.getShapeType(), nanos, candidates, hits, (int) Math.min(visited, Integer.MAX_VALUE));
+            }
+        }
+        return done;
+    }
+}
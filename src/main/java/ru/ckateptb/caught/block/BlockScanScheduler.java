@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.ckateptb.caught.block;
+
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+import ru.ckateptb.caught.Collider;
+import ru.ckateptb.caught.callback.BlockCollisionCallback;
+import ru.ckateptb.caught.callback.BlockShapeCallback;
+import ru.ckateptb.caught.callback.CollisionCallbackResult;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
+
+/**
+ * Runs block scans on the main thread under a time budget shared by every scan in a tick.
+ * <p>
+ * A submitted scan starts right away with what is left of the budget of the current tick and continues in the
+ * following ticks until done. Pending scans take turns, each advancing for a short slice of time, so one huge
+ * collider can't starve the others. Callbacks run on the main thread, possibly ticks after the scan was submitted.
+ */
+public class BlockScanScheduler {
+    public static final long DEFAULT_BUDGET_MICROS = 2000;
+    // Time a scan runs before yielding to the next pending one
+    private static final long SLICE_NANOS = 100_000;
+
+    private final long budget;
+    private final Deque<Scan> pending = new ArrayDeque<>();
+    private final BukkitTask task;
+    private long spent; // Budget used in the current tick
+    private boolean running;
+    private boolean cancelled;
+
+    public BlockScanScheduler(Plugin plugin) {
+        this(plugin, DEFAULT_BUDGET_MICROS);
+    }
+
+    /**
+     * @param plugin       plugin owning the task that resumes scans every tick
+     * @param budgetMicros time all scans together may spend per tick
+     * @throws IllegalArgumentException if the budget is not positive
+     */
+    public BlockScanScheduler(Plugin plugin, long budgetMicros) {
+        if (budgetMicros <= 0) {
+            throw new IllegalArgumentException("Budget must be positive");
+        }
+        this.budget = budgetMicros * 1000;
+        this.task = Bukkit.getScheduler().runTaskTimer(plugin, this::tick, 1, 1);
+    }
+
+    /**
+     * @return scans not done yet
+     */
+    public int getPending() {
+        return pending.size();
+    }
+
+    public CompletableFuture<Boolean> submit(Collider collider, BlockCollisionCallback callback) {
+        return submit(collider, true, true, UnloadedChunkPolicy.LOAD, callback, block -> true);
+    }
+
+    /**
+     * Scans the blocks intersecting the collider with the semantics of {@link Collider#handleBlockCollisions}. Must be
+     * called on the main thread, and the collider must not be moved in place until the scan is done.
+     *
+     * @return completed with true once done if the callback was called, cancelled if the scheduler is cancelled first
+     * @throws IllegalStateException if the scheduler was cancelled
+     */
+    public CompletableFuture<Boolean> submit(Collider collider, boolean ignorePassable, boolean ignoreLiquids,
+                                             UnloadedChunkPolicy policy, BlockCollisionCallback callback, Predicate<Block> filter) {
+        if (cancelled) {
+            throw new IllegalStateException("Scheduler is cancelled");
+        }
+        World world = collider.getWorld();
+        Scan scan = new Scan(new BlockScanCursor(collider, world.getMinHeight(), world.getMaxHeight(),
+                new WorldBlockShapeSource(world, policy), ignorePassable, ignoreLiquids));
+        scan.callback = (x, y, z, shape) -> {
+            Block block = world.getBlockAt(x, y, z);
+            if (!WorldBlockShapeSource.accepts(filter, shape, block)) return CollisionCallbackResult.CONTINUE;
+            scan.collided = true;
+            return callback.onCollision(block);
+        };
+        pending.addLast(scan);
+        if (!running) run();
+        return scan.future;
+    }
+
+    /**
+     * Stops resuming scans and cancels the pending ones, later submissions are rejected.
+     */
+    public void cancel() {
+        cancelled = true;
+        task.cancel();
+        Scan scan;
+        while ((scan = pending.pollFirst()) != null) {
+            scan.future.cancel(false);
+        }
+    }
+
+    private void tick() {
+        spent = 0;
+        run();
+    }
+
+    // Advances pending scans in turn until they are all done or the budget of the tick is spent
+    private void run() {
+        running = true;
+        try {
+            long start = System.nanoTime();
+            long deadline = start + budget - spent;
+            Scan scan;
+            long now = start;
+            while (!cancelled && now - deadline < 0 && (scan = pending.pollFirst()) != null) {
+                if (scan.future.isDone()) continue; // Cancelled by the caller
+                boolean done;
+                try {
+                    done = scan.cursor.advanceUntil(Math.min(deadline, now + SLICE_NANOS), scan.callback);
+                } catch (RuntimeException e) {
+                    done = true;
+                    scan.future.completeExceptionally(e);
+                }
+                if (!done) {
+                    // A callback may have cancelled the scheduler, which no longer holds this scan
+                    if (cancelled) {
+                        scan.future.cancel(false);
+                    } else {
+                        pending.addLast(scan);
+                    }
+                } else if (!scan.future.isDone()) {
+                    scan.future.complete(scan.collided);
+                }
+                now = System.nanoTime();
+            }
+            spent += now - start;
+        } finally {
+            running = false;
+        }
+    }
+
+    private static final class Scan {
+        private final BlockScanCursor cursor;
+        private final CompletableFuture<Boolean> future = new CompletableFuture<>();
+        private BlockShapeCallback callback;
+        private boolean collided;
+
+        private Scan(BlockScanCursor cursor) {
+            this.cursor = cursor;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.ckateptb.caught.block;
+
+import lombok.Getter;
+import org.bukkit.World;
+import ru.ckateptb.caught.collider.AxisAlignedBoundingBoxCollider;
+import ru.ckateptb.caught.math.ImmutableVector;
+
+/**
+ * Collision shape of a block state in block local space, shared by every block with the same state.
+ */
+@Getter
+public class BlockShape {
+    /**
+     * Highest top of any block shape in block local space, reached by fences and walls.
+     */
+    public static final double MAX_HEIGHT = 1.5;
+    public static final BlockShape EMPTY = new BlockShape(0, 0, 0, 0, 0, 0, true, false);
+    public static final BlockShape FULL = new BlockShape(0, 0, 0, 1, 1, 1, false, false);
+    public static final BlockShape LIQUID = new BlockShape(0, 0, 0, 1, 1, 1, true, true);
+    public static final BlockShape BOTTOM_SLAB = new BlockShape(0, 0, 0, 1, 0.5, 1, false, false);
+    public static final BlockShape TOP_SLAB = new BlockShape(0, 0.5, 0, 1, 1, 1, false, false);
+    /**
+     * Full solid block standing in for a block of an unloaded chunk under {@link UnloadedChunkPolicy#SOLID}.
+     */
+    public static final BlockShape UNLOADED = new BlockShape(0, 0, 0, 1, 1, 1, false, false);
+
+    private final double minX;
+    private final double minY;
+    private final double minZ;
+    private final double maxX;
+    private final double maxY;
+    private final double maxZ;
+    private final ImmutableVector min;
+    private final ImmutableVector max;
+    private final boolean passable;
+    private final boolean liquid;
+    private final boolean empty;
+
+    private BlockShape(double minX, double minY, double minZ, double maxX, double maxY, double maxZ, boolean passable, boolean liquid) {
+        this.minX = minX;
+        this.minY = minY;
+        this.minZ = minZ;
+        this.maxX = maxX;
+        this.maxY = maxY;
+        this.maxZ = maxZ;
+        this.min = new ImmutableVector(minX, minY, minZ);
+        this.max = new ImmutableVector(maxX, maxY, maxZ);
+        this.passable = passable;
+        this.liquid = liquid;
+        this.empty = minX == maxX && minY == maxY && minZ == maxZ;
+    }
+
+    /**
+     * @return one of the shared constants when the bounds and flags match one, a new shape otherwise
+     */
+    public static BlockShape of(double minX, double minY, double minZ, double maxX, double maxY, double maxZ, boolean passable, boolean liquid) {
+        if (liquid) return LIQUID;
+        if (minX == maxX && minY == maxY && minZ == maxZ && passable) return EMPTY;
+        for (BlockShape shape : new BlockShape[]{FULL, BOTTOM_SLAB, TOP_SLAB}) {
+            if (shape.matches(minX, minY, minZ, maxX, maxY, maxZ, passable)) return shape;
+        }
+        return new BlockShape(minX, minY, minZ, maxX, maxY, maxZ, passable, false);
+    }
+
+    private boolean matches(double minX, double minY, double minZ, double maxX, double maxY, double maxZ, boolean passable) {
+        return this.minX == minX && this.minY == minY && this.minZ == minZ
+                && this.maxX == maxX && this.maxY == maxY && this.maxZ == maxZ && this.passable == passable;
+    }
+
+    /**
+     * @return the shape translated to the block at the given coordinates
+     */
+    public AxisAlignedBoundingBoxCollider at(World world, int x, int y, int z) {
+        return new AxisAlignedBoundingBoxCollider(world, min, max, new ImmutableVector(x, y, z));
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.ckateptb.caught.block;
+
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.util.BoundingBox;
+
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caches {@link BlockShape}s by {@link BlockData}, so scanning a block only costs a state lookup
+ * instead of the bounding box, liquid and passable queries on the live block.
+ */
+public final class BlockShapeCache {
+    // Blocks whose shape is offset by a hash of their position, they can't be shared between positions
+    private static final Set<Material> POSITION_DEPENDENT = EnumSet.noneOf(Material.class);
+    private static final Map<BlockData, BlockShape> shapes = new ConcurrentHashMap<>();
+
+    static {
+        for (String name : new String[]{
+                "BAMBOO", "BAMBOO_SAPLING", "POINTED_DRIPSTONE", "SMALL_DRIPLEAF", "BIG_DRIPLEAF", "BIG_DRIPLEAF_STEM",
+                "HANGING_ROOTS", "MANGROVE_PROPAGULE", "GRASS", "TALL_GRASS", "FERN", "LARGE_FERN", "DANDELION", "POPPY",
+                "BLUE_ORCHID", "ALLIUM", "AZURE_BLUET", "RED_TULIP", "ORANGE_TULIP", "WHITE_TULIP", "PINK_TULIP",
+                "OXEYE_DAISY", "CORNFLOWER", "LILY_OF_THE_VALLEY", "WITHER_ROSE", "SUNFLOWER", "LILAC", "ROSE_BUSH",
+                "PEONY", "CRIMSON_ROOTS", "WARPED_ROOTS", "NETHER_SPROUTS"}) {
+            Material material = Material.getMaterial(name);
+            if (material != null) POSITION_DEPENDENT.add(material);
+        }
+    }
+
+    private BlockShapeCache() {
+    }
+
+    /**
+     * @return the shape of the block at the given coordinates, the live block is only touched on a cache miss
+     */
+    public static BlockShape get(World world, int x, int y, int z) {
+        BlockData data = world.getBlockData(x, y, z);
+        BlockShape shape = shapes.get(data);
+        return shape != null ? shape : compute(world.getBlockAt(x, y, z), data);
+    }
+
+    public static BlockShape get(Block block) {
+        BlockData data = block.getBlockData();
+        BlockShape shape = shapes.get(data);
+        return shape != null ? shape : compute(block, data);
+    }
+
+    /**
+     * @return the cached shape of the block state, or null if it was never computed
+     */
+    public static BlockShape getIfCached(BlockData data) {
+        return shapes.get(data);
+    }
+
+    /**
+     * @return false for block states whose shape depends on the position of the block and is never cached
+     */
+    public static boolean isCacheable(BlockData data) {
+        return !POSITION_DEPENDENT.contains(data.getMaterial());
+    }
+
+    /**
+     * Shape guessed from the block state alone, for callers that can't reach the live block.
+     * Liquids and air are exact, every other solid block is treated as a full cube.
+     */
+    public static BlockShape approximate(BlockData data) {
+        Material material = data.getMaterial();
+        if (material == Material.WATER || material == Material.LAVA) return BlockShape.LIQUID;
+        return material.isSolid() ? BlockShape.FULL : BlockShape.EMPTY;
+    }
+
+    public static void clear() {
+        shapes.clear();
+    }
+
+    private static BlockShape compute(Block block, BlockData data) {
+        BlockShape shape;
+        if (block.isLiquid()) {
+            shape = BlockShape.LIQUID;
+        } else {
+            BoundingBox box = block.getBoundingBox();
+            boolean passable = block.isPassable();
+            if (box.getWidthX() == 0 && box.getHeight() == 0 && box.getWidthZ() == 0) {
+                // Blocks without an outline report an empty box at the world origin
+                shape = passable ? BlockShape.EMPTY : BlockShape.of(0, 0, 0, 0, 0, 0, false, false);
+            } else {
+                int x = block.getX();
+                int y = block.getY();
+                int z = block.getZ();
+                shape = BlockShape.of(box.getMinX() - x, box.getMinY() - y, box.getMinZ() - z,
+                        box.getMaxX() - x, box.getMaxY() - y, box.getMaxZ() - z, passable, false);
+            }
+        }
+        if (isCacheable(data)) {
+            shapes.put(data, shape);
+        }
+        return shape;
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.ckateptb.caught.block;
+
+import org.bukkit.block.data.BlockData;
+
+/**
+ * Where block scans read blocks from, the live world or a snapshot of it.
+ */
+public interface BlockShapeSource {
+    /**
+     * @return the shape at the given coordinates, {@link BlockShape#UNLOADED} or null for blocks of unloaded chunks
+     * depending on the policy of the source
+     */
+    BlockShape getShape(int x, int y, int z);
+
+    /**
+     * @return the block state at the given coordinates, null for blocks of unloaded chunks
+     */
+    BlockData getBlockData(int x, int y, int z);
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.ckateptb.caught.block;
+
+import org.bukkit.World;
+
+/**
+ * Load state lookups for block queries, consecutive blocks of the same chunk column only check it once.
+ */
+public final class ChunkLoadCheck {
+    private final World world;
+    private int chunkX = Integer.MIN_VALUE;
+    private int chunkZ = Integer.MIN_VALUE;
+    private boolean loaded;
+
+    public ChunkLoadCheck(World world) {
+        this.world = world;
+    }
+
+    public boolean isLoaded(int blockX, int blockZ) {
+        int x = blockX >> 4;
+        int z = blockZ >> 4;
+        if (x != chunkX || z != chunkZ) {
+            chunkX = x;
+            chunkZ = z;
+            loaded = world.isChunkLoaded(x, z);
+        }
+        return loaded;
+    }
+}
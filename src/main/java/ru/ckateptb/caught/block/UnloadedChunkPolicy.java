@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.ckateptb.caught.block;
+
+/**
+ * How block queries treat blocks of chunks that aren't loaded.
+ */
+public enum UnloadedChunkPolicy {
+    /**
+     * Loads the chunk synchronously, the behaviour of queries without an explicit policy.
+     */
+    LOAD,
+    /**
+     * Treats the blocks as empty.
+     */
+    SKIP,
+    /**
+     * Treats the blocks as full solid blocks. They are reported without consulting block filters,
+     * reading their state would load the chunk.
+     */
+    SOLID
+}
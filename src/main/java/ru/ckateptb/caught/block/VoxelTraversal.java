@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.ckateptb.caught.block;
+
+import org.bukkit.block.BlockFace;
+import ru.ckateptb.caught.callback.CollisionCallbackResult;
+import ru.ckateptb.caught.callback.VoxelCallback;
+
+/**
+ * Amanatides-Woo traversal of the voxels crossed by a segment, walking integer coordinates without allocating.
+ * <p>
+ * Thick segments visit every voxel whose box grown by the radius is crossed by the segment, each voxel is reported
+ * once by the step of the central walk the segment is in when it enters the grown box. Voxels are reported in order
+ * of entry distance, up to reordering within a single step of the central walk.
+ */
+public final class VoxelTraversal {
+    private VoxelTraversal() {
+    }
+
+    /**
+     * @param dx       unit direction of the segment
+     * @param length   length of the segment
+     * @param radius   thickness of the segment, 0 for a plain ray
+     * @return true if the callback ended the traversal
+     */
+    public static boolean traverse(double ox, double oy, double oz, double dx, double dy, double dz, double length,
+                                   double radius, VoxelCallback callback) {
+        int x = (int) Math.floor(ox);
+        int y = (int) Math.floor(oy);
+        int z = (int) Math.floor(oz);
+        int stepX = dx > 0 ? 1 : dx < 0 ? -1 : 0;
+        int stepY = dy > 0 ? 1 : dy < 0 ? -1 : 0;
+        int stepZ = dz > 0 ? 1 : dz < 0 ? -1 : 0;
+        int reach = (int) Math.floor(radius) + 1;
+        double entry = 0;
+        BlockFace face = BlockFace.SELF;
+        while (true) {
+            // Boundaries are recomputed rather than accumulated, so they match the thick footprint tests exactly
+            double maxX = boundary(x, stepX, ox, dx);
+            double maxY = boundary(y, stepY, oy, dy);
+            double maxZ = boundary(z, stepZ, oz, dz);
+            double exit = Math.min(Math.min(maxX, maxY), Math.min(maxZ, length));
+            boolean last = exit >= length;
+            if (radius <= 0) {
+                if (callback.onVoxel(x, y, z, entry, face) == CollisionCallbackResult.END) return true;
+            } else if (footprint(ox, oy, oz, dx, dy, dz, length, radius, x, y, z, reach, entry, exit, last, callback)) {
+                return true;
+            }
+            if (last) return false;
+            if (maxX <= maxY && maxX <= maxZ) {
+                x += stepX;
+                entry = maxX;
+                face = stepX > 0 ? BlockFace.WEST : BlockFace.EAST;
+            } else if (maxY <= maxZ) {
+                y += stepY;
+                entry = maxY;
+                face = stepY > 0 ? BlockFace.DOWN : BlockFace.UP;
+            } else {
+                z += stepZ;
+                entry = maxZ;
+                face = stepZ > 0 ? BlockFace.NORTH : BlockFace.SOUTH;
+            }
+        }
+    }
+
+    private static double boundary(int voxel, int step, double origin, double direction) {
+        if (step == 0) return Double.POSITIVE_INFINITY;
+        return (step > 0 ? voxel + 1 - origin : voxel - origin) / direction;
+    }
+
+    // Reports the neighbours of the central voxel whose grown box is entered within [from, to)
+    private static boolean footprint(double ox, double oy, double oz, double dx, double dy, double dz, double length,
+                                     double radius, int cx, int cy, int cz, int reach, double from, double to, boolean last,
+                                     VoxelCallback callback) {
+        for (int x = cx - reach; x <= cx + reach; x++) {
+            double nearX = near(x - radius, x + 1 + radius, ox, dx);
+            if (Double.isNaN(nearX)) continue;
+            double farX = far(x - radius, x + 1 + radius, ox, dx);
+            for (int y = cy - reach; y <= cy + reach; y++) {
+                double nearY = near(y - radius, y + 1 + radius, oy, dy);
+                if (Double.isNaN(nearY)) continue;
+                double farY = far(y - radius, y + 1 + radius, oy, dy);
+                for (int z = cz - reach; z <= cz + reach; z++) {
+                    double nearZ = near(z - radius, z + 1 + radius, oz, dz);
+                    if (Double.isNaN(nearZ)) continue;
+                    double farZ = far(z - radius, z + 1 + radius, oz, dz);
+                    double entry = Math.max(Math.max(nearX, nearY), Math.max(nearZ, 0));
+                    double exit = Math.min(Math.min(farX, farY), Math.min(farZ, length));
+                    if (entry > exit || entry < from || (last ? entry > to : entry >= to)) continue;
+                    BlockFace face;
+                    if (entry <= 0) {
+                        face = BlockFace.SELF;
+                    } else if (entry == nearX) {
+                        face = dx > 0 ? BlockFace.WEST : BlockFace.EAST;
+                    } else if (entry == nearY) {
+                        face = dy > 0 ? BlockFace.DOWN : BlockFace.UP;
+                    } else {
+                        face = dz > 0 ? BlockFace.NORTH : BlockFace.SOUTH;
+                    }
+                    if (callback.onVoxel(x, y, z, entry, face) == CollisionCallbackResult.END) return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // Distance at which the slab is entered, NaN if a parallel segment lies outside it
+    private static double near(double min, double max, double origin, double direction) {
+        if (direction == 0) return origin < min || origin > max ? Double.NaN : Double.NEGATIVE_INFINITY;
+        return direction > 0 ? (min - origin) / direction : (max - origin) / direction;
+    }
+
+    private static double far(double min, double max, double origin, double direction) {
+        if (direction == 0) return Double.POSITIVE_INFINITY;
+        return direction > 0 ? (max - origin) / direction : (min - origin) / direction;
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.ckateptb.caught.block;
+
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.data.BlockData;
+
+import java.util.function.Predicate;
+
+/**
+ * Reads the live world, only usable on the main thread.
+ */
+public class WorldBlockShapeSource implements BlockShapeSource {
+    private final World world;
+    private final UnloadedChunkPolicy policy;
+    private final ChunkLoadCheck chunks;
+
+    public WorldBlockShapeSource(World world, UnloadedChunkPolicy policy) {
+        this.world = world;
+        this.policy = policy;
+        this.chunks = new ChunkLoadCheck(world);
+    }
+
+    /**
+     * Applies a caller's block filter to a block found through a world source. Blocks of unloaded chunks, reported as
+     * {@link BlockShape#UNLOADED}, pass without being read since reading them would load their chunk.
+     */
+    public static boolean accepts(Predicate<Block> filter, BlockShape shape, Block block) {
+        return shape == BlockShape.UNLOADED || filter.test(block);
+    }
+
+    @Override
+    public BlockShape getShape(int x, int y, int z) {
+        if (policy != UnloadedChunkPolicy.LOAD && !chunks.isLoaded(x, z)) {
+            return policy == UnloadedChunkPolicy.SOLID ? BlockShape.UNLOADED : null;
+        }
+        return BlockShapeCache.get(world, x, y, z);
+    }
+
+    @Override
+    public BlockData getBlockData(int x, int y, int z) {
+        if (policy != UnloadedChunkPolicy.LOAD && !chunks.isLoaded(x, z)) return null;
+        return world.getBlockData(x, y, z);
+    }
+}
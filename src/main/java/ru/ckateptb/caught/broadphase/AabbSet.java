@@ -0,0 +1,316 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.ckateptb.caught.broadphase;
+
+import org.bukkit.World;
+import org.bukkit.util.BoundingBox;
+import ru.ckateptb.caught.Collider;
+import ru.ckateptb.caught.callback.BoxCollisionCallback;
+import ru.ckateptb.caught.callback.CollisionCallbackResult;
+import ru.ckateptb.caught.collider.AxisAlignedBoundingBoxCollider;
+import ru.ckateptb.caught.collider.IntersectionMatrix;
+import ru.ckateptb.caught.collider.RayCollider;
+import ru.ckateptb.caught.collider.SphereCollider;
+import ru.ckateptb.caught.math.BatchIntersections;
+import ru.ckateptb.caught.math.ImmutableVector;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Growable set of axis aligned boxes of one world, stored one primitive array per coordinate.
+ * <p>
+ * Boxes keep the id returned by {@link #add} until removed, ids of removed boxes are reused. Removal moves the last box
+ * into the freed slot, so the boxes always fill the arrays densely and queries stream through them with the
+ * {@link BatchIntersections} kernel. Not thread safe, and the set must not be modified from query callbacks, querying it
+ * again from them is fine.
+ */
+public class AabbSet {
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private final World world;
+    private int size;
+    // Dense slots
+    private double[] minX;
+    private double[] minY;
+    private double[] minZ;
+    private double[] maxX;
+    private double[] maxY;
+    private double[] maxZ;
+    private int[] ids; // Id of the box in each slot
+    // Sparse ids
+    private int[] slots; // Slot of each id, -1 when free
+    private int[] freeIds;
+    private int freeCount;
+    private int nextId;
+    private long[] overlapping = new long[0]; // Query scratch bitset
+    private int depth; // Queries running, more than one when a callback queries again
+
+    public AabbSet(World world) {
+        this(world, DEFAULT_CAPACITY);
+    }
+
+    public AabbSet(World world, int capacity) {
+        this.world = world;
+        capacity = Math.max(capacity, 1);
+        this.minX = new double[capacity];
+        this.minY = new double[capacity];
+        this.minZ = new double[capacity];
+        this.maxX = new double[capacity];
+        this.maxY = new double[capacity];
+        this.maxZ = new double[capacity];
+        this.ids = new int[capacity];
+        this.slots = new int[capacity];
+        this.freeIds = new int[capacity];
+    }
+
+    public World getWorld() {
+        return world;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int add(BoundingBox box) {
+        return add(box.getMinX(), box.getMinY(), box.getMinZ(), box.getMaxX(), box.getMaxY(), box.getMaxZ());
+    }
+
+    public int add(AxisAlignedBoundingBoxCollider box) {
+        return add(box.getMinX(), box.getMinY(), box.getMinZ(), box.getMaxX(), box.getMaxY(), box.getMaxZ());
+    }
+
+    /**
+     * @return the id of the new box
+     */
+    public int add(double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        if (size == ids.length) grow();
+        int id;
+        if (freeCount > 0) {
+            id = freeIds[--freeCount];
+        } else {
+            id = nextId++;
+            if (id == slots.length) {
+                slots = Arrays.copyOf(slots, slots.length * 2);
+                freeIds = Arrays.copyOf(freeIds, freeIds.length * 2);
+            }
+        }
+        int slot = size++;
+        ids[slot] = id;
+        slots[id] = slot;
+        set(slot, minX, minY, minZ, maxX, maxY, maxZ);
+        return id;
+    }
+
+    /**
+     * @throws IllegalArgumentException if there is no box with the given id
+     */
+    public void update(int id, double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        set(slot(id), minX, minY, minZ, maxX, maxY, maxZ);
+    }
+
+    /**
+     * @return false if there was no box with the given id
+     */
+    public boolean remove(int id) {
+        if (!contains(id)) return false;
+        int slot = slots[id];
+        int last = --size;
+        if (slot != last) {
+            int moved = ids[last];
+            ids[slot] = moved;
+            slots[moved] = slot;
+            set(slot, minX[last], minY[last], minZ[last], maxX[last], maxY[last], maxZ[last]);
+        }
+        slots[id] = -1;
+        freeIds[freeCount++] = id;
+        return true;
+    }
+
+    public boolean contains(int id) {
+        return id >= 0 && id < nextId && slots[id] != -1;
+    }
+
+    public void clear() {
+        size = 0;
+        freeCount = 0;
+        nextId = 0;
+    }
+
+    public double getMinX(int id) {
+        return minX[slot(id)];
+    }
+
+    public double getMinY(int id) {
+        return minY[slot(id)];
+    }
+
+    public double getMinZ(int id) {
+        return minZ[slot(id)];
+    }
+
+    public double getMaxX(int id) {
+        return maxX[slot(id)];
+    }
+
+    public double getMaxY(int id) {
+        return maxY[slot(id)];
+    }
+
+    public double getMaxZ(int id) {
+        return maxZ[slot(id)];
+    }
+
+    /**
+     * @return a new collider with the bounds of the box
+     */
+    public AxisAlignedBoundingBoxCollider getCollider(int id) {
+        int slot = slot(id);
+        return new AxisAlignedBoundingBoxCollider(world, new ImmutableVector(minX[slot], minY[slot], minZ[slot]),
+                new ImmutableVector(maxX[slot], maxY[slot], maxZ[slot]));
+    }
+
+    /**
+     * Visits the id of every box, in storage order.
+     */
+    public void forEach(IntConsumer action) {
+        for (int slot = 0; slot < size; slot++) {
+            action.accept(ids[slot]);
+        }
+    }
+
+    /**
+     * Visits every box overlapping the region, with the semantics of
+     * {@link ru.ckateptb.caught.math.Intersections#aabbIntersectsAabb}.
+     *
+     * @return true if the callback ended the query
+     */
+    public boolean query(double minX, double minY, double minZ, double maxX, double maxY, double maxZ, BoxCollisionCallback callback) {
+        depth++;
+        try {
+            long[] overlapping = overlapping();
+            BatchIntersections.aabbIntersectsAabbs(minX, minY, minZ, maxX, maxY, maxZ,
+                    this.minX, this.minY, this.minZ, this.maxX, this.maxY, this.maxZ, size, overlapping);
+            return visit(overlapping, null, true, callback);
+        } finally {
+            depth--;
+        }
+    }
+
+    /**
+     * Visits every box intersecting the collider. Boxes are culled in bulk against the collider bounds, or exactly for
+     * spheres and rays, the remaining ones are tested with {@link Collider#mayIntersect} then {@link Collider#intersects}.
+     *
+     * @return true if the callback ended the query
+     */
+    public boolean query(Collider collider, BoxCollisionCallback callback) {
+        if (size == 0 || !world.equals(collider.getWorld())) return false;
+        depth++;
+        try {
+            return query(collider, overlapping(), callback);
+        } finally {
+            depth--;
+        }
+    }
+
+    private boolean query(Collider collider, long[] overlapping, BoxCollisionCallback callback) {
+        int type = collider.getShapeType();
+        boolean culled; // Whether the bulk test already is the exact test
+        boolean exact; // Whether mayIntersect is the exact test
+        if (collider instanceof SphereCollider sphere) {
+            ImmutableVector center = sphere.getCenter();
+            BatchIntersections.sphereIntersectsAabbs(center.getX(), center.getY(), center.getZ(), sphere.getRadius(),
+                    minX, minY, minZ, maxX, maxY, maxZ, size, overlapping);
+            culled = true;
+            exact = true;
+        } else if (collider instanceof RayCollider ray) {
+            ImmutableVector origin = ray.getOriginal();
+            BatchIntersections.rayIntersectsAabbs(origin.getX(), origin.getY(), origin.getZ(),
+                    ray.getDirectionX(), ray.getDirectionY(), ray.getDirectionZ(), ray.getMaxDistance(), ray.getRaySize(),
+                    minX, minY, minZ, maxX, maxY, maxZ, size, overlapping);
+            // Growing the boxes is only exact for thin rays
+            culled = ray.getRaySize() <= 0;
+            exact = false;
+        } else {
+            ImmutableVector min = collider.getMin();
+            ImmutableVector max = collider.getMax();
+            BatchIntersections.aabbIntersectsAabbs(min.getX(), min.getY(), min.getZ(), max.getX(), max.getY(), max.getZ(),
+                    minX, minY, minZ, maxX, maxY, maxZ, size, overlapping);
+            culled = type == IntersectionMatrix.AXIS_ALIGNED_BOUNDING_BOX;
+            // The box test of capsules is their mayIntersect
+            exact = type == IntersectionMatrix.CAPSULE;
+        }
+        return visit(overlapping, culled ? null : collider, exact, callback);
+    }
+
+    // Visits the set bits, testing the boxes against the collider when one is given
+    private boolean visit(long[] overlapping, Collider collider, boolean exact, BoxCollisionCallback callback) {
+        for (int word = 0; word < BatchIntersections.words(size); word++) {
+            for (long bits = overlapping[word]; bits != 0; bits &= bits - 1) {
+                int slot = (word << 6) + Long.numberOfTrailingZeros(bits);
+                if (collider != null) {
+                    if (!collider.mayIntersect(minX[slot], minY[slot], minZ[slot], maxX[slot], maxY[slot], maxZ[slot])) continue;
+                    if (!exact && !collider.intersects(getCollider(ids[slot]))) continue;
+                }
+                if (callback.onCollision(ids[slot]) == CollisionCallbackResult.END) return true;
+            }
+        }
+        return false;
+    }
+
+    // Shared by outermost queries, a query nested in a callback would overwrite the bits the outer one is iterating
+    private long[] overlapping() {
+        int words = BatchIntersections.words(size);
+        if (depth > 1) return new long[words];
+        if (overlapping.length < words) {
+            overlapping = new long[BatchIntersections.words(ids.length)];
+        }
+        return overlapping;
+    }
+
+    private int slot(int id) {
+        if (!contains(id)) {
+            throw new IllegalArgumentException("No box with id " + id);
+        }
+        return slots[id];
+    }
+
+    private void set(int slot, double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        this.minX[slot] = minX;
+        this.minY[slot] = minY;
+        this.minZ[slot] = minZ;
+        this.maxX[slot] = maxX;
+        this.maxY[slot] = maxY;
+        this.maxZ[slot] = maxZ;
+    }
+
+    private void grow() {
+        int capacity = ids.length * 2;
+        minX = Arrays.copyOf(minX, capacity);
+        minY = Arrays.copyOf(minY, capacity);
+        minZ = Arrays.copyOf(minZ, capacity);
+        maxX = Arrays.copyOf(maxX, capacity);
+        maxY = Arrays.copyOf(maxY, capacity);
+        maxZ = Arrays.copyOf(maxZ, capacity);
+        ids = Arrays.copyOf(ids, capacity);
+    }
+}
@@ -0,0 +1,538 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.ckateptb.caught.broadphase;
+
+import org.bukkit.World;
+import org.bukkit.util.Vector;
+import ru.ckateptb.caught.Collider;
+import ru.ckateptb.caught.callback.BoxCollisionCallback;
+import ru.ckateptb.caught.callback.ColliderPairCallback;
+import ru.ckateptb.caught.callback.CollisionCallbackResult;
+import ru.ckateptb.caught.collider.RayCollider;
+import ru.ckateptb.caught.math.ImmutableVector;
+import ru.ckateptb.caught.math.Intersections;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Dynamic bounding volume hierarchy over the colliders of one world, for collider against collider queries.
+ * <p>
+ * Every collider is a leaf holding its bounds grown by a margin, so a collider moving within its fat bounds doesn't
+ * touch the tree. Leaves are inserted next to the sibling that grows the tree surface the least and the tree is kept
+ * balanced by rotations, see Box2D b2DynamicTree. Colliders keep the id returned by {@link #insert} until removed.
+ * Not thread safe, and the tree must not be modified or queried again from query callbacks.
+ */
+public class ColliderTree {
+    public static final double DEFAULT_MARGIN = 0.25;
+    private static final int NULL = -1;
+    // Fat bounds exceeding the new ones by more than the margin times this are refitted even if they contain the collider
+    private static final double SHRINK_FACTOR = 4;
+    // Predicted motion is extended by this factor, see update(int, Collider, Vector)
+    private static final double DISPLACEMENT_FACTOR = 2;
+
+    private final World world;
+    private final double margin;
+    private int root = NULL;
+    private int size;
+    // Nodes, fat bounds for leaves and the union of the children for branches
+    private double[] minX = new double[0];
+    private double[] minY = new double[0];
+    private double[] minZ = new double[0];
+    private double[] maxX = new double[0];
+    private double[] maxY = new double[0];
+    private double[] maxZ = new double[0];
+    private int[] parent = new int[0]; // Next free node for free nodes
+    private int[] first = new int[0];
+    private int[] second = new int[0];
+    private int[] height = new int[0]; // 0 for leaves, -1 for free nodes
+    // Leaves
+    private Collider[] colliders = new Collider[0];
+    private double[] boundsMinX = new double[0];
+    private double[] boundsMinY = new double[0];
+    private double[] boundsMinZ = new double[0];
+    private double[] boundsMaxX = new double[0];
+    private double[] boundsMaxY = new double[0];
+    private double[] boundsMaxZ = new double[0];
+    private int free = NULL;
+    private int[] stack = new int[64]; // Query scratch stack
+
+    public ColliderTree(World world) {
+        this(world, DEFAULT_MARGIN);
+    }
+
+    /**
+     * @param margin distance by which the bounds of every collider are grown
+     * @throws IllegalArgumentException if the margin is negative
+     */
+    public ColliderTree(World world, double margin) {
+        if (margin < 0) {
+            throw new IllegalArgumentException("Margin must not be negative");
+        }
+        this.world = world;
+        this.margin = margin;
+        allocateNodes(16);
+    }
+
+    public World getWorld() {
+        return world;
+    }
+
+    public double getMargin() {
+        return margin;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return height of the tree, 0 when empty or holding a single collider
+     */
+    public int getHeight() {
+        return root == NULL ? 0 : height[root];
+    }
+
+    /**
+     * @return the id of the collider in the tree
+     * @throws IllegalArgumentException if the collider belongs to another world
+     */
+    public int insert(Collider collider) {
+        checkWorld(collider);
+        int leaf = allocate();
+        height[leaf] = 0;
+        first[leaf] = NULL;
+        second[leaf] = NULL;
+        setCollider(leaf, collider);
+        fatten(leaf, 0, 0, 0);
+        insertLeaf(leaf);
+        size++;
+        return leaf;
+    }
+
+    /**
+     * Replaces the collider of the given id, usually by the same collider moved.
+     *
+     * @return true if the collider left its fat bounds and was moved in the tree
+     * @throws IllegalArgumentException if there is no collider with the given id or if it belongs to another world
+     */
+    public boolean update(int id, Collider collider) {
+        return update(id, collider, null);
+    }
+
+    /**
+     * @param displacement expected motion of the collider until its next update, the fat bounds are extended along it
+     *                     so a collider moving steadily is moved in the tree less often, may be null
+     * @return true if the collider left its fat bounds and was moved in the tree
+     * @throws IllegalArgumentException if there is no collider with the given id or if it belongs to another world
+     */
+    public boolean update(int id, Collider collider, Vector displacement) {
+        checkLeaf(id);
+        checkWorld(collider);
+        setCollider(id, collider);
+        double dx = 0, dy = 0, dz = 0;
+        if (displacement != null) {
+            dx = displacement.getX() * DISPLACEMENT_FACTOR;
+            dy = displacement.getY() * DISPLACEMENT_FACTOR;
+            dz = displacement.getZ() * DISPLACEMENT_FACTOR;
+        }
+        if (minX[id] <= boundsMinX[id] && minY[id] <= boundsMinY[id] && minZ[id] <= boundsMinZ[id]
+                && maxX[id] >= boundsMaxX[id] && maxY[id] >= boundsMaxY[id] && maxZ[id] >= boundsMaxZ[id]) {
+            // Still contained, unless the old fat bounds became much larger than the new ones
+            double slack = margin * (1 + SHRINK_FACTOR);
+            if (minX[id] >= boundsMinX[id] - slack + Math.min(dx, 0) && minY[id] >= boundsMinY[id] - slack + Math.min(dy, 0)
+                    && minZ[id] >= boundsMinZ[id] - slack + Math.min(dz, 0) && maxX[id] <= boundsMaxX[id] + slack + Math.max(dx, 0)
+                    && maxY[id] <= boundsMaxY[id] + slack + Math.max(dy, 0) && maxZ[id] <= boundsMaxZ[id] + slack + Math.max(dz, 0)) {
+                return false;
+            }
+        }
+        removeLeaf(id);
+        fatten(id, dx, dy, dz);
+        insertLeaf(id);
+        return true;
+    }
+
+    /**
+     * @return false if there was no collider with the given id
+     */
+    public boolean remove(int id) {
+        if (!contains(id)) return false;
+        removeLeaf(id);
+        colliders[id] = null;
+        release(id);
+        size--;
+        return true;
+    }
+
+    public boolean contains(int id) {
+        return id >= 0 && id < height.length && height[id] == 0;
+    }
+
+    /**
+     * @throws IllegalArgumentException if there is no collider with the given id
+     */
+    public Collider get(int id) {
+        checkLeaf(id);
+        return colliders[id];
+    }
+
+    public void clear() {
+        Arrays.fill(colliders, null);
+        root = NULL;
+        size = 0;
+        allocateNodes(16);
+    }
+
+    /**
+     * Visits the id of every collider, in no particular order.
+     */
+    public void forEach(IntConsumer action) {
+        for (int node = 0; node < height.length; node++) {
+            if (height[node] == 0) action.accept(node);
+        }
+    }
+
+    /**
+     * Visits every collider whose bounds overlap the region, with the semantics of
+     * {@link Intersections#aabbIntersectsAabb}.
+     *
+     * @return true if the callback ended the query
+     */
+    public boolean query(double minX, double minY, double minZ, double maxX, double maxY, double maxZ, BoxCollisionCallback callback) {
+        int top = push(0, root);
+        while (top > 0) {
+            int node = stack[--top];
+            if (!Intersections.aabbIntersectsAabb(this.minX[node], this.minY[node], this.minZ[node],
+                    this.maxX[node], this.maxY[node], this.maxZ[node], minX, minY, minZ, maxX, maxY, maxZ)) {
+                continue;
+            }
+            if (height[node] > 0) {
+                top = push(push(top, first[node]), second[node]);
+            } else if (Intersections.aabbIntersectsAabb(boundsMinX[node], boundsMinY[node], boundsMinZ[node],
+                    boundsMaxX[node], boundsMaxY[node], boundsMaxZ[node], minX, minY, minZ, maxX, maxY, maxZ)
+                    && callback.onCollision(node) == CollisionCallbackResult.END) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Visits every collider of the tree intersecting the given one, including that collider itself if it is in the
+     * tree. Rays descend only into the nodes they cross, other colliders into the nodes overlapping their bounds.
+     *
+     * @return true if the callback ended the query
+     */
+    public boolean query(Collider collider, BoxCollisionCallback callback) {
+        if (root == NULL || !world.equals(collider.getWorld())) return false;
+        if (collider instanceof RayCollider ray) {
+            return query(ray, callback);
+        }
+        ImmutableVector min = collider.getMin();
+        ImmutableVector max = collider.getMax();
+        return query(min.getX(), min.getY(), min.getZ(), max.getX(), max.getY(), max.getZ(), id -> {
+            if (!collider.mayIntersect(boundsMinX[id], boundsMinY[id], boundsMinZ[id], boundsMaxX[id], boundsMaxY[id], boundsMaxZ[id])
+                    || !collider.intersects(colliders[id])) {
+                return CollisionCallbackResult.CONTINUE;
+            }
+            return callback.onCollision(id);
+        });
+    }
+
+    private boolean query(RayCollider ray, BoxCollisionCallback callback) {
+        ImmutableVector origin = ray.getOriginal();
+        double ox = origin.getX(), oy = origin.getY(), oz = origin.getZ();
+        double dx = ray.getDirectionX(), dy = ray.getDirectionY(), dz = ray.getDirectionZ();
+        double length = ray.getMaxDistance();
+        double size = Math.max(ray.getRaySize(), 0);
+        int top = push(0, root);
+        while (top > 0) {
+            int node = stack[--top];
+            // Bounds grown by the ray size are crossed by every thick ray touching them
+            if (!Intersections.rayIntersectsAabb(ox, oy, oz, dx, dy, dz, length, minX[node] - size, minY[node] - size,
+                    minZ[node] - size, maxX[node] + size, maxY[node] + size, maxZ[node] + size, null)) {
+                continue;
+            }
+            if (height[node] > 0) {
+                top = push(push(top, first[node]), second[node]);
+            } else if (ray.intersects(colliders[node]) && callback.onCollision(node) == CollisionCallbackResult.END) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Visits every pair of intersecting colliders once, each collider descending the tree with its own bounds.
+     *
+     * @return true if the callback ended the enumeration
+     */
+    public boolean queryPairs(ColliderPairCallback callback) {
+        for (int leaf = 0; leaf < height.length; leaf++) {
+            if (height[leaf] != 0) continue;
+            int current = leaf;
+            Collider collider = colliders[leaf];
+            boolean ended = query(boundsMinX[leaf], boundsMinY[leaf], boundsMinZ[leaf],
+                    boundsMaxX[leaf], boundsMaxY[leaf], boundsMaxZ[leaf], other -> {
+                        if (other <= current || !collider.intersects(colliders[other])) return CollisionCallbackResult.CONTINUE;
+                        return callback.onCollision(current, other);
+                    });
+            if (ended) return true;
+        }
+        return false;
+    }
+
+    private void insertLeaf(int leaf) {
+        if (root == NULL) {
+            root = leaf;
+            parent[leaf] = NULL;
+            return;
+        }
+        // Descend towards the sibling whose pairing with the leaf adds the least surface to the tree
+        int node = root;
+        while (height[node] > 0) {
+            double area = area(node);
+            double combined = combinedArea(node, leaf);
+            double cost = 2 * combined; // Pairing with this node
+            double inherited = 2 * (combined - area); // Growth of every ancestor of a deeper sibling
+            double firstCost = descentCost(first[node], leaf) + inherited;
+            double secondCost = descentCost(second[node], leaf) + inherited;
+            if (cost < firstCost && cost < secondCost) break;
+            node = firstCost < secondCost ? first[node] : second[node];
+        }
+        int sibling = node;
+        int oldParent = parent[sibling];
+        int branch = allocate();
+        parent[branch] = oldParent;
+        height[branch] = height[sibling] + 1;
+        first[branch] = sibling;
+        second[branch] = leaf;
+        parent[sibling] = branch;
+        parent[leaf] = branch;
+        if (oldParent == NULL) {
+            root = branch;
+        } else if (first[oldParent] == sibling) {
+            first[oldParent] = branch;
+        } else {
+            second[oldParent] = branch;
+        }
+        refit(branch);
+    }
+
+    private double descentCost(int child, int leaf) {
+        double combined = combinedArea(child, leaf);
+        return height[child] == 0 ? combined : combined - area(child);
+    }
+
+    private void removeLeaf(int leaf) {
+        if (leaf == root) {
+            root = NULL;
+            return;
+        }
+        int branch = parent[leaf];
+        int grandParent = parent[branch];
+        int sibling = first[branch] == leaf ? second[branch] : first[branch];
+        release(branch);
+        if (grandParent == NULL) {
+            root = sibling;
+            parent[sibling] = NULL;
+            return;
+        }
+        if (first[grandParent] == branch) {
+            first[grandParent] = sibling;
+        } else {
+            second[grandParent] = sibling;
+        }
+        parent[sibling] = grandParent;
+        refit(grandParent);
+    }
+
+    // Rebalances and recomputes the bounds and heights from the node up to the root
+    private void refit(int node) {
+        while (node != NULL) {
+            node = balance(node);
+            int a = first[node], b = second[node];
+            height[node] = 1 + Math.max(height[a], height[b]);
+            union(node, a, b);
+            node = parent[node];
+        }
+    }
+
+    // Rotates the higher grandchild up if the children heights differ by more than one, returns the new subtree root
+    private int balance(int a) {
+        if (height[a] < 2) return a;
+        int b = first[a];
+        int c = second[a];
+        int difference = height[c] - height[b];
+        if (difference > 1) {
+            rotate(a, c, b, false);
+            return c;
+        }
+        if (difference < -1) {
+            rotate(a, b, c, true);
+            return b;
+        }
+        return a;
+    }
+
+    // Moves the higher child up in place of a, a keeps the other child and the lower grandchild
+    private void rotate(int a, int up, int other, boolean upIsFirst) {
+        int f = first[up];
+        int g = second[up];
+        first[up] = a;
+        parent[up] = parent[a];
+        parent[a] = up;
+        int grandParent = parent[up];
+        if (grandParent == NULL) {
+            root = up;
+        } else if (first[grandParent] == a) {
+            first[grandParent] = up;
+        } else {
+            second[grandParent] = up;
+        }
+        int higher = height[f] > height[g] ? f : g;
+        int lower = higher == f ? g : f;
+        second[up] = higher;
+        if (upIsFirst) {
+            first[a] = lower;
+        } else {
+            second[a] = lower;
+        }
+        parent[lower] = a;
+        union(a, other, lower);
+        height[a] = 1 + Math.max(height[other], height[lower]);
+        union(up, a, higher);
+        height[up] = 1 + Math.max(height[a], height[higher]);
+    }
+
+    private void union(int node, int a, int b) {
+        minX[node] = Math.min(minX[a], minX[b]);
+        minY[node] = Math.min(minY[a], minY[b]);
+        minZ[node] = Math.min(minZ[a], minZ[b]);
+        maxX[node] = Math.max(maxX[a], maxX[b]);
+        maxY[node] = Math.max(maxY[a], maxY[b]);
+        maxZ[node] = Math.max(maxZ[a], maxZ[b]);
+    }
+
+    // Half of the surface of the node bounds
+    private double area(int node) {
+        double x = maxX[node] - minX[node], y = maxY[node] - minY[node], z = maxZ[node] - minZ[node];
+        return x * y + y * z + z * x;
+    }
+
+    private double combinedArea(int a, int b) {
+        double x = Math.max(maxX[a], maxX[b]) - Math.min(minX[a], minX[b]);
+        double y = Math.max(maxY[a], maxY[b]) - Math.min(minY[a], minY[b]);
+        double z = Math.max(maxZ[a], maxZ[b]) - Math.min(minZ[a], minZ[b]);
+        return x * y + y * z + z * x;
+    }
+
+    private void setCollider(int leaf, Collider collider) {
+        ImmutableVector min = collider.getMin();
+        ImmutableVector max = collider.getMax();
+        colliders[leaf] = collider;
+        boundsMinX[leaf] = min.getX();
+        boundsMinY[leaf] = min.getY();
+        boundsMinZ[leaf] = min.getZ();
+        boundsMaxX[leaf] = max.getX();
+        boundsMaxY[leaf] = max.getY();
+        boundsMaxZ[leaf] = max.getZ();
+    }
+
+    // Fat bounds of a leaf, its collider bounds grown by the margin and extended along the predicted motion
+    private void fatten(int leaf, double dx, double dy, double dz) {
+        minX[leaf] = boundsMinX[leaf] - margin + Math.min(dx, 0);
+        minY[leaf] = boundsMinY[leaf] - margin + Math.min(dy, 0);
+        minZ[leaf] = boundsMinZ[leaf] - margin + Math.min(dz, 0);
+        maxX[leaf] = boundsMaxX[leaf] + margin + Math.max(dx, 0);
+        maxY[leaf] = boundsMaxY[leaf] + margin + Math.max(dy, 0);
+        maxZ[leaf] = boundsMaxZ[leaf] + margin + Math.max(dz, 0);
+    }
+
+    private int push(int top, int node) {
+        if (node == NULL) return top;
+        if (top == stack.length) stack = Arrays.copyOf(stack, top * 2);
+        stack[top] = node;
+        return top + 1;
+    }
+
+    private int allocate() {
+        if (free == NULL) {
+            int capacity = height.length;
+            growNodes(capacity * 2);
+            for (int node = capacity; node < capacity * 2; node++) {
+                release(node);
+            }
+        }
+        int node = free;
+        free = parent[node];
+        return node;
+    }
+
+    private void release(int node) {
+        height[node] = -1;
+        parent[node] = free;
+        free = node;
+    }
+
+    private void allocateNodes(int capacity) {
+        height = new int[0];
+        growNodes(capacity);
+        free = NULL;
+        // Lowest nodes first, so the ids of an emptied tree start over from 0
+        for (int node = capacity - 1; node >= 0; node--) {
+            release(node);
+        }
+    }
+
+    private void growNodes(int capacity) {
+        minX = Arrays.copyOf(minX, capacity);
+        minY = Arrays.copyOf(minY, capacity);
+        minZ = Arrays.copyOf(minZ, capacity);
+        maxX = Arrays.copyOf(maxX, capacity);
+        maxY = Arrays.copyOf(maxY, capacity);
+        maxZ = Arrays.copyOf(maxZ, capacity);
+        parent = Arrays.copyOf(parent, capacity);
+        first = Arrays.copyOf(first, capacity);
+        second = Arrays.copyOf(second, capacity);
+        height = Arrays.copyOf(height, capacity);
+        colliders = Arrays.copyOf(colliders, capacity);
+        boundsMinX = Arrays.copyOf(boundsMinX, capacity);
+        boundsMinY = Arrays.copyOf(boundsMinY, capacity);
+        boundsMinZ = Arrays.copyOf(boundsMinZ, capacity);
+        boundsMaxX = Arrays.copyOf(boundsMaxX, capacity);
+        boundsMaxY = Arrays.copyOf(boundsMaxY, capacity);
+        boundsMaxZ = Arrays.copyOf(boundsMaxZ, capacity);
+    }
+
+    private void checkLeaf(int id) {
+        if (!contains(id)) {
+            throw new IllegalArgumentException("No collider with id " + id);
+        }
+    }
+
+    private void checkWorld(Collider collider) {
+        if (!world.equals(collider.getWorld())) {
+            throw new IllegalArgumentException("Collider belongs to another world");
+        }
+    }
+}
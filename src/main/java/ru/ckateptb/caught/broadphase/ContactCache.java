@@ -0,0 +1,269 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.ckateptb.caught.broadphase;
+
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.util.BoundingBox;
+import ru.ckateptb.caught.Collider;
+import ru.ckateptb.caught.callback.CollisionCallbackResult;
+import ru.ckateptb.caught.callback.ContactListener;
+import ru.ckateptb.caught.collider.AxisAlignedBoundingBoxCollider;
+import ru.ckateptb.caught.math.ImmutableVector;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Opt-in cache of collider/entity contacts, for colliders queried every tick that rarely move, like walls or shields.
+ * <p>
+ * Pairs are keyed by a key of the caller (typically a {@link ru.ckateptb.caught.collider.ColliderHandle}) and the entity id.
+ * Each pair remembers its last result with the collider position and bounds and the entity bounds it was computed for,
+ * the narrowphase is skipped while none of them moved by more than the tolerance. A positive tolerance trades exactness
+ * for fewer tests, a collider that changes shape without moving must be {@link #invalidate invalidated}.
+ * Not thread safe.
+ */
+public class ContactCache<K> {
+    public static final double DEFAULT_TOLERANCE = 0;
+
+    private final double tolerance;
+    private final Map<K, Contacts> contacts = new HashMap<>();
+    private long tested;
+    private long skipped;
+
+    public ContactCache() {
+        this(DEFAULT_TOLERANCE);
+    }
+
+    /**
+     * @param tolerance largest movement of any coordinate, in blocks, that still reuses the last result
+     */
+    public ContactCache(double tolerance) {
+        if (tolerance < 0) {
+            throw new IllegalArgumentException("Tolerance must not be negative");
+        }
+        this.tolerance = tolerance;
+    }
+
+    public boolean handle(K key, Collider collider, ContactListener<K> listener) {
+        return handle(key, collider, true, false, listener, entity -> true);
+    }
+
+    /**
+     * Queries the entities around the collider like {@link Collider#handleEntityCollision(boolean, boolean,
+     * ru.ckateptb.caught.callback.EntityCollisionCallback, Predicate)} and reports the transitions of every pair of the
+     * key since its previous call. Entities no longer found by the query exit.
+     *
+     * @return true if the collider touches at least one entity
+     */
+    public boolean handle(K key, Collider collider, boolean livingOnly, boolean armorStandCollision,
+                          ContactListener<K> listener, Predicate<Entity> filter) {
+        World world = collider.getWorld();
+        ImmutableVector min = collider.getMin();
+        ImmutableVector max = collider.getMax();
+        Contacts pairs = contacts.computeIfAbsent(key, k -> new Contacts());
+        pairs.stamp++;
+        pairs.set(collider.getPosition(), min, max, tolerance);
+        boolean[] touching = new boolean[1];
+        filter = filter.and(Collider.entityFilter(livingOnly, armorStandCollision));
+        EntityBroadphase broadphase = EntityBroadphase.getActive();
+        if (broadphase != null) {
+            broadphase.query(world, min, max, filter, (entity, bounds) -> {
+                touching[0] |= update(key, pairs, collider, entity, bounds.getMinX(), bounds.getMinY(), bounds.getMinZ(),
+                        bounds.getMaxX(), bounds.getMaxY(), bounds.getMaxZ(), bounds, listener);
+                return CollisionCallbackResult.CONTINUE;
+            });
+        } else {
+            for (Entity entity : world.getNearbyEntities(BoundingBox.of(min, max), filter)) {
+                BoundingBox box = entity.getBoundingBox();
+                touching[0] |= update(key, pairs, collider, entity, box.getMinX(), box.getMinY(), box.getMinZ(),
+                        box.getMaxX(), box.getMaxY(), box.getMaxZ(), null, listener);
+            }
+        }
+        Iterator<Contact> iterator = pairs.entities.values().iterator();
+        while (iterator.hasNext()) {
+            Contact contact = iterator.next();
+            if (contact.stamp == pairs.stamp) continue;
+            iterator.remove();
+            if (contact.touching) listener.onExit(key, contact.entity);
+        }
+        pairs.commit();
+        return touching[0];
+    }
+
+    private boolean update(K key, Contacts pairs, Collider collider, Entity entity,
+                           double minX, double minY, double minZ, double maxX, double maxY, double maxZ,
+                           AxisAlignedBoundingBoxCollider bounds, ContactListener<K> listener) {
+        Contact contact = pairs.entities.get(entity.getEntityId());
+        boolean wasTouching = contact != null && contact.touching;
+        boolean touching;
+        if (contact == null || pairs.moved(contact.state, tolerance) || contact.moved(minX, minY, minZ, maxX, maxY, maxZ, tolerance)) {
+            if (contact == null) {
+                contact = new Contact(entity);
+                pairs.entities.put(entity.getEntityId(), contact);
+            }
+            touching = test(collider, bounds, minX, minY, minZ, maxX, maxY, maxZ);
+            contact.set(minX, minY, minZ, maxX, maxY, maxZ);
+            contact.state = pairs.current;
+            pairs.tested = true;
+        } else {
+            skipped++;
+            touching = wasTouching;
+        }
+        contact.stamp = pairs.stamp;
+        contact.touching = touching;
+        if (touching) {
+            if (wasTouching) listener.onStay(key, entity);
+            else listener.onEnter(key, entity);
+        } else if (wasTouching) {
+            listener.onExit(key, entity);
+        }
+        return touching;
+    }
+
+    private boolean test(Collider collider, AxisAlignedBoundingBoxCollider bounds,
+                         double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        tested++;
+        if (bounds == null) {
+            bounds = new AxisAlignedBoundingBoxCollider(collider.getWorld(), new ImmutableVector(minX, minY, minZ), new ImmutableVector(maxX, maxY, maxZ));
+        }
+        return collider.intersects(bounds);
+    }
+
+    /**
+     * Forces the next call of the key to run the narrowphase for every pair, transitions are kept.
+     */
+    public void invalidate(K key) {
+        Contacts pairs = contacts.get(key);
+        if (pairs != null) pairs.valid = false;
+    }
+
+    /**
+     * Forgets every pair of the key, reporting an exit for the touching ones.
+     */
+    public void remove(K key, ContactListener<K> listener) {
+        Contacts pairs = contacts.remove(key);
+        if (pairs == null) return;
+        for (Contact contact : pairs.entities.values()) {
+            if (contact.touching) listener.onExit(key, contact.entity);
+        }
+    }
+
+    public void clear() {
+        contacts.clear();
+    }
+
+    /**
+     * @return narrowphase tests run since creation
+     */
+    public long getTested() {
+        return tested;
+    }
+
+    /**
+     * @return narrowphase tests skipped since creation thanks to a cached result
+     */
+    public long getSkipped() {
+        return skipped;
+    }
+
+    // Pairs of one key, with the collider state of their last narrowphase
+    private static final class Contacts {
+        private final Map<Integer, Contact> entities = new HashMap<>();
+        private int stamp;
+        private boolean valid;
+        // Whether the collider moved away from state, computed once per call
+        private boolean moved;
+        // Whether a narrowphase ran during this call
+        private boolean tested;
+        // Position then bounds of the collider at the last call that ran a narrowphase, never modified once replaced
+        private double[] state;
+        private double[] current = new double[9];
+
+        private void set(ImmutableVector position, ImmutableVector min, ImmutableVector max, double tolerance) {
+            current[0] = position.getX();
+            current[1] = position.getY();
+            current[2] = position.getZ();
+            current[3] = min.getX();
+            current[4] = min.getY();
+            current[5] = min.getZ();
+            current[6] = max.getX();
+            current[7] = max.getY();
+            current[8] = max.getZ();
+            moved = !valid || differs(state, tolerance);
+            valid = true;
+            tested = false;
+        }
+
+        // Whether the collider moved away from the state a pair was last tested at
+        private boolean moved(double[] reference, double tolerance) {
+            return moved || reference != state && differs(reference, tolerance);
+        }
+
+        private boolean differs(double[] reference, double tolerance) {
+            if (reference == null) return true;
+            for (int i = 0; i < 9; i++) {
+                if (Math.abs(current[i] - reference[i]) > tolerance) return true;
+            }
+            return false;
+        }
+
+        // Pairs tested during this call keep the current state, which becomes the reference of the next one
+        private void commit() {
+            if (!tested) return;
+            state = current;
+            current = new double[9];
+        }
+    }
+
+    private static final class Contact {
+        private final Entity entity;
+        private int stamp;
+        private boolean touching;
+        // Collider state of the last narrowphase
+        private double[] state;
+        // Entity bounds at the last narrowphase
+        private double minX;
+        private double minY;
+        private double minZ;
+        private double maxX;
+        private double maxY;
+        private double maxZ;
+
+        private Contact(Entity entity) {
+            this.entity = entity;
+        }
+
+        private void set(double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+            this.minX = minX;
+            this.minY = minY;
+            this.minZ = minZ;
+            this.maxX = maxX;
+            this.maxY = maxY;
+            this.maxZ = maxZ;
+        }
+
+        private boolean moved(double minX, double minY, double minZ, double maxX, double maxY, double maxZ, double tolerance) {
+            return Math.abs(minX - this.minX) > tolerance || Math.abs(minY - this.minY) > tolerance
+                    || Math.abs(minZ - this.minZ) > tolerance || Math.abs(maxX - this.maxX) > tolerance
+                    || Math.abs(maxY - this.maxY) > tolerance || Math.abs(maxZ - this.maxZ) > tolerance;
+        }
+    }
+}
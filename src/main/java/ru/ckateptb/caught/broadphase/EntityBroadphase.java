@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.ckateptb.caught.broadphase;
+
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+import ru.ckateptb.caught.math.ImmutableVector;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Opt-in entity broadphase shared by every collider.
+ * <p>
+ * The first query against a world in a tick snapshots the bounds of its entities into a uniform grid spatial hash,
+ * following queries in the same tick only visit the hash cells they overlap instead of scanning chunk entity lists.
+ * Snapshots are dropped every tick, entities moved later in the same tick are reported at their snapshot position.
+ * Queries are only served on the main thread.
+ */
+public class EntityBroadphase {
+    public static final double DEFAULT_CELL_SIZE = 4;
+
+    private static volatile EntityBroadphase active;
+
+    private final double cellSize;
+    private final Map<World, EntitySnapshot> snapshots = new HashMap<>();
+    private BukkitTask task;
+
+    private EntityBroadphase(double cellSize) {
+        this.cellSize = cellSize;
+    }
+
+    public static EntityBroadphase enable(Plugin plugin) {
+        return enable(plugin, DEFAULT_CELL_SIZE);
+    }
+
+    /**
+     * Enables the broadphase for every {@link ru.ckateptb.caught.Collider#handleEntityCollision} call.
+     *
+     * @param plugin   plugin owning the task that invalidates snapshots each tick
+     * @param cellSize edge length of a grid cell in blocks
+     */
+    public static synchronized EntityBroadphase enable(Plugin plugin, double cellSize) {
+        if (cellSize <= 0) {
+            throw new IllegalArgumentException("Cell size must be positive");
+        }
+        disable();
+        EntityBroadphase broadphase = new EntityBroadphase(cellSize);
+        broadphase.task = Bukkit.getScheduler().runTaskTimer(plugin, broadphase.snapshots::clear, 1, 1);
+        active = broadphase;
+        return broadphase;
+    }
+
+    public static synchronized void disable() {
+        EntityBroadphase broadphase = active;
+        if (broadphase != null) {
+            broadphase.task.cancel();
+            broadphase.snapshots.clear();
+            active = null;
+        }
+    }
+
+    /**
+     * @return the enabled broadphase, or null when the current thread can't use it
+     */
+    public static EntityBroadphase getActive() {
+        EntityBroadphase broadphase = active;
+        return broadphase != null && Bukkit.isPrimaryThread() ? broadphase : null;
+    }
+
+    public boolean query(World world, ImmutableVector min, ImmutableVector max, Predicate<Entity> filter, EntityCandidateCallback callback) {
+        return query(world, min.getX(), min.getY(), min.getZ(), max.getX(), max.getY(), max.getZ(), filter, callback);
+    }
+
+    /**
+     * Visits every entity whose bounds overlap the region, with the same semantics as
+     * {@link World#getNearbyEntities(org.bukkit.util.BoundingBox, Predicate)}.
+     *
+     * @return true if the callback ended the query
+     */
+    public boolean query(World world, double minX, double minY, double minZ, double maxX, double maxY, double maxZ,
+                         Predicate<Entity> filter, EntityCandidateCallback callback) {
+        return snapshot(world).query(minX, minY, minZ, maxX, maxY, maxZ, filter, callback);
+    }
+
+    EntitySnapshot snapshot(World world) {
+        return snapshots.computeIfAbsent(world, this::capture);
+    }
+
+    private EntitySnapshot capture(World world) {
+        return new EntitySnapshot(world, world.getEntities(), cellSize);
+    }
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.ckateptb.caught.broadphase;
+
+import org.bukkit.entity.Entity;
+import ru.ckateptb.caught.callback.CollisionCallbackResult;
+import ru.ckateptb.caught.collider.AxisAlignedBoundingBoxCollider;
+
+public interface EntityCandidateCallback {
+    /**
+     * @param entity entity whose bounds overlap the queried region
+     * @param bounds world space bounds of the entity, captured with the snapshot
+     */
+    CollisionCallbackResult onCandidate(Entity entity, AxisAlignedBoundingBoxCollider bounds);
+}
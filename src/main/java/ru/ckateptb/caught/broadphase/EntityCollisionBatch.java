@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.ckateptb.caught.broadphase;
+
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.util.BoundingBox;
+import ru.ckateptb.caught.Collider;
+import ru.ckateptb.caught.callback.CollisionCallbackResult;
+import ru.ckateptb.caught.callback.EntityPairCollisionCallback;
+import ru.ckateptb.caught.collider.AxisAlignedBoundingBoxCollider;
+import ru.ckateptb.caught.math.ImmutableVector;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Tests many colliders against the entities of their world in a single pass.
+ * <p>
+ * Entities around the colliders of each chunk section are fetched and indexed once (or taken from the {@link EntityBroadphase}
+ * when enabled), every collider then only visits the grid cells it overlaps and reuses the captured entity bounds for the
+ * narrowphase. Grouping by section keeps far apart colliders from turning into one lookup spanning everything between them.
+ */
+public final class EntityCollisionBatch {
+    // Colliders are grouped by the chunk section of their minimum corner
+    private static final int CLUSTER_SHIFT = 4;
+
+    private EntityCollisionBatch() {
+    }
+
+    public static <C extends Collider> boolean handle(Collection<? extends C> colliders, EntityPairCollisionCallback<C> callback) {
+        return handle(colliders, true, false, callback, entity -> true);
+    }
+
+    /**
+     * Reports every (collider, entity) pair that collides, with the same filtering rules as
+     * {@link Collider#handleEntityCollision(boolean, boolean, ru.ckateptb.caught.callback.EntityCollisionCallback, Predicate)}.
+     * Returning {@link CollisionCallbackResult#END} stops reporting further entities for that collider only.
+     *
+     * @return true if at least one pair collided
+     */
+    public static <C extends Collider> boolean handle(Collection<? extends C> colliders, boolean livingOnly, boolean armorStandCollision,
+                                                      EntityPairCollisionCallback<C> callback, Predicate<Entity> filter) {
+        Predicate<Entity> entityFilter = filter.and(Collider.entityFilter(livingOnly, armorStandCollision));
+        Map<World, Map<Long, List<C>>> worlds = new HashMap<>();
+        for (C collider : colliders) {
+            ImmutableVector min = collider.getMin();
+            long cluster = EntitySnapshot.key(cluster(min.getX()), cluster(min.getY()), cluster(min.getZ()));
+            worlds.computeIfAbsent(collider.getWorld(), world -> new HashMap<>())
+                    .computeIfAbsent(cluster, key -> new ArrayList<>()).add(collider);
+        }
+        PairVisitor<C> visitor = new PairVisitor<>(callback);
+        EntityBroadphase broadphase = EntityBroadphase.getActive();
+        for (Map.Entry<World, Map<Long, List<C>>> entry : worlds.entrySet()) {
+            World world = entry.getKey();
+            // The broadphase indexes the whole world once, the clusters only matter for lookups
+            EntitySnapshot shared = broadphase == null ? null : broadphase.snapshot(world);
+            for (List<C> group : entry.getValue().values()) {
+                double[] bounds = new double[group.size() * 6];
+                double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY, minZ = Double.POSITIVE_INFINITY;
+                double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY, maxZ = Double.NEGATIVE_INFINITY;
+                for (int i = 0; i < group.size(); i++) {
+                    C collider = group.get(i);
+                    ImmutableVector min = collider.getMin();
+                    ImmutableVector max = collider.getMax();
+                    int offset = i * 6;
+                    bounds[offset] = min.getX();
+                    bounds[offset + 1] = min.getY();
+                    bounds[offset + 2] = min.getZ();
+                    bounds[offset + 3] = max.getX();
+                    bounds[offset + 4] = max.getY();
+                    bounds[offset + 5] = max.getZ();
+                    minX = Math.min(minX, min.getX());
+                    minY = Math.min(minY, min.getY());
+                    minZ = Math.min(minZ, min.getZ());
+                    maxX = Math.max(maxX, max.getX());
+                    maxY = Math.max(maxY, max.getY());
+                    maxZ = Math.max(maxZ, max.getZ());
+                }
+                EntitySnapshot snapshot = shared;
+                Predicate<Entity> candidateFilter = entityFilter;
+                if (snapshot == null) {
+                    // A single lookup covering the colliders of the section, already filtered
+                    Collection<Entity> entities = world.getNearbyEntities(new BoundingBox(minX, minY, minZ, maxX, maxY, maxZ), entityFilter);
+                    if (entities.isEmpty()) continue;
+                    snapshot = new EntitySnapshot(world, entities, EntityBroadphase.DEFAULT_CELL_SIZE);
+                    candidateFilter = entity -> true;
+                }
+                for (int i = 0; i < group.size(); i++) {
+                    int offset = i * 6;
+                    visitor.collider = group.get(i);
+                    snapshot.query(bounds[offset], bounds[offset + 1], bounds[offset + 2], bounds[offset + 3], bounds[offset + 4], bounds[offset + 5],
+                            candidateFilter, visitor);
+                }
+            }
+        }
+        return visitor.hit;
+    }
+
+    private static int cluster(double coordinate) {
+        return (int) Math.floor(coordinate) >> CLUSTER_SHIFT;
+    }
+
+    private static final class PairVisitor<C extends Collider> implements EntityCandidateCallback {
+        private final EntityPairCollisionCallback<C> callback;
+        private C collider;
+        private boolean hit;
+
+        private PairVisitor(EntityPairCollisionCallback<C> callback) {
+            this.callback = callback;
+        }
+
+        @Override
+        public CollisionCallbackResult onCandidate(Entity entity, AxisAlignedBoundingBoxCollider bounds) {
+            if (!collider.intersects(bounds)) return CollisionCallbackResult.CONTINUE;
+            hit = true;
+            return callback.onCollision(collider, entity);
+        }
+    }
+}
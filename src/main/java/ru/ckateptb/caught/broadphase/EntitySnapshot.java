@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.ckateptb.caught.broadphase;
+
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.util.BoundingBox;
+import ru.ckateptb.caught.callback.CollisionCallbackResult;
+import ru.ckateptb.caught.collider.AxisAlignedBoundingBoxCollider;
+import ru.ckateptb.caught.math.BatchIntersections;
+import ru.ckateptb.caught.math.ImmutableVector;
+import ru.ckateptb.caught.math.Intersections;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.function.Predicate;
+
+/**
+ * Entity bounds of a world captured at one instant, indexed by a uniform grid spatial hash.
+ */
+final class EntitySnapshot {
+    private final World world;
+    private final double inverseCellSize;
+    private final Entity[] entities;
+    // Entity bounds, one array per coordinate so the batch kernel can test them all at once
+    private final double[] minX;
+    private final double[] minY;
+    private final double[] minZ;
+    private final double[] maxX;
+    private final double[] maxY;
+    private final double[] maxZ;
+    private final long[] overlapping; // Bitset of entities passing the batch test
+    private final AxisAlignedBoundingBoxCollider[] colliders; // Built on first use
+    private final long[] visited; // Query stamp per entity, dedupes entities spanning several cells
+    private long stamp; // Only ever increases, so stamps are never reused
+    private int depth; // Queries running, more than one when a callback queries again
+    // Open addressing table from cell key to the head of its member list
+    private final long[] keys;
+    private final int[] heads;
+    private final int mask;
+    private final int[] memberEntity;
+    private final int[] memberNext;
+    private int members;
+
+    EntitySnapshot(World world, Collection<Entity> entities, double cellSize) {
+        this.world = world;
+        this.inverseCellSize = 1 / cellSize;
+        int count = entities.size();
+        this.entities = entities.toArray(new Entity[0]);
+        this.minX = new double[count];
+        this.minY = new double[count];
+        this.minZ = new double[count];
+        this.maxX = new double[count];
+        this.maxY = new double[count];
+        this.maxZ = new double[count];
+        this.overlapping = new long[BatchIntersections.words(count)];
+        this.colliders = new AxisAlignedBoundingBoxCollider[count];
+        this.visited = new long[count];
+        int total = 0;
+        for (int i = 0; i < count; i++) {
+            BoundingBox box = this.entities[i].getBoundingBox();
+            minX[i] = box.getMinX();
+            minY[i] = box.getMinY();
+            minZ[i] = box.getMinZ();
+            maxX[i] = box.getMaxX();
+            maxY[i] = box.getMaxY();
+            maxZ[i] = box.getMaxZ();
+            total += (cell(box.getMaxX()) - cell(box.getMinX()) + 1)
+                    * (cell(box.getMaxY()) - cell(box.getMinY()) + 1)
+                    * (cell(box.getMaxZ()) - cell(box.getMinZ()) + 1);
+        }
+        // At least twice the number of distinct cells, so probing always terminates
+        int capacity = Integer.highestOneBit(Math.max(8, total)) << 2;
+        this.keys = new long[capacity];
+        this.heads = new int[capacity];
+        this.mask = capacity - 1;
+        this.memberEntity = new int[total];
+        this.memberNext = new int[total];
+        Arrays.fill(heads, -1);
+        for (int i = 0; i < count; i++) {
+            for (int x = cell(minX[i]); x <= cell(maxX[i]); x++) {
+                for (int y = cell(minY[i]); y <= cell(maxY[i]); y++) {
+                    for (int z = cell(minZ[i]); z <= cell(maxZ[i]); z++) {
+                        insert(key(x, y, z), i);
+                    }
+                }
+            }
+        }
+    }
+
+    boolean query(double minX, double minY, double minZ, double maxX, double maxY, double maxZ,
+                          Predicate<Entity> filter, EntityCandidateCallback callback) {
+        depth++;
+        try {
+            return search(minX, minY, minZ, maxX, maxY, maxZ, filter, callback);
+        } finally {
+            depth--;
+        }
+    }
+
+    private boolean search(double minX, double minY, double minZ, double maxX, double maxY, double maxZ,
+                           Predicate<Entity> filter, EntityCandidateCallback callback) {
+        int fromX = cell(minX), toX = cell(maxX);
+        int fromY = cell(minY), toY = cell(maxY);
+        int fromZ = cell(minZ), toZ = cell(maxZ);
+        long cells = (long) (toX - fromX + 1) * (toY - fromY + 1) * (toZ - fromZ + 1);
+        if (cells > entities.length) {
+            // Visiting the cells would cost more than testing every entity, test them all in one batch
+            // A query nested in a callback would overwrite the bits the outer one is iterating, so it gets its own
+            long[] overlapping = depth == 1 ? this.overlapping : new long[this.overlapping.length];
+            BatchIntersections.aabbIntersectsAabbs(minX, minY, minZ, maxX, maxY, maxZ,
+                    this.minX, this.minY, this.minZ, this.maxX, this.maxY, this.maxZ, entities.length, overlapping);
+            for (int word = 0; word < overlapping.length; word++) {
+                for (long bits = overlapping[word]; bits != 0; bits &= bits - 1) {
+                    if (accept((word << 6) + Long.numberOfTrailingZeros(bits), filter, callback)) return true;
+                }
+            }
+            return false;
+        }
+        // Same for the marks of a nested query
+        long[] visited = depth == 1 ? this.visited : new long[entities.length];
+        long stamp = ++this.stamp;
+        for (int x = fromX; x <= toX; x++) {
+            for (int y = fromY; y <= toY; y++) {
+                for (int z = fromZ; z <= toZ; z++) {
+                    for (int member = find(key(x, y, z)); member != -1; member = memberNext[member]) {
+                        int index = memberEntity[member];
+                        if (visited[index] == stamp) continue;
+                        visited[index] = stamp;
+                        if (visit(index, minX, minY, minZ, maxX, maxY, maxZ, filter, callback)) return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean visit(int index, double minX, double minY, double minZ, double maxX, double maxY, double maxZ,
+                          Predicate<Entity> filter, EntityCandidateCallback callback) {
+        if (!Intersections.aabbIntersectsAabb(this.minX[index], this.minY[index], this.minZ[index],
+                this.maxX[index], this.maxY[index], this.maxZ[index], minX, minY, minZ, maxX, maxY, maxZ)) {
+            return false;
+        }
+        return accept(index, filter, callback);
+    }
+
+    private boolean accept(int index, Predicate<Entity> filter, EntityCandidateCallback callback) {
+        Entity entity = entities[index];
+        if (!entity.isValid() || !filter.test(entity)) return false;
+        AxisAlignedBoundingBoxCollider collider = colliders[index];
+        if (collider == null) {
+            collider = new AxisAlignedBoundingBoxCollider(world,
+                    new ImmutableVector(minX[index], minY[index], minZ[index]),
+                    new ImmutableVector(maxX[index], maxY[index], maxZ[index]));
+            colliders[index] = collider;
+        }
+        return callback.onCandidate(entity, collider) == CollisionCallbackResult.END;
+    }
+
+    private int cell(double coordinate) {
+        return (int) Math.floor(coordinate * inverseCellSize);
+    }
+
+    static long key(int x, int y, int z) {
+        return ((long) (x & 0x1FFFFF) << 42) | ((long) (y & 0x1FFFFF) << 21) | (z & 0x1FFFFF);
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private int slot(long key) {
+        int slot = hash(key) & mask;
+        while (heads[slot] != -1 && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private int find(long key) {
+        return heads[slot(key)];
+    }
+
+    private void insert(long key, int entity) {
+        int slot = slot(key);
+        keys[slot] = key;
+        memberEntity[members] = entity;
+        memberNext[members] = heads[slot];
+        heads[slot] = members++;
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.ckateptb.caught.broadphase;
+
+import org.bukkit.World;
+import ru.ckateptb.caught.Collider;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Current {@link StaticColliderTree} of a world, replaced atomically by trees rebuilt in the background.
+ * <p>
+ * Readers get the tree once per lookup with {@link #get()} and keep using it even if a newer one is installed meanwhile.
+ * When several rebuilds overlap, the tree of the latest request wins regardless of which build finishes first.
+ */
+public class StaticColliderIndex {
+    private final World world;
+    private volatile StaticColliderTree tree;
+    private long requested; // Generation of the latest rebuild or set
+    private long installed; // Generation of the current tree
+
+    public StaticColliderIndex(World world) {
+        this.world = world;
+        this.tree = new StaticColliderTree(world, List.of());
+    }
+
+    public World getWorld() {
+        return world;
+    }
+
+    public StaticColliderTree get() {
+        return tree;
+    }
+
+    /**
+     * Builds the tree on the calling thread and installs it.
+     */
+    public StaticColliderTree set(List<? extends Collider> colliders) {
+        long generation = request();
+        StaticColliderTree tree = new StaticColliderTree(world, colliders);
+        install(generation, tree);
+        return tree;
+    }
+
+    public CompletableFuture<StaticColliderTree> rebuild(List<? extends Collider> colliders) {
+        return rebuild(colliders, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Builds a tree on the executor and installs it, unless a later rebuild or set was requested in the meantime.
+     * The list is copied on the calling thread, its colliders must not be moved while the build runs.
+     *
+     * @return the built tree, completed after it is installed
+     */
+    public CompletableFuture<StaticColliderTree> rebuild(List<? extends Collider> colliders, Executor executor) {
+        long generation = request();
+        List<Collider> copy = List.copyOf(colliders);
+        return CompletableFuture.supplyAsync(() -> {
+            StaticColliderTree tree = new StaticColliderTree(world, copy);
+            install(generation, tree);
+            return tree;
+        }, executor);
+    }
+
+    private synchronized long request() {
+        return ++requested;
+    }
+
+    private synchronized void install(long generation, StaticColliderTree tree) {
+        if (generation < installed) return;
+        installed = generation;
+        this.tree = tree;
+    }
+}
@@ -0,0 +1,359 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.ckateptb.caught.broadphase;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import ru.ckateptb.caught.Collider;
+import ru.ckateptb.caught.callback.BoxCollisionCallback;
+import ru.ckateptb.caught.callback.CollisionCallbackResult;
+import ru.ckateptb.caught.math.ImmutableVector;
+import ru.ckateptb.caught.math.Intersections;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Immutable R-tree over static colliders of one world, bulk loaded with Sort-Tile-Recursive packing, see Leutenegger
+ * et al. "STR: A Simple and Efficient Algorithm for R-Tree Packing".
+ * <p>
+ * Every node but the last of each level holds {@link #NODE_CAPACITY} children, so point lookups visit a logarithmic
+ * number of nodes. The id of a collider is its index in the list the tree was built from. The tree is never modified
+ * once built, so it can be built on any thread and queried from several at once, as long as its colliders aren't
+ * moved. See {@link StaticColliderIndex} to rebuild one in the background.
+ */
+public class StaticColliderTree {
+    public static final int NODE_CAPACITY = 8;
+    private static final int NULL = -1;
+
+    private final World world;
+    // Colliders in tree order, with their bounds
+    private final Collider[] colliders;
+    private final int[] ids;
+    private final int[] positions; // Tree order position of each id
+    private final double[] minX;
+    private final double[] minY;
+    private final double[] minZ;
+    private final double[] maxX;
+    private final double[] maxY;
+    private final double[] maxZ;
+    // Nodes level by level from the leaves up, the root is the last one
+    private final double[] nodeMinX;
+    private final double[] nodeMinY;
+    private final double[] nodeMinZ;
+    private final double[] nodeMaxX;
+    private final double[] nodeMaxY;
+    private final double[] nodeMaxZ;
+    private final int[] nodeStart; // First child, a collider for leaf nodes and a node otherwise
+    private final int[] nodeCount;
+    private final int leafNodes; // Nodes below this index are leaves
+    private final int root;
+    private final int height;
+
+    /**
+     * @param colliders static colliders of the world, their index in the list is their id
+     * @throws IllegalArgumentException if a collider belongs to another world
+     */
+    public StaticColliderTree(World world, List<? extends Collider> colliders) {
+        this.world = world;
+        int count = colliders.size();
+        this.colliders = new Collider[count];
+        this.ids = new int[count];
+        this.positions = new int[count];
+        this.minX = new double[count];
+        this.minY = new double[count];
+        this.minZ = new double[count];
+        this.maxX = new double[count];
+        this.maxY = new double[count];
+        this.maxZ = new double[count];
+        for (int i = 0; i < count; i++) {
+            Collider collider = colliders.get(i);
+            if (!world.equals(collider.getWorld())) {
+                throw new IllegalArgumentException("Collider " + i + " belongs to another world");
+            }
+            ImmutableVector min = collider.getMin();
+            ImmutableVector max = collider.getMax();
+            this.ids[i] = i;
+            this.minX[i] = min.getX();
+            this.minY[i] = min.getY();
+            this.minZ[i] = min.getZ();
+            this.maxX[i] = max.getX();
+            this.maxY[i] = max.getY();
+            this.maxZ[i] = max.getZ();
+        }
+        int nodes = 0;
+        int levels = 0;
+        for (int level = count; level > 1 || (level == 1 && levels == 0); level = groups(level)) {
+            nodes += groups(level);
+            levels++;
+        }
+        this.nodeMinX = new double[nodes];
+        this.nodeMinY = new double[nodes];
+        this.nodeMinZ = new double[nodes];
+        this.nodeMaxX = new double[nodes];
+        this.nodeMaxY = new double[nodes];
+        this.nodeMaxZ = new double[nodes];
+        this.nodeStart = new int[nodes];
+        this.nodeCount = new int[nodes];
+        this.height = levels;
+        if (count == 0) {
+            this.leafNodes = 0;
+            this.root = NULL;
+            return;
+        }
+        // Leaves over the colliders, then every level over the one below until a single node remains
+        permute(tileOrder(minX, minY, minZ, maxX, maxY, maxZ, 0, count), 0, new int[][]{ids}, minX, minY, minZ, maxX, maxY, maxZ);
+        for (int i = 0; i < count; i++) {
+            this.colliders[i] = colliders.get(ids[i]);
+            this.positions[ids[i]] = i;
+        }
+        this.leafNodes = pack(0, count, 0, true);
+        int from = 0;
+        int to = leafNodes;
+        while (to - from > 1) {
+            permute(tileOrder(nodeMinX, nodeMinY, nodeMinZ, nodeMaxX, nodeMaxY, nodeMaxZ, from, to - from), from,
+                    new int[][]{nodeStart, nodeCount}, nodeMinX, nodeMinY, nodeMinZ, nodeMaxX, nodeMaxY, nodeMaxZ);
+            int next = pack(from, to - from, to, false);
+            from = to;
+            to = next;
+        }
+        this.root = to - 1;
+    }
+
+    public World getWorld() {
+        return world;
+    }
+
+    public int size() {
+        return colliders.length;
+    }
+
+    public boolean isEmpty() {
+        return colliders.length == 0;
+    }
+
+    /**
+     * @return number of node levels, 0 when empty
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @throws IndexOutOfBoundsException if there is no collider with the given id
+     */
+    public Collider get(int id) {
+        if (id < 0 || id >= positions.length) {
+            throw new IndexOutOfBoundsException("No collider with id " + id);
+        }
+        return colliders[positions[id]];
+    }
+
+    /**
+     * @return ids of the colliders containing the location in ascending order, none if it is in another world
+     */
+    public int[] query(Location location) {
+        if (!world.equals(location.getWorld())) return new int[0];
+        return query(location.getX(), location.getY(), location.getZ());
+    }
+
+    /**
+     * @return ids of the colliders containing the point in ascending order
+     */
+    public int[] query(double x, double y, double z) {
+        IdCollector collector = new IdCollector();
+        query(x, y, z, collector);
+        return collector.toArray();
+    }
+
+    /**
+     * @return ids of the colliders intersecting the given one in ascending order
+     */
+    public int[] query(Collider collider) {
+        IdCollector collector = new IdCollector();
+        query(collider, collector);
+        return collector.toArray();
+    }
+
+    /**
+     * Visits every collider containing the point.
+     *
+     * @return true if the callback ended the query
+     */
+    public boolean query(double x, double y, double z, BoxCollisionCallback callback) {
+        return root != NULL && query(root, x, y, z, callback);
+    }
+
+    /**
+     * Visits every collider intersecting the given one, culled by their bounds then tested with
+     * {@link Collider#mayIntersect} and {@link Collider#intersects}.
+     *
+     * @return true if the callback ended the query
+     */
+    public boolean query(Collider collider, BoxCollisionCallback callback) {
+        if (root == NULL || !world.equals(collider.getWorld())) return false;
+        ImmutableVector min = collider.getMin();
+        ImmutableVector max = collider.getMax();
+        return query(root, collider, min.getX(), min.getY(), min.getZ(), max.getX(), max.getY(), max.getZ(), callback);
+    }
+
+    private boolean query(int node, double x, double y, double z, BoxCollisionCallback callback) {
+        if (!Intersections.aabbContains(nodeMinX[node], nodeMinY[node], nodeMinZ[node],
+                nodeMaxX[node], nodeMaxY[node], nodeMaxZ[node], x, y, z)) {
+            return false;
+        }
+        int end = nodeStart[node] + nodeCount[node];
+        if (node < leafNodes) {
+            for (int i = nodeStart[node]; i < end; i++) {
+                if (!Intersections.aabbContains(minX[i], minY[i], minZ[i], maxX[i], maxY[i], maxZ[i], x, y, z)) continue;
+                if (colliders[i].contains(x, y, z) && callback.onCollision(ids[i]) == CollisionCallbackResult.END) return true;
+            }
+            return false;
+        }
+        for (int child = nodeStart[node]; child < end; child++) {
+            if (query(child, x, y, z, callback)) return true;
+        }
+        return false;
+    }
+
+    private boolean query(int node, Collider collider, double minX, double minY, double minZ, double maxX, double maxY, double maxZ,
+                          BoxCollisionCallback callback) {
+        if (!Intersections.aabbIntersectsAabb(nodeMinX[node], nodeMinY[node], nodeMinZ[node],
+                nodeMaxX[node], nodeMaxY[node], nodeMaxZ[node], minX, minY, minZ, maxX, maxY, maxZ)) {
+            return false;
+        }
+        int end = nodeStart[node] + nodeCount[node];
+        if (node < leafNodes) {
+            for (int i = nodeStart[node]; i < end; i++) {
+                if (!Intersections.aabbIntersectsAabb(this.minX[i], this.minY[i], this.minZ[i],
+                        this.maxX[i], this.maxY[i], this.maxZ[i], minX, minY, minZ, maxX, maxY, maxZ)) {
+                    continue;
+                }
+                if (!collider.mayIntersect(this.minX[i], this.minY[i], this.minZ[i], this.maxX[i], this.maxY[i], this.maxZ[i])
+                        || !collider.intersects(colliders[i])) {
+                    continue;
+                }
+                if (callback.onCollision(ids[i]) == CollisionCallbackResult.END) return true;
+            }
+            return false;
+        }
+        for (int child = nodeStart[node]; child < end; child++) {
+            if (query(child, collider, minX, minY, minZ, maxX, maxY, maxZ, callback)) return true;
+        }
+        return false;
+    }
+
+    private static int groups(int count) {
+        return (count + NODE_CAPACITY - 1) / NODE_CAPACITY;
+    }
+
+    // Groups consecutive entries of a level into nodes written from the given index, returns the index after the last
+    private int pack(int from, int count, int to, boolean leaves) {
+        double[] minX = leaves ? this.minX : nodeMinX;
+        double[] minY = leaves ? this.minY : nodeMinY;
+        double[] minZ = leaves ? this.minZ : nodeMinZ;
+        double[] maxX = leaves ? this.maxX : nodeMaxX;
+        double[] maxY = leaves ? this.maxY : nodeMaxY;
+        double[] maxZ = leaves ? this.maxZ : nodeMaxZ;
+        for (int start = from; start < from + count; start += NODE_CAPACITY, to++) {
+            int end = Math.min(start + NODE_CAPACITY, from + count);
+            nodeStart[to] = start;
+            nodeCount[to] = end - start;
+            nodeMinX[to] = Double.POSITIVE_INFINITY;
+            nodeMinY[to] = Double.POSITIVE_INFINITY;
+            nodeMinZ[to] = Double.POSITIVE_INFINITY;
+            nodeMaxX[to] = Double.NEGATIVE_INFINITY;
+            nodeMaxY[to] = Double.NEGATIVE_INFINITY;
+            nodeMaxZ[to] = Double.NEGATIVE_INFINITY;
+            for (int i = start; i < end; i++) {
+                nodeMinX[to] = Math.min(nodeMinX[to], minX[i]);
+                nodeMinY[to] = Math.min(nodeMinY[to], minY[i]);
+                nodeMinZ[to] = Math.min(nodeMinZ[to], minZ[i]);
+                nodeMaxX[to] = Math.max(nodeMaxX[to], maxX[i]);
+                nodeMaxY[to] = Math.max(nodeMaxY[to], maxY[i]);
+                nodeMaxZ[to] = Math.max(nodeMaxZ[to], maxZ[i]);
+            }
+        }
+        return to;
+    }
+
+    /**
+     * Sort-Tile-Recursive order of a level: sorted by center x into slabs, each slab by center y into runs, each run by
+     * center z, so consecutive groups of {@link #NODE_CAPACITY} entries are compact tiles.
+     *
+     * @return offsets from {@code from} in tile order
+     */
+    private static int[] tileOrder(double[] minX, double[] minY, double[] minZ, double[] maxX, double[] maxY, double[] maxZ,
+                                   int from, int count) {
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        int slices = (int) Math.ceil(Math.cbrt(groups(count)));
+        int run = NODE_CAPACITY * slices;
+        int slab = run * slices;
+        Arrays.sort(order, Comparator.comparingDouble(i -> minX[from + i] + maxX[from + i]));
+        for (int slabStart = 0; slabStart < count; slabStart += slab) {
+            int slabEnd = Math.min(slabStart + slab, count);
+            Arrays.sort(order, slabStart, slabEnd, Comparator.comparingDouble(i -> minY[from + i] + maxY[from + i]));
+            for (int runStart = slabStart; runStart < slabEnd; runStart += run) {
+                Arrays.sort(order, runStart, Math.min(runStart + run, slabEnd), Comparator.comparingDouble(i -> minZ[from + i] + maxZ[from + i]));
+            }
+        }
+        int[] result = new int[count];
+        for (int i = 0; i < count; i++) {
+            result[i] = order[i];
+        }
+        return result;
+    }
+
+    // Reorders the entries starting at from in every given array
+    private static void permute(int[] order, int from, int[][] ints, double[]... doubles) {
+        for (int[] array : ints) {
+            int[] source = Arrays.copyOfRange(array, from, from + order.length);
+            for (int i = 0; i < order.length; i++) {
+                array[from + i] = source[order[i]];
+            }
+        }
+        for (double[] array : doubles) {
+            double[] source = Arrays.copyOfRange(array, from, from + order.length);
+            for (int i = 0; i < order.length; i++) {
+                array[from + i] = source[order[i]];
+            }
+        }
+    }
+
+    private static final class IdCollector implements BoxCollisionCallback {
+        private int[] ids = new int[8];
+        private int size;
+
+        @Override
+        public CollisionCallbackResult onCollision(int id) {
+            if (size == ids.length) ids = Arrays.copyOf(ids, size * 2);
+            ids[size++] = id;
+            return CollisionCallbackResult.CONTINUE;
+        }
+
+        private int[] toArray() {
+            int[] result = Arrays.copyOf(ids, size);
+            Arrays.sort(result);
+            return result;
+        }
+    }
+}
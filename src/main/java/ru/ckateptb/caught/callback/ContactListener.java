@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.ckateptb.caught.callback;
+
+import org.bukkit.entity.Entity;
+
+/**
+ * Contact transitions reported by a {@link ru.ckateptb.caught.broadphase.ContactCache}.
+ */
+public interface ContactListener<K> {
+    /**
+     * The collider started touching the entity.
+     */
+    default void onEnter(K key, Entity entity) {
+    }
+
+    /**
+     * The collider still touches the entity.
+     */
+    default void onStay(K key, Entity entity) {
+    }
+
+    /**
+     * The collider stopped touching the entity, or the entity left the query.
+     */
+    default void onExit(K key, Entity entity) {
+    }
+}
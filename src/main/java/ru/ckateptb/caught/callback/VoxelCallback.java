@@ -0,0 +1,29 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.ckateptb.caught.callback;
+
+import org.bukkit.block.BlockFace;
+
+@FunctionalInterface
+public interface VoxelCallback {
+    /**
+     * @param distance distance along the ray at which the voxel is entered
+     * @param face     face of the voxel the ray enters through, {@link BlockFace#SELF} if it starts inside
+     */
+    CollisionCallbackResult onVoxel(int x, int y, int z, double distance, BlockFace face);
+}
@@ -17,6 +17,7 @@
 
 package ru.ckateptb.caught.collider;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 import org.bukkit.World;
 import org.bukkit.block.Block;
@@ -26,12 +27,37 @@ import org.bukkit.util.Vector;
 import ru.ckateptb.caught.AbstractCollider;
 import ru.ckateptb.caught.Collider;
 import ru.ckateptb.caught.math.ImmutableVector;
+import ru.ckateptb.caught.math.Intersections;
 
 @Getter
 public class AxisAlignedBoundingBoxCollider extends AbstractCollider {
     private final ImmutableVector min;
     private final ImmutableVector max;
-    private final ImmutableVector position;
+    // Built on first use after a move by coordinates
+    @Getter(AccessLevel.NONE)
+    private ImmutableVector position;
+    @Getter(AccessLevel.NONE)
+    private double positionX;
+    @Getter(AccessLevel.NONE)
+    private double positionY;
+    @Getter(AccessLevel.NONE)
+    private double positionZ;
+    // World space bounds, kept as primitives so that narrowphase tests don't allocate
+    private double minX;
+    private double minY;
+    private double minZ;
+    private double maxX;
+    private double maxY;
+    private double maxZ;
+    // Derived vectors, built on first use
+    @Getter(AccessLevel.NONE)
+    private ImmutableVector worldMin;
+    @Getter(AccessLevel.NONE)
+    private ImmutableVector worldMax;
+    @Getter(AccessLevel.NONE)
+    private ImmutableVector center;
+    @Getter(AccessLevel.NONE)
+    private ImmutableVector halfExtents; // Doesn't depend on the position
 
     public AxisAlignedBoundingBoxCollider(Entity entity) {
         super(entity.getWorld());
@@ -40,6 +66,12 @@ public class AxisAlignedBoundingBoxCollider extends AbstractCollider {
         this.min = new ImmutableVector(boundingBox.getMin());
         this.max = new ImmutableVector(boundingBox.getMax());
         this.position = new ImmutableVector(entity.getLocation());
+        this.minX = min.getX() + position.getX();
+        this.minY = min.getY() + position.getY();
+        this.minZ = min.getZ() + position.getZ();
+        this.maxX = max.getX() + position.getX();
+        this.maxY = max.getY() + position.getY();
+        this.maxZ = max.getZ() + position.getZ();
     }
 
     public AxisAlignedBoundingBoxCollider(Block block) {
@@ -50,6 +82,12 @@ public class AxisAlignedBoundingBoxCollider extends AbstractCollider {
         this.min = liquid ? ImmutableVector.ZERO : new ImmutableVector(boundingBox.getMin());
         this.max = liquid ? ImmutableVector.ONE : new ImmutableVector(boundingBox.getMax());
         this.position = new ImmutableVector(block.getLocation());
+        this.minX = min.getX() + position.getX();
+        this.minY = min.getY() + position.getY();
+        this.minZ = min.getZ() + position.getZ();
+        this.maxX = max.getX() + position.getX();
+        this.maxY = max.getY() + position.getY();
+        this.maxZ = max.getZ() + position.getZ();
     }
 
     public AxisAlignedBoundingBoxCollider(World world, Vector min, Vector max) {
@@ -61,42 +99,54 @@ public class AxisAlignedBoundingBoxCollider extends AbstractCollider {
         this.min = new ImmutableVector(min);
         this.max = new ImmutableVector(max);
         this.position = new ImmutableVector(position);
+        this.minX = this.min.getX() + this.position.getX();
+        this.minY = this.min.getY() + this.position.getY();
+        this.minZ = this.min.getZ() + this.position.getZ();
+        this.maxX = this.max.getX() + this.position.getX();
+        this.maxY = this.max.getY() + this.position.getY();
+        this.maxZ = this.max.getZ() + this.position.getZ();
     }
 
     @Override
     public boolean intersects(Collider collider) {
-        if (!collider.getWorld().equals(world)) {
-            return false;
-        }
-        if (collider instanceof AxisAlignedBoundingBoxCollider axisAlignedBoundingBoxCollider) {
-            return intersects(axisAlignedBoundingBoxCollider);
-        }
-        if (collider instanceof SphereCollider sphereCollider) {
-            return sphereCollider.intersects(this);
-        }
-        if (collider instanceof RayCollider rayCollider) {
-            return rayCollider.intersects(this);
-        }
-        if (collider instanceof OrientedBoundingBoxCollider orientedBoundingBoxCollider) {
-            return orientedBoundingBoxCollider.intersects(this);
-        }
-        if (collider instanceof CompositeCollider compositeCollider) {
-            return compositeCollider.intersects(this);
-        }
-        return false;
+        return IntersectionMatrix.intersects(this, collider);
     }
 
-    private boolean intersects(AxisAlignedBoundingBoxCollider collider) {
-        return this.toBoundingBox().overlaps(collider.toBoundingBox());
+    boolean intersects(AxisAlignedBoundingBoxCollider collider) {
+        return Intersections.aabbIntersectsAabb(minX, minY, minZ, maxX, maxY, maxZ,
+                collider.minX, collider.minY, collider.minZ, collider.maxX, collider.maxY, collider.maxZ);
+    }
+
+    @Override
+    public int getShapeType() {
+        return IntersectionMatrix.AXIS_ALIGNED_BOUNDING_BOX;
     }
 
     @Override
     public ImmutableVector getPosition() {
+        if (position == null) {
+            position = new ImmutableVector(positionX, positionY, positionZ);
+        }
         return position;
     }
 
     public ImmutableVector getCenter() {
-        return getMin().add(getMax().subtract(getMin()).multiply(0.5));
+        if (center == null) {
+            center = new ImmutableVector(getCenterX(), getCenterY(), getCenterZ());
+        }
+        return center;
+    }
+
+    public double getCenterX() {
+        return (minX + maxX) * 0.5;
+    }
+
+    public double getCenterY() {
+        return (minY + maxY) * 0.5;
+    }
+
+    public double getCenterZ() {
+        return (minZ + maxZ) * 0.5;
     }
 
     @Override
@@ -104,26 +154,67 @@ public class AxisAlignedBoundingBoxCollider extends AbstractCollider {
         return new AxisAlignedBoundingBoxCollider(world, min, max, point);
     }
 
+    void moveTo(ImmutableVector point) {
+        moveTo(point.getX(), point.getY(), point.getZ());
+        this.position = point;
+    }
+
+    void moveTo(double x, double y, double z) {
+        this.position = null;
+        this.positionX = x;
+        this.positionY = y;
+        this.positionZ = z;
+        this.minX = min.getX() + x;
+        this.minY = min.getY() + y;
+        this.minZ = min.getZ() + z;
+        this.maxX = max.getX() + x;
+        this.maxY = max.getY() + y;
+        this.maxZ = max.getZ() + z;
+        this.worldMin = null;
+        this.worldMax = null;
+        this.center = null;
+    }
+
     @Override
     public ImmutableVector getHalfExtents() {
-        return max.subtract(min).multiply(0.5).abs();
+        if (halfExtents == null) {
+            halfExtents = new ImmutableVector(Math.abs(max.getX() - min.getX()) * 0.5,
+                    Math.abs(max.getY() - min.getY()) * 0.5, Math.abs(max.getZ() - min.getZ()) * 0.5);
+        }
+        return halfExtents;
     }
 
     @Override
     public boolean contains(ImmutableVector point) {
-        return point.isInAABB(this);
+        return contains(point.getX(), point.getY(), point.getZ());
     }
 
+    @Override
+    public boolean contains(double x, double y, double z) {
+        return Intersections.aabbContains(minX, minY, minZ, maxX, maxY, maxZ, x, y, z);
+    }
+
+    @Override
     public ImmutableVector getMin() {
-        return min.add(position);
+        if (worldMin == null) {
+            worldMin = new ImmutableVector(minX, minY, minZ);
+        }
+        return worldMin;
     }
 
+    @Override
     public ImmutableVector getMax() {
-        return max.add(position);
+        if (worldMax == null) {
+            worldMax = new ImmutableVector(maxX, maxY, maxZ);
+        }
+        return worldMax;
     }
 
+    /**
+     * @return a new box on every call, since bukkit boxes are mutable
+     */
     public BoundingBox toBoundingBox() {
-        return BoundingBox.of(this.getMin(), this.getMax());
+        return new BoundingBox(minX, minY, minZ, maxX, maxY, maxZ);
     }
 
     public AxisAlignedBoundingBoxCollider grow(double x, double y, double z) {
@@ -147,6 +238,6 @@ public class AxisAlignedBoundingBoxCollider extends AbstractCollider {
     }
 
     public AxisAlignedBoundingBoxCollider grow(Vector diff) {
-        return new AxisAlignedBoundingBoxCollider(world, min.subtract(diff), max.add(diff), position);
+        return new AxisAlignedBoundingBoxCollider(world, min.subtract(diff), max.add(diff), getPosition());
     }
 }
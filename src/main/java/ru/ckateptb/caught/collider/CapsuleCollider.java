@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.ckateptb.caught.collider;
+
+import lombok.Getter;
+import org.bukkit.World;
+import org.bukkit.util.Vector;
+import ru.ckateptb.caught.AbstractCollider;
+import ru.ckateptb.caught.Collider;
+import ru.ckateptb.caught.math.ImmutableVector;
+import ru.ckateptb.caught.math.Intersections;
+
+/**
+ * Every point within {@link #getRadius()} of the segment between {@link #getStart()} and {@link #getEnd()}.
+ */
+@Getter
+public class CapsuleCollider extends AbstractCollider {
+    private ImmutableVector start;
+    private ImmutableVector end;
+    private final double radius;
+    private ImmutableVector position;
+
+    public CapsuleCollider(World world, Vector start, Vector end, double radius) {
+        super(world);
+        this.start = new ImmutableVector(start);
+        this.end = new ImmutableVector(end);
+        this.radius = radius;
+        this.position = new ImmutableVector((this.start.getX() + this.end.getX()) * 0.5,
+                (this.start.getY() + this.end.getY()) * 0.5, (this.start.getZ() + this.end.getZ()) * 0.5);
+    }
+
+    @Override
+    public boolean intersects(Collider collider) {
+        return IntersectionMatrix.intersects(this, collider);
+    }
+
+    boolean intersects(AxisAlignedBoundingBoxCollider collider) {
+        return Intersections.segmentDistanceSquaredToAabb(start.getX(), start.getY(), start.getZ(), end.getX(), end.getY(), end.getZ(),
+                collider.getMinX(), collider.getMinY(), collider.getMinZ(), collider.getMaxX(), collider.getMaxY(), collider.getMaxZ()) <= radius * radius;
+    }
+
+    boolean intersects(SphereCollider collider) {
+        double reach = radius + collider.radius;
+        return Intersections.distanceSquaredToSegment(collider.center.getX(), collider.center.getY(), collider.center.getZ(),
+                start.getX(), start.getY(), start.getZ(), end.getX(), end.getY(), end.getZ()) <= reach * reach;
+    }
+
+    boolean intersects(OrientedBoundingBoxCollider collider) {
+        return collider.intersectsCapsule(start.getX(), start.getY(), start.getZ(), end.getX(), end.getY(), end.getZ(), radius);
+    }
+
+    boolean intersects(CapsuleCollider collider) {
+        double reach = radius + collider.radius;
+        return Intersections.segmentDistanceSquared(start.getX(), start.getY(), start.getZ(), end.getX(), end.getY(), end.getZ(),
+                collider.start.getX(), collider.start.getY(), collider.start.getZ(),
+                collider.end.getX(), collider.end.getY(), collider.end.getZ(), null) <= reach * reach;
+    }
+
+    boolean intersects(CylinderCollider collider) {
+        return collider.intersectsCapsule(start.getX(), start.getY(), start.getZ(), end.getX(), end.getY(), end.getZ(), radius);
+    }
+
+    @Override
+    public boolean mayIntersect(double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        return Intersections.segmentDistanceSquaredToAabb(start.getX(), start.getY(), start.getZ(), end.getX(), end.getY(), end.getZ(),
+                minX, minY, minZ, maxX, maxY, maxZ) <= radius * radius;
+    }
+
+    @Override
+    public int getShapeType() {
+        return IntersectionMatrix.CAPSULE;
+    }
+
+    @Override
+    public ImmutableVector getPosition() {
+        return position;
+    }
+
+    @Override
+    public CapsuleCollider at(Vector point) {
+        ImmutableVector offset = new ImmutableVector(point).subtract(position);
+        return new CapsuleCollider(world, start.add(offset), end.add(offset), radius);
+    }
+
+    void moveTo(ImmutableVector point) {
+        ImmutableVector offset = point.subtract(position);
+        this.start = start.add(offset);
+        this.end = end.add(offset);
+        this.position = point;
+    }
+
+    @Override
+    public ImmutableVector getHalfExtents() {
+        return new ImmutableVector(Math.abs(end.getX() - start.getX()) * 0.5 + radius,
+                Math.abs(end.getY() - start.getY()) * 0.5 + radius, Math.abs(end.getZ() - start.getZ()) * 0.5 + radius);
+    }
+
+    @Override
+    public boolean contains(ImmutableVector point) {
+        return contains(point.getX(), point.getY(), point.getZ());
+    }
+
+    @Override
+    public boolean contains(double x, double y, double z) {
+        return Intersections.distanceSquaredToSegment(x, y, z,
+                start.getX(), start.getY(), start.getZ(), end.getX(), end.getY(), end.getZ()) <= radius * radius;
+    }
+}
@@ -0,0 +1,269 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.ckateptb.caught.collider;
+
+import ru.ckateptb.caught.Collider;
+import ru.ckateptb.caught.math.ImmutableVector;
+import ru.ckateptb.caught.math.Intersections;
+
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Bounding volume hierarchy over the children of a {@link CompositeCollider}, built once by median splits along the
+ * longest axis of the child centers. Every node covers a contiguous range of the reordered children.
+ */
+final class ChildHierarchy {
+    private static final int LEAF_SIZE = 2;
+
+    private final Collider[] children;
+    private final double[] bounds; // minX, minY, minZ, maxX, maxY, maxZ per child, in hierarchy order
+    private final double[] nodeBounds; // Same layout per node, the root is node 0
+    private final int[] nodeStart;
+    private final int[] nodeEnd;
+    private final int[] nodeLeft; // Index of the left child node, the right one follows it, -1 for leaves
+    private int nodeCount;
+
+    ChildHierarchy(List<Collider> colliders) {
+        int count = colliders.size();
+        this.children = colliders.toArray(new Collider[0]);
+        this.bounds = new double[count * 6];
+        for (int i = 0; i < count; i++) {
+            ImmutableVector min = children[i].getMin();
+            ImmutableVector max = children[i].getMax();
+            int offset = i * 6;
+            bounds[offset] = min.getX();
+            bounds[offset + 1] = min.getY();
+            bounds[offset + 2] = min.getZ();
+            bounds[offset + 3] = max.getX();
+            bounds[offset + 4] = max.getY();
+            bounds[offset + 5] = max.getZ();
+        }
+        int capacity = Math.max(1, 2 * count);
+        this.nodeBounds = new double[capacity * 6];
+        this.nodeStart = new int[capacity];
+        this.nodeEnd = new int[capacity];
+        this.nodeLeft = new int[capacity];
+        build(0, count);
+    }
+
+    private void build(int start, int end) {
+        nodeCount = 1;
+        split(0, start, end);
+    }
+
+    // Both children of a node are allocated next to each other, so only the left one has to be stored
+    private void split(int node, int start, int end) {
+        nodeStart[node] = start;
+        nodeEnd[node] = end;
+        nodeLeft[node] = -1;
+        int offset = node * 6;
+        for (int i = 0; i < 3; i++) {
+            nodeBounds[offset + i] = Double.POSITIVE_INFINITY;
+            nodeBounds[offset + 3 + i] = Double.NEGATIVE_INFINITY;
+        }
+        for (int child = start; child < end; child++) {
+            for (int i = 0; i < 3; i++) {
+                nodeBounds[offset + i] = Math.min(nodeBounds[offset + i], bounds[child * 6 + i]);
+                nodeBounds[offset + 3 + i] = Math.max(nodeBounds[offset + 3 + i], bounds[child * 6 + 3 + i]);
+            }
+        }
+        if (end - start <= LEAF_SIZE) return;
+        int axis = 0;
+        double widest = -1;
+        for (int i = 0; i < 3; i++) {
+            double low = Double.POSITIVE_INFINITY;
+            double high = Double.NEGATIVE_INFINITY;
+            for (int child = start; child < end; child++) {
+                double center = center(child, i);
+                low = Math.min(low, center);
+                high = Math.max(high, center);
+            }
+            if (high - low > widest) {
+                widest = high - low;
+                axis = i;
+            }
+        }
+        sort(start, end, axis);
+        int middle = (start + end) >>> 1;
+        int left = nodeCount;
+        nodeCount += 2;
+        nodeLeft[node] = left;
+        split(left, start, middle);
+        split(left + 1, middle, end);
+    }
+
+    private double center(int child, int axis) {
+        return (bounds[child * 6 + axis] + bounds[child * 6 + 3 + axis]) * 0.5;
+    }
+
+    // Insertion sort by center, composites are small enough for it
+    private void sort(int start, int end, int axis) {
+        double[] entry = new double[6];
+        for (int i = start + 1; i < end; i++) {
+            Collider collider = children[i];
+            System.arraycopy(bounds, i * 6, entry, 0, 6);
+            double key = (entry[axis] + entry[3 + axis]) * 0.5;
+            int j = i;
+            while (j > start && center(j - 1, axis) > key) {
+                children[j] = children[j - 1];
+                System.arraycopy(bounds, (j - 1) * 6, bounds, j * 6, 6);
+                j--;
+            }
+            children[j] = collider;
+            System.arraycopy(entry, 0, bounds, j * 6, 6);
+        }
+    }
+
+    double getMinX() {
+        return nodeBounds[0];
+    }
+
+    double getMinY() {
+        return nodeBounds[1];
+    }
+
+    double getMinZ() {
+        return nodeBounds[2];
+    }
+
+    double getMaxX() {
+        return nodeBounds[3];
+    }
+
+    double getMaxY() {
+        return nodeBounds[4];
+    }
+
+    double getMaxZ() {
+        return nodeBounds[5];
+    }
+
+    /**
+     * @return false if the box is disjoint from the bounds of any child
+     */
+    boolean allOverlap(double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        for (int child = 0; child < children.length; child++) {
+            if (!overlaps(bounds, child * 6, minX, minY, minZ, maxX, maxY, maxZ)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Visits the children whose bounds touch the box.
+     *
+     * @param visitor returns true to stop the query
+     * @return true if the visitor stopped the query
+     */
+    boolean query(double minX, double minY, double minZ, double maxX, double maxY, double maxZ, Predicate<Collider> visitor) {
+        return query(0, minX, minY, minZ, maxX, maxY, maxZ, visitor);
+    }
+
+    private boolean query(int node, double minX, double minY, double minZ, double maxX, double maxY, double maxZ, Predicate<Collider> visitor) {
+        if (!overlaps(nodeBounds, node * 6, minX, minY, minZ, maxX, maxY, maxZ)) return false;
+        int left = nodeLeft[node];
+        if (left != -1) {
+            return query(left, minX, minY, minZ, maxX, maxY, maxZ, visitor)
+                    || query(left + 1, minX, minY, minZ, maxX, maxY, maxZ, visitor);
+        }
+        for (int child = nodeStart[node]; child < nodeEnd[node]; child++) {
+            if (overlaps(bounds, child * 6, minX, minY, minZ, maxX, maxY, maxZ) && visitor.test(children[child])) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Visits the children whose bounds, grown by the radius, are crossed by the segment.
+     *
+     * @param dx      unit direction of the segment
+     * @param visitor returns true to stop the query
+     * @return true if the visitor stopped the query
+     */
+    boolean cast(double ox, double oy, double oz, double dx, double dy, double dz, double length, double radius, Predicate<Collider> visitor) {
+        return cast(0, ox, oy, oz, dx, dy, dz, length, radius, visitor);
+    }
+
+    private boolean cast(int node, double ox, double oy, double oz, double dx, double dy, double dz, double length, double radius,
+                         Predicate<Collider> visitor) {
+        if (!crosses(nodeBounds, node * 6, ox, oy, oz, dx, dy, dz, length, radius)) return false;
+        int left = nodeLeft[node];
+        if (left != -1) {
+            return cast(left, ox, oy, oz, dx, dy, dz, length, radius, visitor)
+                    || cast(left + 1, ox, oy, oz, dx, dy, dz, length, radius, visitor);
+        }
+        for (int child = nodeStart[node]; child < nodeEnd[node]; child++) {
+            if (crosses(bounds, child * 6, ox, oy, oz, dx, dy, dz, length, radius) && visitor.test(children[child])) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Casts the ray against the children whose bounds, grown by its size, it crosses. The result receives the union of
+     * their intervals and doubles as the buffer of every child cast.
+     *
+     * @param result array of at least two elements
+     * @return true if any child was hit
+     */
+    boolean cast(RayCollider ray, double[] result) {
+        return cast(0, ray, result, false);
+    }
+
+    private boolean cast(int node, RayCollider ray, double[] result, boolean hit) {
+        if (!crosses(nodeBounds, node * 6, ray)) return hit;
+        int left = nodeLeft[node];
+        if (left != -1) {
+            return cast(left + 1, ray, result, cast(left, ray, result, hit));
+        }
+        for (int child = nodeStart[node]; child < nodeEnd[node]; child++) {
+            if (!crosses(bounds, child * 6, ray)) continue;
+            double entry = result[0];
+            double exit = result[1];
+            if (ray.cast(children[child], result)) {
+                if (hit) {
+                    result[0] = Math.min(entry, result[0]);
+                    result[1] = Math.max(exit, result[1]);
+                }
+                hit = true;
+            } else {
+                result[0] = entry;
+                result[1] = exit;
+            }
+        }
+        return hit;
+    }
+
+    // Inclusive, so that children merely touching the box are still handed to the narrowphase
+    private static boolean overlaps(double[] bounds, int offset, double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        return bounds[offset] <= maxX && bounds[offset + 3] >= minX
+                && bounds[offset + 1] <= maxY && bounds[offset + 4] >= minY
+                && bounds[offset + 2] <= maxZ && bounds[offset + 5] >= minZ;
+    }
+
+    private static boolean crosses(double[] bounds, int offset, RayCollider ray) {
+        ImmutableVector origin = ray.getOriginal();
+        return crosses(bounds, offset, origin.getX(), origin.getY(), origin.getZ(),
+                ray.getDirectionX(), ray.getDirectionY(), ray.getDirectionZ(), ray.getMaxDistance(), ray.getRaySize());
+    }
+
+    private static boolean crosses(double[] bounds, int offset, double ox, double oy, double oz, double dx, double dy, double dz,
+                                   double length, double radius) {
+        return Intersections.rayIntersectsAabb(ox, oy, oz, dx, dy, dz, length,
+                bounds[offset] - radius, bounds[offset + 1] - radius, bounds[offset + 2] - radius,
+                bounds[offset + 3] + radius, bounds[offset + 4] + radius, bounds[offset + 5] + radius, null);
+    }
+}
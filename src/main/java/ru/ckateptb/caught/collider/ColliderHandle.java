@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.ckateptb.caught.collider;
+
+import org.bukkit.util.Vector;
+import ru.ckateptb.caught.Collider;
+import ru.ckateptb.caught.math.ImmutableVector;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Owns a private copy of a collider and moves it in place, for colliders repositioned every tick.
+ * <p>
+ * {@link #moveTo(Vector)} gives the same collider as {@link Collider#at(Vector)} without rebuilding it, children and
+ * derived bounds included. The collider returned by {@link #get()} changes on every move and must stay on the thread
+ * owning the handle, {@link #snapshot()} gives an immutable copy that can be shared. Spheres, whose center is a public
+ * final field and which have nothing derived to keep, subclasses and custom colliders are replaced with
+ * {@link Collider#at(Vector)} instead.
+ */
+public final class ColliderHandle<T extends Collider> {
+    // Package private moveTo(point) of every collider moved in place, each one gives the same collider as at(point).
+    // Keyed by exact class, a subclass may keep state its at() override maintains
+    private static final Map<Class<?>, BiConsumer<Collider, ImmutableVector>> MOVERS = new HashMap<>();
+
+    static {
+        register(AxisAlignedBoundingBoxCollider.class, AxisAlignedBoundingBoxCollider::moveTo);
+        register(OrientedBoundingBoxCollider.class, OrientedBoundingBoxCollider::moveTo);
+        register(CapsuleCollider.class, CapsuleCollider::moveTo);
+        register(CylinderCollider.class, CylinderCollider::moveTo);
+        register(CompositeCollider.class, CompositeCollider::moveTo);
+        register(RayCollider.class, RayCollider::moveTo);
+    }
+
+    private T collider;
+
+    public ColliderHandle(T collider) {
+        this.collider = copy(collider);
+    }
+
+    /**
+     * @return the moving collider, valid until the next move
+     */
+    public T get() {
+        return collider;
+    }
+
+    /**
+     * @return an immutable copy of the collider at its current position
+     */
+    public T snapshot() {
+        return copy(collider);
+    }
+
+    public ColliderHandle<T> moveTo(double x, double y, double z) {
+        // Boxes keep the coordinates and build their position only when asked for it
+        if (collider.getClass() == AxisAlignedBoundingBoxCollider.class) {
+            ((AxisAlignedBoundingBoxCollider) collider).moveTo(x, y, z);
+            return this;
+        }
+        return moveTo(new ImmutableVector(x, y, z));
+    }
+
+    @SuppressWarnings("unchecked")
+    public ColliderHandle<T> moveTo(Vector point) {
+        collider = (T) move(collider, point instanceof ImmutableVector immutable ? immutable : new ImmutableVector(point));
+        return this;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <C extends Collider> void register(Class<C> type, BiConsumer<C, ImmutableVector> mover) {
+        MOVERS.put(type, (BiConsumer<Collider, ImmutableVector>) mover);
+    }
+
+    static Collider move(Collider collider, ImmutableVector point) {
+        BiConsumer<Collider, ImmutableVector> mover = MOVERS.get(collider.getClass());
+        if (mover == null) return collider.at(point);
+        mover.accept(collider, point);
+        return collider;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T extends Collider> T copy(T collider) {
+        if (collider.getClass() == CompositeCollider.class || collider.getClass() == DiskCollider.class) {
+            return (T) ((CompositeCollider) collider).copy();
+        }
+        return (T) collider.at(collider.getPosition());
+    }
+}
@@ -17,6 +17,7 @@
 
 package ru.ckateptb.caught.collider;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 import org.bukkit.World;
 import org.bukkit.util.Vector;
@@ -24,14 +25,27 @@ import ru.ckateptb.caught.AbstractCollider;
 import ru.ckateptb.caught.Collider;
 import ru.ckateptb.caught.math.ImmutableVector;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
+/**
+ * Union of its child colliders.
+ * <p>
+ * The bounds of the children are cached in a {@link ChildHierarchy} built on first use, queries only descend into children
+ * whose bounds are touched. Modifying {@link #getColliders()} discards the hierarchy, children are expected not to move
+ * while they belong to the composite.
+ */
 @Getter
 public class CompositeCollider extends AbstractCollider {
-    private final List<Collider> colliders = new ArrayList<>();
-    private final ImmutableVector position;
+    // Below this many children a plain loop beats descending the hierarchy
+    private static final int HIERARCHY_THRESHOLD = 4;
+
+    private final List<Collider> colliders = new Children();
+    private ImmutableVector position;
+    @Getter(AccessLevel.NONE)
+    private ChildHierarchy hierarchy;
 
     public CompositeCollider(World world, Vector position, Collider... colliders) {
         super(world);
@@ -39,17 +53,59 @@ public class CompositeCollider extends AbstractCollider {
         this.position = new ImmutableVector(position);
     }
 
+    private ChildHierarchy hierarchy() {
+        ChildHierarchy hierarchy = this.hierarchy;
+        if (hierarchy == null) {
+            hierarchy = new ChildHierarchy(colliders);
+            this.hierarchy = hierarchy;
+        }
+        return hierarchy;
+    }
+
     public boolean allIntersects(Collider other) {
-        return colliders.stream().allMatch(collider -> collider.intersects(other));
+        if (colliders.size() >= HIERARCHY_THRESHOLD) {
+            ImmutableVector min = other.getMin();
+            ImmutableVector max = other.getMax();
+            if (!hierarchy().allOverlap(min.getX(), min.getY(), min.getZ(), max.getX(), max.getY(), max.getZ())) return false;
+        }
+        for (Collider collider : colliders) {
+            if (!collider.intersects(other)) return false;
+        }
+        return true;
     }
 
     public boolean anyIntersects(Collider other) {
-        return colliders.stream().anyMatch(collider -> collider.intersects(other));
+        if (colliders.size() >= HIERARCHY_THRESHOLD) {
+            ImmutableVector min = other.getMin();
+            ImmutableVector max = other.getMax();
+            return hierarchy().query(min.getX(), min.getY(), min.getZ(), max.getX(), max.getY(), max.getZ(), collider -> collider.intersects(other));
+        }
+        for (Collider collider : colliders) {
+            if (collider.intersects(other)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Casts the ray against the children it may cross, the result is the union of their intervals.
+     */
+    boolean cast(RayCollider ray, double[] result) {
+        if (result != null) return hierarchy().cast(ray, result);
+        // Only the first hit is needed when the interval isn't requested
+        ImmutableVector origin = ray.getOriginal();
+        return hierarchy().cast(origin.getX(), origin.getY(), origin.getZ(),
+                ray.getDirectionX(), ray.getDirectionY(), ray.getDirectionZ(), ray.getMaxDistance(), ray.getRaySize(),
+                collider -> ray.cast(collider, null));
     }
 
     @Override
     public boolean intersects(Collider collider) {
-        return anyIntersects(collider);
+        return IntersectionMatrix.intersects(this, collider);
+    }
+
+    @Override
+    public int getShapeType() {
+        return IntersectionMatrix.COMPOSITE;
     }
 
     @Override
@@ -66,21 +122,125 @@ public class CompositeCollider extends AbstractCollider {
         return compositeCollider;
     }
 
+    void moveTo(ImmutableVector point) {
+        this.position = point;
+        for (int i = 0; i < colliders.size(); i++) {
+            Collider collider = colliders.get(i);
+            Collider moved = ColliderHandle.move(collider, point);
+            if (moved != collider) colliders.set(i, moved);
+        }
+        this.hierarchy = null;
+    }
+
+    // Deep copy, at() would move every child to the same point
+    CompositeCollider copy() {
+        CompositeCollider compositeCollider = new CompositeCollider(world, position);
+        for (Collider collider : colliders) {
+            compositeCollider.colliders.add(ColliderHandle.copy(collider));
+        }
+        return compositeCollider;
+    }
+
+    /**
+     * @return half extents around {@link #getPosition()} enclosing every child
+     */
     @Override
     public ImmutableVector getHalfExtents() {
-        return ImmutableVector.ONE;
+        if (colliders.isEmpty()) return ImmutableVector.ONE;
+        ChildHierarchy hierarchy = hierarchy();
+        return new ImmutableVector(
+                Math.max(hierarchy.getMaxX() - position.getX(), position.getX() - hierarchy.getMinX()),
+                Math.max(hierarchy.getMaxY() - position.getY(), position.getY() - hierarchy.getMinY()),
+                Math.max(hierarchy.getMaxZ() - position.getZ(), position.getZ() - hierarchy.getMinZ()));
+    }
+
+    /**
+     * @return minimum corner of the box enclosing every child
+     */
+    @Override
+    public ImmutableVector getMin() {
+        if (colliders.isEmpty()) return super.getMin();
+        ChildHierarchy hierarchy = hierarchy();
+        return new ImmutableVector(hierarchy.getMinX(), hierarchy.getMinY(), hierarchy.getMinZ());
+    }
+
+    /**
+     * @return maximum corner of the box enclosing every child
+     */
+    @Override
+    public ImmutableVector getMax() {
+        if (colliders.isEmpty()) return super.getMax();
+        ChildHierarchy hierarchy = hierarchy();
+        return new ImmutableVector(hierarchy.getMaxX(), hierarchy.getMaxY(), hierarchy.getMaxZ());
     }
 
     public boolean allContains(ImmutableVector point) {
-        return colliders.stream().allMatch(collider -> collider.contains(point));
+        return allContains(point.getX(), point.getY(), point.getZ());
+    }
+
+    public boolean allContains(double x, double y, double z) {
+        for (Collider collider : colliders) {
+            if (!collider.contains(x, y, z)) return false;
+        }
+        return true;
     }
 
     public boolean anyContains(ImmutableVector point) {
-        return colliders.stream().anyMatch(collider -> collider.contains(point));
+        return anyContains(point.getX(), point.getY(), point.getZ());
+    }
+
+    public boolean anyContains(double x, double y, double z) {
+        if (colliders.size() >= HIERARCHY_THRESHOLD) {
+            return hierarchy().query(x, y, z, x, y, z, collider -> collider.contains(x, y, z));
+        }
+        for (Collider collider : colliders) {
+            if (collider.contains(x, y, z)) return true;
+        }
+        return false;
     }
 
     @Override
     public boolean contains(ImmutableVector point) {
         return anyContains(point);
     }
+
+    @Override
+    public boolean contains(double x, double y, double z) {
+        return anyContains(x, y, z);
+    }
+
+    // Discards the hierarchy whenever the children change
+    private final class Children extends AbstractList<Collider> {
+        private final List<Collider> elements = new ArrayList<>();
+
+        @Override
+        public Collider get(int index) {
+            return elements.get(index);
+        }
+
+        @Override
+        public int size() {
+            return elements.size();
+        }
+
+        @Override
+        public Collider set(int index, Collider element) {
+            hierarchy = null;
+            return elements.set(index, element);
+        }
+
+        @Override
+        public void add(int index, Collider element) {
+            hierarchy = null;
+            modCount++;
+            elements.add(index, element);
+        }
+
+        @Override
+        public Collider remove(int index) {
+            hierarchy = null;
+            modCount++;
+            return elements.remove(index);
+        }
+    }
 }
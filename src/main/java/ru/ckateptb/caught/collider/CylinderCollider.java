@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.ckateptb.caught.collider;
+
+import lombok.Getter;
+import org.bukkit.World;
+import org.bukkit.util.Vector;
+import ru.ckateptb.caught.AbstractCollider;
+import ru.ckateptb.caught.Collider;
+import ru.ckateptb.caught.math.ImmutableVector;
+import ru.ckateptb.caught.math.Intersections;
+
+/**
+ * Solid finite cylinder, a disk when its half length is small.
+ * <p>
+ * Tests against spheres, rays, boxes and other cylinders are exact and tests against capsules are iterative. Only
+ * {@link #mayIntersect} is conservative, it may report boxes that only come close to the rim.
+ */
+@Getter
+public class CylinderCollider extends AbstractCollider {
+    private ImmutableVector center;
+    private final ImmutableVector axis; // Unit axis.
+    private final double halfLength;
+    private final double radius;
+
+    public CylinderCollider(World world, Vector center, Vector axis, double halfLength, double radius) {
+        super(world);
+        this.center = new ImmutableVector(center);
+        this.axis = new ImmutableVector(axis).normalize();
+        this.halfLength = halfLength;
+        this.radius = radius;
+    }
+
+    @Override
+    public boolean intersects(Collider collider) {
+        return IntersectionMatrix.intersects(this, collider);
+    }
+
+    boolean intersects(AxisAlignedBoundingBoxCollider collider) {
+        return Intersections.cylinderIntersectsAabb(center.getX(), center.getY(), center.getZ(), axis.getX(), axis.getY(), axis.getZ(),
+                halfLength, radius, collider.getMinX(), collider.getMinY(), collider.getMinZ(), collider.getMaxX(), collider.getMaxY(), collider.getMaxZ());
+    }
+
+    boolean intersects(SphereCollider collider) {
+        return Intersections.sphereIntersectsCylinder(collider.center.getX(), collider.center.getY(), collider.center.getZ(), collider.radius,
+                center.getX(), center.getY(), center.getZ(), axis.getX(), axis.getY(), axis.getZ(), halfLength, radius);
+    }
+
+    boolean intersects(OrientedBoundingBoxCollider collider) {
+        return collider.intersectsCylinder(center.getX(), center.getY(), center.getZ(), axis.getX(), axis.getY(), axis.getZ(), halfLength, radius);
+    }
+
+    boolean intersects(CylinderCollider collider) {
+        return Intersections.cylinderIntersectsCylinder(
+                center.getX(), center.getY(), center.getZ(), axis.getX(), axis.getY(), axis.getZ(), halfLength, radius,
+                collider.center.getX(), collider.center.getY(), collider.center.getZ(),
+                collider.axis.getX(), collider.axis.getY(), collider.axis.getZ(), collider.halfLength, collider.radius);
+    }
+
+    boolean intersectsCapsule(double ax, double ay, double az, double bx, double by, double bz, double capsuleRadius) {
+        double threshold = capsuleRadius * capsuleRadius;
+        return Intersections.segmentDistanceSquaredToCylinder(ax, ay, az, bx, by, bz,
+                center.getX(), center.getY(), center.getZ(), axis.getX(), axis.getY(), axis.getZ(), halfLength, radius, threshold) <= threshold;
+    }
+
+    boolean intersectsRay(double ox, double oy, double oz, double dx, double dy, double dz, double length, double raySize, double[] result) {
+        if (raySize > 0 && !intersectsCapsule(ox, oy, oz, ox + dx * length, oy + dy * length, oz + dz * length, raySize)) {
+            return false;
+        }
+        // A thick ray reports the interval through the cylinder grown by its size, which encloses the exact one
+        return Intersections.rayIntersectsCylinder(ox, oy, oz, dx, dy, dz, length,
+                center.getX(), center.getY(), center.getZ(), axis.getX(), axis.getY(), axis.getZ(),
+                halfLength + raySize, radius + raySize, result);
+    }
+
+    @Override
+    public boolean mayIntersect(double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        return Intersections.cylinderMayIntersectAabb(center.getX(), center.getY(), center.getZ(), axis.getX(), axis.getY(), axis.getZ(),
+                halfLength, radius, minX, minY, minZ, maxX, maxY, maxZ);
+    }
+
+    @Override
+    public int getShapeType() {
+        return IntersectionMatrix.CYLINDER;
+    }
+
+    @Override
+    public ImmutableVector getPosition() {
+        return center;
+    }
+
+    @Override
+    public CylinderCollider at(Vector point) {
+        return new CylinderCollider(world, point, axis, halfLength, radius);
+    }
+
+    void moveTo(ImmutableVector point) {
+        this.center = point;
+    }
+
+    @Override
+    public ImmutableVector getHalfExtents() {
+        return new ImmutableVector(extent(axis.getX()), extent(axis.getY()), extent(axis.getZ()));
+    }
+
+    private double extent(double axisComponent) {
+        return halfLength * Math.abs(axisComponent) + radius * Math.sqrt(Math.max(0, 1 - axisComponent * axisComponent));
+    }
+
+    @Override
+    public boolean contains(ImmutableVector point) {
+        return contains(point.getX(), point.getY(), point.getZ());
+    }
+
+    @Override
+    public boolean contains(double x, double y, double z) {
+        return Intersections.distanceSquaredToCylinder(x, y, z,
+                center.getX(), center.getY(), center.getZ(), axis.getX(), axis.getY(), axis.getZ(), halfLength, radius) <= 0;
+    }
+}
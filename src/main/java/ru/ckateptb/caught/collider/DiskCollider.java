@@ -17,16 +17,29 @@
 
 package ru.ckateptb.caught.collider;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 import org.bukkit.World;
 import org.bukkit.util.Vector;
 import ru.ckateptb.caught.Collider;
 import ru.ckateptb.caught.math.ImmutableVector;
+import ru.ckateptb.caught.math.Intersections;
 
+/**
+ * Intersection of a thin box and a sphere.
+ * <p>
+ * Queries are first tested against the box enclosing the cylinder around that intersection, only the ones it can't
+ * reject run the exact tests against the box and the sphere. The bounds of the disk are the ones of that cylinder.
+ */
 @Getter
 public class DiskCollider extends CompositeCollider {
     private final OrientedBoundingBoxCollider orientedBoundingBoxCollider;
     private final SphereCollider sphereCollider;
+    @Getter(AccessLevel.NONE)
+    private final CylinderCollider bounds;
+    private final ImmutableVector halfExtents;
+    private final ImmutableVector min;
+    private final ImmutableVector max;
 
     public DiskCollider(World world, OrientedBoundingBoxCollider orientedBoundingBoxCollider, SphereCollider sphereCollider) {
         this(world, ImmutableVector.ZERO, orientedBoundingBoxCollider, sphereCollider);
@@ -36,11 +49,90 @@ public class DiskCollider extends CompositeCollider {
         super(world, position, orientedBoundingBoxCollider, sphereCollider);
         this.orientedBoundingBoxCollider = orientedBoundingBoxCollider;
         this.sphereCollider = sphereCollider;
+        this.bounds = bounds(world, orientedBoundingBoxCollider, sphereCollider);
+        this.halfExtents = bounds.getHalfExtents();
+        this.min = bounds.getPosition().subtract(halfExtents);
+        this.max = bounds.getPosition().add(halfExtents);
+    }
+
+    // Cylinder along the thinnest axis of the box, clipped to the slab of the box and the sphere along that axis and
+    // wide enough for the smaller of the box and the sphere around it
+    private static CylinderCollider bounds(World world, OrientedBoundingBoxCollider box, SphereCollider sphere) {
+        ImmutableVector extents = box.getLocalHalfExtents();
+        int thinnest = extents.getX() <= extents.getY() && extents.getX() <= extents.getZ() ? 0 : extents.getY() <= extents.getZ() ? 1 : 2;
+        ImmutableVector axis = box.getAxes()[thinnest];
+        double extent = component(extents, thinnest);
+        double first = component(extents, (thinnest + 1) % 3);
+        double second = component(extents, (thinnest + 2) % 3);
+        ImmutableVector boxCenter = box.getPosition();
+        ImmutableVector sphereCenter = sphere.getPosition();
+        double radius = sphere.getRadius();
+        double dx = sphereCenter.getX() - boxCenter.getX();
+        double dy = sphereCenter.getY() - boxCenter.getY();
+        double dz = sphereCenter.getZ() - boxCenter.getZ();
+        double along = Intersections.dot(dx, dy, dz, axis.getX(), axis.getY(), axis.getZ());
+        double low = Math.max(-extent, along - radius);
+        double high = Math.min(extent, along + radius);
+        if (low > high) low = high = Intersections.clamp(along, -extent, extent); // Empty, the exact tests reject everything
+        // Widest slice of the sphere within the slab, and how far its center is from the axis
+        double nearest = Intersections.clamp(along, low, high) - along;
+        double slice = Math.sqrt(Math.max(0, radius * radius - nearest * nearest));
+        double offset = Math.sqrt(Math.max(0, Intersections.lengthSquared(dx, dy, dz) - along * along));
+        double middle = (low + high) * 0.5;
+        return new CylinderCollider(world, boxCenter.add(axis.multiply(middle)), axis, (high - low) * 0.5,
+                Math.min(Math.sqrt(first * first + second * second), offset + slice));
+    }
+
+    private static double component(ImmutableVector vector, int index) {
+        return index == 0 ? vector.getX() : index == 1 ? vector.getY() : vector.getZ();
+    }
+
+    @Override
+    public int getShapeType() {
+        return IntersectionMatrix.DISK;
+    }
+
+    // The enclosing box only rejects, touching included, the box and the sphere decide
+    boolean intersectsDisk(Collider other) {
+        ImmutableVector otherMin = other.getMin();
+        ImmutableVector otherMax = other.getMax();
+        return min.getX() <= otherMax.getX() && max.getX() >= otherMin.getX()
+                && min.getY() <= otherMax.getY() && max.getY() >= otherMin.getY()
+                && min.getZ() <= otherMax.getZ() && max.getZ() >= otherMin.getZ()
+                && allIntersects(other);
+    }
+
+    /**
+     * Casts the ray against the box and the sphere, the result is the overlap of their intervals. A requested result
+     * doubles as the buffer of both casts.
+     */
+    @Override
+    boolean cast(RayCollider ray, double[] result) {
+        if (!ray.cast(bounds, null)) return false;
+        double[] interval = result != null ? result : new double[2];
+        if (!ray.cast(sphereCollider, interval)) return false;
+        double entry = interval[0];
+        double exit = interval[1];
+        if (!ray.cast(orientedBoundingBoxCollider, interval)) return false;
+        entry = Math.max(entry, interval[0]);
+        exit = Math.min(exit, interval[1]);
+        if (entry > exit) return false;
+        if (result != null) {
+            result[0] = entry;
+            result[1] = exit;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean mayIntersect(double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        return bounds.mayIntersect(minX, minY, minZ, maxX, maxY, maxZ);
     }
 
     @Override
-    public boolean intersects(Collider collider) {
-        return super.allIntersects(collider);
+    public void setWorld(World world) {
+        super.setWorld(world);
+        bounds.setWorld(world);
     }
 
     @Override
@@ -48,13 +140,40 @@ public class DiskCollider extends CompositeCollider {
         return new DiskCollider(world, point, orientedBoundingBoxCollider.at(point), sphereCollider.at(point));
     }
 
+    // The box and the sphere are never moved in place, so the copy can share them
+    @Override
+    DiskCollider copy() {
+        return new DiskCollider(world, getPosition(), orientedBoundingBoxCollider, sphereCollider);
+    }
+
     @Override
     public ImmutableVector getHalfExtents() {
-        return orientedBoundingBoxCollider.getHalfExtents();
+        return halfExtents;
+    }
+
+    /**
+     * @return minimum corner of the box enclosing the cylinder around the disk
+     */
+    @Override
+    public ImmutableVector getMin() {
+        return min;
+    }
+
+    /**
+     * @return maximum corner of the box enclosing the cylinder around the disk
+     */
+    @Override
+    public ImmutableVector getMax() {
+        return max;
     }
 
     @Override
     public boolean contains(ImmutableVector point) {
         return allContains(point);
     }
+
+    @Override
+    public boolean contains(double x, double y, double z) {
+        return allContains(x, y, z);
+    }
 }
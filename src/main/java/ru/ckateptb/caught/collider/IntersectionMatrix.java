@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.ckateptb.caught.collider;
+
+import ru.ckateptb.caught.Collider;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Double dispatch table for {@link Collider#intersects(Collider)}.
+ * <p>
+ * Every shape is identified by a small integer returned from {@link Collider#getShapeType()}, pair routines are stored in a flat
+ * array indexed by both ids, so resolving the routine for any pair costs a single array load.
+ * Custom colliders can obtain their own id with {@link #registerType(String)} and provide routines against other shapes with
+ * {@link #register(int, int, IntersectionTest)} or against every shape with {@link #registerAny(int, IntersectionTest)}.
+ */
+public final class IntersectionMatrix {
+    public static final int UNKNOWN = -1;
+    public static final int AXIS_ALIGNED_BOUNDING_BOX = 0;
+    public static final int SPHERE = 1;
+    public static final int ORIENTED_BOUNDING_BOX = 2;
+    public static final int RAY = 3;
+    public static final int COMPOSITE = 4;
+    public static final int DISK = 5;
+    public static final int CAPSULE = 6;
+    public static final int CYLINDER = 7;
+    public static final int MAX_TYPES = 64;
+
+    private static final List<String> names = new ArrayList<>();
+    private static final IntersectionTest<Collider, Collider>[] specific = newTable(MAX_TYPES * MAX_TYPES);
+    private static final IntersectionTest<Collider, Collider>[] any = newTable(MAX_TYPES);
+    private static volatile IntersectionTest<Collider, Collider>[] tests = newTable(MAX_TYPES * MAX_TYPES);
+
+    static {
+        registerType("AxisAlignedBoundingBox");
+        registerType("Sphere");
+        registerType("OrientedBoundingBox");
+        registerType("Ray");
+        registerType("Composite");
+        registerType("Disk");
+        registerType("Capsule");
+        registerType("Cylinder");
+
+        register(AXIS_ALIGNED_BOUNDING_BOX, AXIS_ALIGNED_BOUNDING_BOX, (AxisAlignedBoundingBoxCollider first, AxisAlignedBoundingBoxCollider second) -> first.intersects(second));
+        register(SPHERE, AXIS_ALIGNED_BOUNDING_BOX, (SphereCollider sphere, AxisAlignedBoundingBoxCollider box) -> sphere.intersects(box));
+        register(SPHERE, SPHERE, (SphereCollider first, SphereCollider second) -> first.intersects(second));
+        register(SPHERE, ORIENTED_BOUNDING_BOX, (SphereCollider sphere, OrientedBoundingBoxCollider box) -> sphere.intersects(box));
+        register(ORIENTED_BOUNDING_BOX, AXIS_ALIGNED_BOUNDING_BOX, (OrientedBoundingBoxCollider first, AxisAlignedBoundingBoxCollider second) -> first.intersects(second));
+        register(ORIENTED_BOUNDING_BOX, ORIENTED_BOUNDING_BOX, (OrientedBoundingBoxCollider first, OrientedBoundingBoxCollider second) -> first.intersects(second));
+        registerAny(RAY, (RayCollider ray, Collider other) -> ray.cast(other, null));
+        registerAny(COMPOSITE, (CompositeCollider composite, Collider other) -> composite.anyIntersects(other));
+        registerAny(DISK, (DiskCollider disk, Collider other) -> disk.intersectsDisk(other));
+        register(RAY, DISK, (RayCollider ray, DiskCollider disk) -> ray.cast(disk, null));
+        register(CAPSULE, AXIS_ALIGNED_BOUNDING_BOX, (CapsuleCollider capsule, AxisAlignedBoundingBoxCollider box) -> capsule.intersects(box));
+        register(CAPSULE, SPHERE, (CapsuleCollider capsule, SphereCollider sphere) -> capsule.intersects(sphere));
+        register(CAPSULE, ORIENTED_BOUNDING_BOX, (CapsuleCollider capsule, OrientedBoundingBoxCollider box) -> capsule.intersects(box));
+        register(CAPSULE, CAPSULE, (CapsuleCollider first, CapsuleCollider second) -> first.intersects(second));
+        register(CYLINDER, SPHERE, (CylinderCollider cylinder, SphereCollider sphere) -> cylinder.intersects(sphere));
+        // Iterative, within a millionth of a block of the exact distance
+        register(CAPSULE, CYLINDER, (CapsuleCollider capsule, CylinderCollider cylinder) -> capsule.intersects(cylinder));
+        register(CYLINDER, AXIS_ALIGNED_BOUNDING_BOX, (CylinderCollider cylinder, AxisAlignedBoundingBoxCollider box) -> cylinder.intersects(box));
+        register(CYLINDER, ORIENTED_BOUNDING_BOX, (CylinderCollider cylinder, OrientedBoundingBoxCollider box) -> cylinder.intersects(box));
+        register(CYLINDER, CYLINDER, (CylinderCollider first, CylinderCollider second) -> first.intersects(second));
+    }
+
+    private IntersectionMatrix() {
+    }
+
+    /**
+     * Allocates a new shape type id.
+     *
+     * @param name human readable name of the shape, used by diagnostics
+     * @return the id to return from {@link Collider#getShapeType()}
+     */
+    public static synchronized int registerType(String name) {
+        if (names.size() >= MAX_TYPES) {
+            throw new IllegalStateException("Too many collider types, at most " + MAX_TYPES + " are supported");
+        }
+        names.add(name);
+        rebuild();
+        return names.size() - 1;
+    }
+
+    /**
+     * Registers the routine for the given pair of shapes, the reversed pair is registered as well.
+     */
+    @SuppressWarnings("unchecked")
+    public static synchronized <A extends Collider, B extends Collider> void register(int first, int second, IntersectionTest<A, B> test) {
+        checkType(first);
+        checkType(second);
+        IntersectionTest<Collider, Collider> forward = (IntersectionTest<Collider, Collider>) test;
+        specific[index(first, second)] = forward;
+        specific[index(second, first)] = (a, b) -> forward.intersects(b, a);
+        rebuild();
+    }
+
+    /**
+     * Registers a routine used for every pair involving the given shape that has no specific routine.
+     */
+    @SuppressWarnings("unchecked")
+    public static synchronized <A extends Collider> void registerAny(int type, IntersectionTest<A, Collider> test) {
+        checkType(type);
+        any[type] = (IntersectionTest<Collider, Collider>) test;
+        rebuild();
+    }
+
+    public static synchronized String getTypeName(int type) {
+        return type >= 0 && type < names.size() ? names.get(type) : "Unknown";
+    }
+
+    public static synchronized int getTypeCount() {
+        return names.size();
+    }
+
+    public static boolean intersects(Collider first, Collider second) {
+        int firstType = first.getShapeType();
+        int secondType = second.getShapeType();
+        if (secondType == UNKNOWN && firstType != UNKNOWN) {
+            // Unregistered colliders are expected to implement their own intersection logic
+            return second.intersects(first);
+        }
+        if (firstType == UNKNOWN || !first.getWorld().equals(second.getWorld())) {
+            return false;
+        }
+        IntersectionTest<Collider, Collider> test = tests[index(firstType, secondType)];
+        return test != null && test.intersects(first, second);
+    }
+
+    private static void rebuild() {
+        IntersectionTest<Collider, Collider>[] table = newTable(MAX_TYPES * MAX_TYPES);
+        int count = names.size();
+        for (int first = 0; first < count; first++) {
+            for (int second = 0; second < count; second++) {
+                IntersectionTest<Collider, Collider> test = specific[index(first, second)];
+                if (test == null && any[first] != null) {
+                    test = any[first];
+                }
+                if (test == null && any[second] != null) {
+                    IntersectionTest<Collider, Collider> reversed = any[second];
+                    test = (a, b) -> reversed.intersects(b, a);
+                }
+                table[index(first, second)] = test;
+            }
+        }
+        tests = table;
+    }
+
+    private static void checkType(int type) {
+        if (type < 0 || type >= names.size()) {
+            throw new IllegalArgumentException("Unknown collider type " + type);
+        }
+    }
+
+    private static int index(int first, int second) {
+        return first * MAX_TYPES + second;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static IntersectionTest<Collider, Collider>[] newTable(int size) {
+        return (IntersectionTest<Collider, Collider>[]) new IntersectionTest[size];
+    }
+}
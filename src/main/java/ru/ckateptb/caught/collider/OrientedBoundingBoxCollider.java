@@ -24,38 +24,97 @@ import org.bukkit.util.Vector;
 import ru.ckateptb.caught.AbstractCollider;
 import ru.ckateptb.caught.Collider;
 import ru.ckateptb.caught.math.ImmutableVector;
+import ru.ckateptb.caught.math.Intersections;
 import ru.ckateptb.caught.math.Rotation;
 
 import java.util.Arrays;
 
 public class OrientedBoundingBoxCollider extends AbstractCollider {
-    private final ImmutableVector center;
+    private ImmutableVector center;
     private final ImmutableVector[] axes;
     private final ImmutableVector halfExtents; // Half extents in local space.
+    // Derived data, computed once since axes and extents never change after construction
+    private final double[] basis; // Axes flattened row by row for the primitive kernel.
+    private final double[] corners; // World space corners, flattened.
+    private final double boundingRadius;
+    private final double extentX; // Half extents of the enclosing world space AABB.
+    private final double extentY;
+    private final double extentZ;
 
     private OrientedBoundingBoxCollider(World world, Vector center, Vector[] axes, Vector halfExtents) {
+        this(world, center, toBasis(axes), halfExtents);
+    }
+
+    private OrientedBoundingBoxCollider(World world, Vector center, double[] basis, Vector halfExtents) {
         super(world);
         this.center = new ImmutableVector(center);
-        this.axes = Arrays.stream(axes).map(ImmutableVector::new).toArray(ImmutableVector[]::new);
+        this.basis = basis;
+        this.axes = new ImmutableVector[3];
         this.halfExtents = new ImmutableVector(halfExtents);
+        double[] scaledBasis = new double[9]; // Axes multiplied by their half extent.
+        double[] extents = {this.halfExtents.getX(), this.halfExtents.getY(), this.halfExtents.getZ()};
+        for (int i = 0; i < 3; i++) {
+            axes[i] = new ImmutableVector(basis[3 * i], basis[3 * i + 1], basis[3 * i + 2]);
+            scaledBasis[3 * i] = basis[3 * i] * extents[i];
+            scaledBasis[3 * i + 1] = basis[3 * i + 1] * extents[i];
+            scaledBasis[3 * i + 2] = basis[3 * i + 2] * extents[i];
+        }
+        this.boundingRadius = this.halfExtents.length();
+        this.extentX = Math.abs(scaledBasis[0]) + Math.abs(scaledBasis[3]) + Math.abs(scaledBasis[6]);
+        this.extentY = Math.abs(scaledBasis[1]) + Math.abs(scaledBasis[4]) + Math.abs(scaledBasis[7]);
+        this.extentZ = Math.abs(scaledBasis[2]) + Math.abs(scaledBasis[5]) + Math.abs(scaledBasis[8]);
+        this.corners = new double[24];
+        for (int i = 0; i < 8; i++) {
+            double sx = (i & 1) == 0 ? -1 : 1;
+            double sy = (i & 2) == 0 ? -1 : 1;
+            double sz = (i & 4) == 0 ? -1 : 1;
+            for (int c = 0; c < 3; c++) {
+                corners[3 * i + c] = sx * scaledBasis[c] + sy * scaledBasis[3 + c] + sz * scaledBasis[6 + c];
+            }
+            corners[3 * i] += this.center.getX();
+            corners[3 * i + 1] += this.center.getY();
+            corners[3 * i + 2] += this.center.getZ();
+        }
+    }
+
+    // Moves the box, reusing all orientation dependent data of the source.
+    private OrientedBoundingBoxCollider(OrientedBoundingBoxCollider source, Vector center) {
+        super(source.world);
+        this.center = new ImmutableVector(center);
+        this.axes = source.axes;
+        this.halfExtents = source.halfExtents;
+        this.basis = source.basis;
+        this.boundingRadius = source.boundingRadius;
+        this.extentX = source.extentX;
+        this.extentY = source.extentY;
+        this.extentZ = source.extentZ;
+        double dx = this.center.getX() - source.center.getX();
+        double dy = this.center.getY() - source.center.getY();
+        double dz = this.center.getZ() - source.center.getZ();
+        this.corners = new double[24];
+        for (int i = 0; i < 24; i += 3) {
+            corners[i] = source.corners[i] + dx;
+            corners[i + 1] = source.corners[i + 1] + dy;
+            corners[i + 2] = source.corners[i + 2] + dz;
+        }
     }
 
     public OrientedBoundingBoxCollider(AxisAlignedBoundingBoxCollider collider) {
-        super(collider.getWorld());
-        this.center = collider.getCenter();
-        this.axes = new ImmutableVector[]{ImmutableVector.PLUS_I, ImmutableVector.PLUS_J, ImmutableVector.PLUS_K};
-        this.halfExtents = collider.getHalfExtents();
+        this(collider.getWorld(), collider.getCenter(), new Vector[]{ImmutableVector.PLUS_I, ImmutableVector.PLUS_J, ImmutableVector.PLUS_K}, collider.getHalfExtents());
     }
 
     public OrientedBoundingBoxCollider(AxisAlignedBoundingBoxCollider aabb, Rotation rotation) {
-        super(aabb.getWorld());
-        this.center = rotation.applyTo(aabb.getCenter());
-        double[][] m = rotation.getMatrix();
-        this.axes = new ImmutableVector[3];
+        this(aabb.getWorld(), rotation.applyTo(aabb.getCenter()), rotation.copyMatrix(new double[9]), aabb.getHalfExtents());
+    }
+
+    private static double[] toBasis(Vector[] axes) {
+        double[] basis = new double[9];
         for (int i = 0; i < 3; i++) {
-            this.axes[i] = new ImmutableVector(m[i]);
+            basis[3 * i] = axes[i].getX();
+            basis[3 * i + 1] = axes[i].getY();
+            basis[3 * i + 2] = axes[i].getZ();
         }
-        this.halfExtents = aabb.getHalfExtents();
+        return basis;
     }
 
     public OrientedBoundingBoxCollider(AxisAlignedBoundingBoxCollider aabb, ImmutableVector axis, double angle) {
@@ -64,67 +123,102 @@ public class OrientedBoundingBoxCollider extends AbstractCollider {
 
     @Override
     public boolean intersects(Collider collider) {
-        if (!collider.getWorld().equals(world)) {
+        return IntersectionMatrix.intersects(this, collider);
+    }
+
+    boolean intersects(OrientedBoundingBoxCollider collider) {
+        // Bounding sphere and world box rejections are far cheaper than the full separating axis test
+        double radius = boundingRadius + collider.boundingRadius;
+        if (Intersections.distanceSquared(center.getX(), center.getY(), center.getZ(),
+                collider.center.getX(), collider.center.getY(), collider.center.getZ()) > radius * radius) {
             return false;
         }
-        if (collider instanceof SphereCollider sphereCollider) {
-            return sphereCollider.intersects(this);
-        }
-        if (collider instanceof AxisAlignedBoundingBoxCollider axisAlignedBoundingBoxCollider) {
-            return intersects(new OrientedBoundingBoxCollider(axisAlignedBoundingBoxCollider));
-        }
-        if (collider instanceof OrientedBoundingBoxCollider orientedBoundingBoxCollider) {
-            return intersects(orientedBoundingBoxCollider);
-        }
-        if (collider instanceof RayCollider rayCollider) {
-            return rayCollider.intersects(this);
-        }
-        if (collider instanceof CompositeCollider compositeCollider) {
-            return compositeCollider.intersects(this);
+        if (Math.abs(center.getX() - collider.center.getX()) > extentX + collider.extentX
+                || Math.abs(center.getY() - collider.center.getY()) > extentY + collider.extentY
+                || Math.abs(center.getZ() - collider.center.getZ()) > extentZ + collider.extentZ) {
+            return false;
         }
-        return false;
+        return Intersections.obbIntersectsObb(
+                center.getX(), center.getY(), center.getZ(), basis, halfExtents.getX(), halfExtents.getY(), halfExtents.getZ(),
+                collider.center.getX(), collider.center.getY(), collider.center.getZ(), collider.basis,
+                collider.halfExtents.getX(), collider.halfExtents.getY(), collider.halfExtents.getZ());
     }
 
-    private boolean intersects(OrientedBoundingBoxCollider collider) {
-        final ImmutableVector pos = collider.center.subtract(center);
-        for (int i = 0; i < 3; i++) {
-            if (getSeparatingPlane(pos, axes[i], collider) || getSeparatingPlane(pos, collider.axes[i], collider)) {
-                return false;
-            }
+    boolean intersects(AxisAlignedBoundingBoxCollider collider) {
+        if (!Intersections.aabbIntersectsAabb(center.getX() - extentX, center.getY() - extentY, center.getZ() - extentZ,
+                center.getX() + extentX, center.getY() + extentY, center.getZ() + extentZ,
+                collider.getMinX(), collider.getMinY(), collider.getMinZ(), collider.getMaxX(), collider.getMaxY(), collider.getMaxZ())) {
+            return false;
         }
-        for (int i = 0; i < 3; i++) {
-            for (int j = 0; j < 3; j++) {
-                if (getSeparatingPlane(pos, axes[i].crossProduct(collider.axes[j]), collider)) {
-                    return false;
-                }
-            }
+        return Intersections.obbIntersectsAabb(
+                center.getX(), center.getY(), center.getZ(), basis, halfExtents.getX(), halfExtents.getY(), halfExtents.getZ(),
+                collider.getCenterX(), collider.getCenterY(), collider.getCenterZ(),
+                (collider.getMaxX() - collider.getMinX()) * 0.5, (collider.getMaxY() - collider.getMinY()) * 0.5, (collider.getMaxZ() - collider.getMinZ()) * 0.5);
+    }
+
+    boolean intersectsSphere(double x, double y, double z, double radius) {
+        double reach = boundingRadius + radius;
+        if (Intersections.distanceSquared(x, y, z, center.getX(), center.getY(), center.getZ()) > reach * reach) {
+            return false;
         }
-        return true;
+        return Intersections.sphereIntersectsObb(x, y, z, radius,
+                center.getX(), center.getY(), center.getZ(), basis, halfExtents.getX(), halfExtents.getY(), halfExtents.getZ());
+    }
+
+    boolean intersectsCapsule(double ax, double ay, double az, double bx, double by, double bz, double radius) {
+        // The segment in the local frame of the box, where the box is axis aligned around the origin
+        double sx = ax - center.getX(), sy = ay - center.getY(), sz = az - center.getZ();
+        double ex = bx - center.getX(), ey = by - center.getY(), ez = bz - center.getZ();
+        return Intersections.segmentDistanceSquaredToAabb(
+                Intersections.dot(sx, sy, sz, basis[0], basis[1], basis[2]),
+                Intersections.dot(sx, sy, sz, basis[3], basis[4], basis[5]),
+                Intersections.dot(sx, sy, sz, basis[6], basis[7], basis[8]),
+                Intersections.dot(ex, ey, ez, basis[0], basis[1], basis[2]),
+                Intersections.dot(ex, ey, ez, basis[3], basis[4], basis[5]),
+                Intersections.dot(ex, ey, ez, basis[6], basis[7], basis[8]),
+                -halfExtents.getX(), -halfExtents.getY(), -halfExtents.getZ(),
+                halfExtents.getX(), halfExtents.getY(), halfExtents.getZ()) <= radius * radius;
     }
 
-    private boolean getSeparatingPlane(ImmutableVector pos, ImmutableVector plane, OrientedBoundingBoxCollider collider) {
-        final double dot = Math.abs(pos.dot(plane));
-        final double x1 = Math.abs((axes[0].multiply(halfExtents.getX())).dot(plane));
-        final double y1 = Math.abs((axes[1].multiply(halfExtents.getY())).dot(plane));
-        final double z1 = Math.abs((axes[2].multiply(halfExtents.getZ())).dot(plane));
-        final double x2 = Math.abs((collider.axes[0].multiply(collider.halfExtents.getX())).dot(plane));
-        final double y2 = Math.abs((collider.axes[1].multiply(collider.halfExtents.getY())).dot(plane));
-        final double z2 = Math.abs((collider.axes[2].multiply(collider.halfExtents.getZ())).dot(plane));
-        return dot > x1 + y1 + z1 + x2 + y2 + z2;
+    boolean intersectsCylinder(double cx, double cy, double cz, double ux, double uy, double uz, double halfLength, double radius) {
+        return Intersections.cylinderIntersectsObb(cx, cy, cz, ux, uy, uz, halfLength, radius,
+                center.getX(), center.getY(), center.getZ(), basis, halfExtents.getX(), halfExtents.getY(), halfExtents.getZ());
+    }
+
+    boolean intersectsRay(double ox, double oy, double oz, double dx, double dy, double dz, double length, double radius, double[] result) {
+        if (radius > 0 && !intersectsCapsule(ox, oy, oz, ox + dx * length, oy + dy * length, oz + dz * length, radius)) {
+            return false;
+        }
+        // A thick ray reports the interval through the box grown by its size, which encloses the exact one
+        return Intersections.rayIntersectsObb(ox, oy, oz, dx, dy, dz, length, center.getX(), center.getY(), center.getZ(), basis,
+                halfExtents.getX() + radius, halfExtents.getY() + radius, halfExtents.getZ() + radius, result);
     }
 
     // Returns the position closest to the target that lies on/in the OBB.
     public ImmutableVector closestPosition(ImmutableVector target) {
-        ImmutableVector t = target.subtract(center);
-        ImmutableVector closest = center;
-        double[] extentArray = halfExtents.toArray();
+        double tx = target.getX() - center.getX();
+        double ty = target.getY() - center.getY();
+        double tz = target.getZ() - center.getZ();
+        double x = center.getX();
+        double y = center.getY();
+        double z = center.getZ();
+        double[] extentArray = {halfExtents.getX(), halfExtents.getY(), halfExtents.getZ()};
         for (int i = 0; i < 3; i++) {
-            ImmutableVector axis = axes[i];
+            double ax = basis[3 * i];
+            double ay = basis[3 * i + 1];
+            double az = basis[3 * i + 2];
             double r = extentArray[i];
-            double dist = Math.max(-r, Math.min(t.dot(axis), r));
-            closest = closest.add(axis.multiply(dist));
+            double dist = Math.max(-r, Math.min(Intersections.dot(tx, ty, tz, ax, ay, az), r));
+            x += ax * dist;
+            y += ay * dist;
+            z += az * dist;
         }
-        return closest;
+        return new ImmutableVector(x, y, z);
+    }
+
+    @Override
+    public int getShapeType() {
+        return IntersectionMatrix.ORIENTED_BOUNDING_BOX;
     }
 
     @Override
@@ -134,19 +228,60 @@ public class OrientedBoundingBoxCollider extends AbstractCollider {
 
     @Override
     public OrientedBoundingBoxCollider at(Vector point) {
-        return new OrientedBoundingBoxCollider(world, point, axes, halfExtents);
+        return new OrientedBoundingBoxCollider(this, point);
+    }
+
+    void moveTo(ImmutableVector point) {
+        double dx = point.getX() - center.getX();
+        double dy = point.getY() - center.getY();
+        double dz = point.getZ() - center.getZ();
+        this.center = point;
+        for (int i = 0; i < 24; i += 3) {
+            corners[i] += dx;
+            corners[i + 1] += dy;
+            corners[i + 2] += dz;
+        }
     }
 
+    /**
+     * @return half extents of the enclosing world space AABB
+     */
     @Override
     public ImmutableVector getHalfExtents() {
-        double x = halfExtents.dot(ImmutableVector.PLUS_I);
-        double y = halfExtents.dot(ImmutableVector.PLUS_J);
-        double z = halfExtents.dot(ImmutableVector.PLUS_K);
-        return new ImmutableVector(x, y, z);
+        return new ImmutableVector(extentX, extentY, extentZ);
+    }
+
+    public ImmutableVector[] getAxes() {
+        return axes.clone();
+    }
+
+    /**
+     * @return half extents along the axes of the box
+     */
+    public ImmutableVector getLocalHalfExtents() {
+        return halfExtents;
+    }
+
+    public double getBoundingRadius() {
+        return boundingRadius;
+    }
+
+    public ImmutableVector[] getCorners() {
+        ImmutableVector[] result = new ImmutableVector[8];
+        for (int i = 0; i < 8; i++) {
+            result[i] = new ImmutableVector(corners[3 * i], corners[3 * i + 1], corners[3 * i + 2]);
+        }
+        return result;
     }
 
     @Override
     public boolean contains(ImmutableVector point) {
-        return closestPosition(point).distanceSquared(point) <= 0.1;
+        return contains(point.getX(), point.getY(), point.getZ());
+    }
+
+    @Override
+    public boolean contains(double x, double y, double z) {
+        return Intersections.distanceSquaredToObb(x, y, z,
+                center.getX(), center.getY(), center.getZ(), basis, halfExtents.getX(), halfExtents.getY(), halfExtents.getZ()) <= 0.1;
     }
 }
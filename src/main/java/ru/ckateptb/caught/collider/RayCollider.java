@@ -17,6 +17,7 @@
 
 package ru.ckateptb.caught.collider;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 import org.bukkit.FluidCollisionMode;
 import org.bukkit.Location;
@@ -25,13 +26,21 @@ import org.bukkit.block.Block;
 import org.bukkit.block.BlockFace;
 import org.bukkit.entity.Entity;
 import org.bukkit.entity.LivingEntity;
-import org.bukkit.util.BlockIterator;
-import org.bukkit.util.BoundingBox;
 import org.bukkit.util.RayTraceResult;
 import org.bukkit.util.Vector;
 import ru.ckateptb.caught.AbstractCollider;
 import ru.ckateptb.caught.Collider;
+import ru.ckateptb.caught.block.BlockScan;
+import ru.ckateptb.caught.block.UnloadedChunkPolicy;
+import ru.ckateptb.caught.block.VoxelTraversal;
+import ru.ckateptb.caught.block.WorldBlockShapeSource;
+import ru.ckateptb.caught.callback.CollisionCallbackResult;
+import ru.ckateptb.caught.callback.VoxelCallback;
 import ru.ckateptb.caught.math.ImmutableVector;
+import ru.ckateptb.caught.math.Intersections;
+import ru.ckateptb.caught.metrics.CollisionMetrics;
+import ru.ckateptb.caught.metrics.CollisionMetricsSink;
+import ru.ckateptb.caught.metrics.CollisionQuery;
 
 import java.util.Map;
 import java.util.Optional;
@@ -40,9 +49,29 @@ import java.util.function.Predicate;
 @Getter
 public class RayCollider extends AbstractCollider {
     private final double raySize;
-    private final ImmutableVector original;
+    private ImmutableVector original;
     private final ImmutableVector direction;
     private double maxDistance;
+    // Normalized direction, kept as primitives for the exact ray tests
+    private final double directionX;
+    private final double directionY;
+    private final double directionZ;
+    // World space bounds of the ray and its size, updated whenever the origin or the length change
+    private double minX;
+    private double minY;
+    private double minZ;
+    private double maxX;
+    private double maxY;
+    private double maxZ;
+    // Derived vectors, built on first use
+    @Getter(AccessLevel.NONE)
+    private ImmutableVector min;
+    @Getter(AccessLevel.NONE)
+    private ImmutableVector max;
+    @Getter(AccessLevel.NONE)
+    private ImmutableVector halfExtents;
+    @Getter(AccessLevel.NONE)
+    private AxisAlignedBoundingBoxCollider boundingBox; // Built on first use
 
     public RayCollider(LivingEntity livingEntity, double maxDistance) {
         this(livingEntity, maxDistance, 0);
@@ -55,6 +84,11 @@ public class RayCollider extends AbstractCollider {
         this.direction = new ImmutableVector(eyeLocation.getDirection());
         this.maxDistance = maxDistance;
         this.raySize = raySize;
+        ImmutableVector normalized = this.direction.normalize();
+        this.directionX = normalized.getX();
+        this.directionY = normalized.getY();
+        this.directionZ = normalized.getZ();
+        updateBounds();
     }
 
     public RayCollider(World world, Vector original, Vector direction, double maxDistance, double raySize) {
@@ -63,11 +97,130 @@ public class RayCollider extends AbstractCollider {
         this.direction = new ImmutableVector(direction);
         this.maxDistance = maxDistance;
         this.raySize = raySize;
+        ImmutableVector normalized = this.direction.normalize();
+        this.directionX = normalized.getX();
+        this.directionY = normalized.getY();
+        this.directionZ = normalized.getZ();
+        updateBounds();
     }
 
     @Override
     public boolean intersects(Collider collider) {
-        return toBoundingBoxCollider().intersects(collider);
+        return IntersectionMatrix.intersects(this, collider);
+    }
+
+    @Override
+    public int getShapeType() {
+        return IntersectionMatrix.RAY;
+    }
+
+    /**
+     * Casts this ray, treated as a capsule of radius {@link #getRaySize()}, against the collider.
+     *
+     * @return the entry and exit distances along the ray, empty if the ray misses the collider
+     */
+    public Optional<RayIntersection> getIntersection(Collider collider) {
+        double[] result = new double[2];
+        if (!collider.getWorld().equals(world) || !cast(collider, result)) return Optional.empty();
+        return Optional.of(new RayIntersection(result[0], result[1]));
+    }
+
+    /**
+     * @return the collider hit first by this ray
+     */
+    public <T extends Collider> Optional<T> getFirst(Iterable<T> colliders) {
+        double[] result = new double[2];
+        double nearest = Double.POSITIVE_INFINITY;
+        T first = null;
+        for (T collider : colliders) {
+            if (collider.getWorld().equals(world) && cast(collider, result) && result[0] < nearest) {
+                nearest = result[0];
+                first = collider;
+            }
+        }
+        return Optional.ofNullable(first);
+    }
+
+    /**
+     * Exact test of this ray against the collider, the world is expected to be checked by the caller.
+     *
+     * @param result optional array receiving the entry and exit distances on hit
+     */
+    boolean cast(Collider collider, double[] result) {
+        double ox = original.getX();
+        double oy = original.getY();
+        double oz = original.getZ();
+        switch (collider.getShapeType()) {
+            case IntersectionMatrix.AXIS_ALIGNED_BOUNDING_BOX -> {
+                AxisAlignedBoundingBoxCollider box = (AxisAlignedBoundingBoxCollider) collider;
+                if (raySize > 0 && Intersections.segmentDistanceSquaredToAabb(ox, oy, oz,
+                        ox + directionX * maxDistance, oy + directionY * maxDistance, oz + directionZ * maxDistance,
+                        box.getMinX(), box.getMinY(), box.getMinZ(), box.getMaxX(), box.getMaxY(), box.getMaxZ()) > raySize * raySize) {
+                    return false;
+                }
+                // A thick ray reports the interval through the box grown by its size, which encloses the exact one
+                return Intersections.rayIntersectsAabb(ox, oy, oz, directionX, directionY, directionZ, maxDistance,
+                        box.getMinX() - raySize, box.getMinY() - raySize, box.getMinZ() - raySize,
+                        box.getMaxX() + raySize, box.getMaxY() + raySize, box.getMaxZ() + raySize, result);
+            }
+            case IntersectionMatrix.SPHERE -> {
+                SphereCollider sphere = (SphereCollider) collider;
+                return Intersections.rayIntersectsSphere(ox, oy, oz, directionX, directionY, directionZ, maxDistance,
+                        sphere.center.getX(), sphere.center.getY(), sphere.center.getZ(), sphere.radius + raySize, result);
+            }
+            case IntersectionMatrix.ORIENTED_BOUNDING_BOX -> {
+                return ((OrientedBoundingBoxCollider) collider).intersectsRay(ox, oy, oz, directionX, directionY, directionZ, maxDistance, raySize, result);
+            }
+            case IntersectionMatrix.RAY -> {
+                RayCollider ray = (RayCollider) collider;
+                double radius = raySize + ray.raySize;
+                double distance = Intersections.segmentDistanceSquared(ox, oy, oz,
+                        ox + directionX * maxDistance, oy + directionY * maxDistance, oz + directionZ * maxDistance,
+                        ray.original.getX(), ray.original.getY(), ray.original.getZ(),
+                        ray.original.getX() + ray.directionX * ray.maxDistance,
+                        ray.original.getY() + ray.directionY * ray.maxDistance,
+                        ray.original.getZ() + ray.directionZ * ray.maxDistance, result);
+                if (distance > radius * radius) return false;
+                if (result != null) {
+                    result[0] = result[1] = result[0] * maxDistance;
+                }
+                return true;
+            }
+            case IntersectionMatrix.COMPOSITE, IntersectionMatrix.DISK -> {
+                return ((CompositeCollider) collider).cast(this, result);
+            }
+            case IntersectionMatrix.CAPSULE -> {
+                CapsuleCollider capsule = (CapsuleCollider) collider;
+                ImmutableVector start = capsule.getStart();
+                ImmutableVector end = capsule.getEnd();
+                return Intersections.rayIntersectsCapsule(ox, oy, oz, directionX, directionY, directionZ, maxDistance,
+                        start.getX(), start.getY(), start.getZ(), end.getX(), end.getY(), end.getZ(), capsule.getRadius() + raySize, result);
+            }
+            case IntersectionMatrix.CYLINDER -> {
+                return ((CylinderCollider) collider).intersectsRay(ox, oy, oz, directionX, directionY, directionZ, maxDistance, raySize, result);
+            }
+            default -> {
+                // No exact routine, fall back to the enclosing box and estimate the distance from the collider's position
+                if (!IntersectionMatrix.intersects(toBoundingBoxCollider(), collider)) return false;
+                if (result != null) {
+                    ImmutableVector position = collider.getPosition();
+                    double distance = Intersections.dot(position.getX() - ox, position.getY() - oy, position.getZ() - oz, directionX, directionY, directionZ);
+                    result[0] = result[1] = Intersections.clamp(distance, 0, maxDistance);
+                }
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @return the volume swept by this ray and its size
+     */
+    public CapsuleCollider toCapsule() {
+        return new CapsuleCollider(world, original, getPoint(maxDistance), raySize);
+    }
+
+    public ImmutableVector getPoint(double distance) {
+        return original.add(directionX * distance, directionY * distance, directionZ * distance);
     }
 
     @Override
@@ -80,19 +233,71 @@ public class RayCollider extends AbstractCollider {
         return new RayCollider(world, point, direction, maxDistance, raySize);
     }
 
+    void moveTo(ImmutableVector point) {
+        this.original = point;
+        updateBounds();
+    }
+
+    private void updateBounds() {
+        double endX = original.getX() + directionX * maxDistance;
+        double endY = original.getY() + directionY * maxDistance;
+        double endZ = original.getZ() + directionZ * maxDistance;
+        this.minX = Math.min(original.getX(), endX) - raySize;
+        this.minY = Math.min(original.getY(), endY) - raySize;
+        this.minZ = Math.min(original.getZ(), endZ) - raySize;
+        this.maxX = Math.max(original.getX(), endX) + raySize;
+        this.maxY = Math.max(original.getY(), endY) + raySize;
+        this.maxZ = Math.max(original.getZ(), endZ) + raySize;
+        this.min = null;
+        this.max = null;
+        this.halfExtents = null;
+        this.boundingBox = null;
+    }
+
+    // The cached box carries the world, so it is rebuilt in the new one
+    @Override
+    public void setWorld(World world) {
+        super.setWorld(world);
+        this.boundingBox = null;
+    }
+
+    /**
+     * @return the box enclosing the ray and its size, shared by every call until the ray is moved or changes world
+     */
     public AxisAlignedBoundingBoxCollider toBoundingBoxCollider() {
-        BoundingBox boundingBox = BoundingBox.of(original, original).expandDirectional(direction.normalize().multiply(maxDistance)).expand(raySize);
-        return new AxisAlignedBoundingBoxCollider(world, boundingBox.getMin(), boundingBox.getMax());
+        if (boundingBox == null) {
+            boundingBox = new AxisAlignedBoundingBoxCollider(world, getMin(), getMax());
+        }
+        return boundingBox;
     }
 
     @Override
     public ImmutableVector getHalfExtents() {
-        return toBoundingBoxCollider().getHalfExtents();
+        if (halfExtents == null) {
+            halfExtents = new ImmutableVector((maxX - minX) * 0.5, (maxY - minY) * 0.5, (maxZ - minZ) * 0.5);
+        }
+        return halfExtents;
+    }
+
+    @Override
+    public ImmutableVector getMin() {
+        if (min == null) {
+            min = new ImmutableVector(minX, minY, minZ);
+        }
+        return min;
+    }
+
+    @Override
+    public ImmutableVector getMax() {
+        if (max == null) {
+            max = new ImmutableVector(maxX, maxY, maxZ);
+        }
+        return max;
     }
 
     @Override
     public boolean contains(ImmutableVector point) {
-        return toBoundingBoxCollider().contains(point);
+        return Intersections.aabbContains(minX, minY, minZ, maxX, maxY, maxZ, point.getX(), point.getY(), point.getZ());
     }
 
     public Optional<Map.Entry<Block, BlockFace>> getFirstBlock(boolean ignoreLiquids, boolean ignorePassable) {
@@ -108,33 +313,51 @@ public class RayCollider extends AbstractCollider {
     }
 
     public Optional<Block> getBlock(boolean ignoreLiquids, boolean ignorePassable, boolean ignoreObstacles, Predicate<Block> filter) {
-        BlockIterator it = new BlockIterator(world, original, direction, raySize, Math.min(100, (int) Math.ceil(maxDistance)));
-        while (it.hasNext()) {
-            Block block = it.next();
-            boolean passable = block.isPassable();
-            if (passable) {
-                if (block.isLiquid()) {
-                    if (ignoreLiquids) {
-                        continue;
-                    }
-                } else if (ignorePassable) {
-                    continue;
-                }
-            }
-            if (filter.test(block)) {
-                return Optional.of(block);
-            }
-            if (!ignoreObstacles && !passable) {
-                break;
-            }
-        }
-        return Optional.empty();
+        return getBlock(ignoreLiquids, ignorePassable, ignoreObstacles, UnloadedChunkPolicy.LOAD, filter);
+    }
+
+    /**
+     * Visits the voxels crossed by the ray, thickened by its size, up to its full length.
+     *
+     * @return true if the callback ended the traversal
+     */
+    public boolean traverseVoxels(VoxelCallback callback) {
+        return VoxelTraversal.traverse(original.getX(), original.getY(), original.getZ(),
+                directionX, directionY, directionZ, maxDistance, raySize, callback);
+    }
+
+    /**
+     * @param policy how blocks of unloaded chunks are treated, a solid unloaded block ends the ray and is returned
+     */
+    public Optional<Block> getBlock(boolean ignoreLiquids, boolean ignorePassable, boolean ignoreObstacles, UnloadedChunkPolicy policy, Predicate<Block> filter) {
+        Block[] result = new Block[1];
+        BlockScan.cast(this, world.getMinHeight(), world.getMaxHeight(), new WorldBlockShapeSource(world, policy),
+                ignoreLiquids, ignorePassable, ignoreObstacles, (x, y, z, shape, distance, face) -> {
+                    Block block = world.getBlockAt(x, y, z);
+                    if (!WorldBlockShapeSource.accepts(filter, shape, block)) return CollisionCallbackResult.CONTINUE;
+                    result[0] = block;
+                    return CollisionCallbackResult.END;
+                });
+        return Optional.ofNullable(result[0]);
     }
 
     public Optional<Entity> getEntity(Predicate<Entity> filter) {
-        RayTraceResult traceResult = world.rayTraceEntities(original.toLocation(world), direction, maxDistance, raySize, filter);
-        if (traceResult == null) return Optional.empty();
-        return Optional.ofNullable(traceResult.getHitEntity());
+        CollisionMetricsSink sink = CollisionMetrics.getSink();
+        if (sink == null) {
+            RayTraceResult traceResult = world.rayTraceEntities(original.toLocation(world), direction, maxDistance, raySize, filter);
+            if (traceResult == null) return Optional.empty();
+            return Optional.ofNullable(traceResult.getHitEntity());
+        }
+        long start = System.nanoTime();
+        int[] candidates = new int[1];
+        // The filter is tested against every entity whose bounds overlap the ray's bounds
+        RayTraceResult traceResult = world.rayTraceEntities(original.toLocation(world), direction, maxDistance, raySize, entity -> {
+            candidates[0]++;
+            return filter.test(entity);
+        });
+        Entity entity = traceResult == null ? null : traceResult.getHitEntity();
+        sink.record(CollisionQuery.RAY_ENTITY, getShapeType(), System.nanoTime() - start, candidates[0], entity == null ? 0 : 1, 0);
+        return Optional.ofNullable(entity);
     }
 
     public Optional<Vector> getPosition(boolean ignoreEntity, boolean ignoreBlock, boolean ignoreLiquid, boolean ignorePassable, Predicate<Entity> entityFilter, Predicate<Block> blockFilter) {
@@ -151,6 +374,7 @@ public class RayCollider extends AbstractCollider {
                 ImmutableVector immutableVector = new ImmutableVector(toCenterLocation(block.getLocation()));
                 blockPosition = original.add(direction.normalize().multiply(original.distance(immutableVector) - 0.5));
                 this.maxDistance = original.distance(blockPosition);
+                updateBounds();
             }
         }
 
@@ -162,6 +386,7 @@ public class RayCollider extends AbstractCollider {
             }
         }
         this.maxDistance = maxDistance;
+        updateBounds();
         return Optional.of(entityPosition == null ? blockPosition == null ? position : blockPosition : entityPosition);
     }
 
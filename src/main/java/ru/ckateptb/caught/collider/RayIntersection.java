@@ -0,0 +1,34 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.ckateptb.caught.collider;
+
+import lombok.Getter;
+
+/**
+ * Distances along a {@link RayCollider} at which it enters and leaves a collider.
+ */
+@Getter
+public class RayIntersection {
+    private final double entry;
+    private final double exit;
+
+    public RayIntersection(double entry, double exit) {
+        this.entry = entry;
+        this.exit = exit;
+    }
+}
@@ -23,6 +23,7 @@ import org.bukkit.util.Vector;
 import ru.ckateptb.caught.AbstractCollider;
 import ru.ckateptb.caught.Collider;
 import ru.ckateptb.caught.math.ImmutableVector;
+import ru.ckateptb.caught.math.Intersections;
 
 @Getter
 public class SphereCollider extends AbstractCollider {
@@ -41,46 +42,32 @@ public class SphereCollider extends AbstractCollider {
 
     @Override
     public boolean intersects(Collider collider) {
-        if (collider instanceof SphereCollider sphereCollider) {
-            return intersects(sphereCollider);
-        }
-        if (collider instanceof AxisAlignedBoundingBoxCollider axisAlignedBoundingBoxCollider) {
-            return intersects(axisAlignedBoundingBoxCollider);
-        }
-        if (collider instanceof RayCollider rayCollider) {
-            return rayCollider.intersects(this);
-        }
-        if (collider instanceof OrientedBoundingBoxCollider orientedBoundingBoxCollider) {
-            return intersects(orientedBoundingBoxCollider);
-        }
-        if (collider instanceof CompositeCollider compositeCollider) {
-            return compositeCollider.intersects(this);
-        }
-        return false;
+        return IntersectionMatrix.intersects(this, collider);
     }
 
-    private boolean intersects(OrientedBoundingBoxCollider orientedBoundingBoxCollider) {
-        ImmutableVector vector = center.subtract(orientedBoundingBoxCollider.closestPosition(center));
-        return vector.dot(vector) <= radius * radius;
+    boolean intersects(OrientedBoundingBoxCollider orientedBoundingBoxCollider) {
+        return orientedBoundingBoxCollider.intersectsSphere(center.getX(), center.getY(), center.getZ(), radius);
     }
 
-    private boolean intersects(SphereCollider collider) {
-        return collider.getWorld().equals(this.world) && this.center.distance(collider.center) <= this.radius + collider.radius;
+    boolean intersects(SphereCollider collider) {
+        return Intersections.sphereIntersectsSphere(
+                center.getX(), center.getY(), center.getZ(), radius,
+                collider.center.getX(), collider.center.getY(), collider.center.getZ(), collider.radius);
     }
 
     public boolean intersects(AxisAlignedBoundingBoxCollider collider) {
-        if (!collider.getWorld().equals(this.world)) return false;
-        Vector minVector = collider.getMin();
-        Vector maxVector = collider.getMax();
-        double[] center = {this.center.getX(), this.center.getY(), this.center.getZ()};
-        double[] min = {minVector.getX(), minVector.getY(), minVector.getZ()};
-        double[] max = {maxVector.getX(), maxVector.getY(), maxVector.getZ()};
-        double result = 0;
-        for (int i = 0; i < 3; i++) {
-            if (center[i] < min[i]) result += Math.pow(center[i] - min[i], 2);
-            else if (center[i] > max[i]) result += Math.pow(center[i] - max[i], 2);
-        }
-        return result <= Math.pow(radius, 2);
+        return collider.getWorld().equals(this.world) && Intersections.sphereIntersectsAabb(center.getX(), center.getY(), center.getZ(), radius,
+                collider.getMinX(), collider.getMinY(), collider.getMinZ(), collider.getMaxX(), collider.getMaxY(), collider.getMaxZ());
+    }
+
+    @Override
+    public boolean mayIntersect(double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        return Intersections.sphereIntersectsAabb(center.getX(), center.getY(), center.getZ(), radius, minX, minY, minZ, maxX, maxY, maxZ);
+    }
+
+    @Override
+    public int getShapeType() {
+        return IntersectionMatrix.SPHERE;
     }
 
     @Override
@@ -100,6 +87,11 @@ public class SphereCollider extends AbstractCollider {
 
     @Override
     public boolean contains(ImmutableVector point) {
-        return point.isInSphere(center, radius);
+        return contains(point.getX(), point.getY(), point.getZ());
+    }
+
+    @Override
+    public boolean contains(double x, double y, double z) {
+        return Intersections.sphereContains(center.getX(), center.getY(), center.getZ(), radius, x, y, z);
     }
 }
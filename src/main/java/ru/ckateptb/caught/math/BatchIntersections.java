@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.ckateptb.caught.math;
+
+import java.util.Arrays;
+
+/**
+ * Tests one shape against many axis aligned boxes given in structure of arrays form, box {@code i} spanning
+ * {@code minX[i]..maxX[i]} and so on. Results are written to a bitset, bit {@code i % 64} of word {@code i / 64} is set
+ * when box {@code i} passes, the words covering the boxes are cleared first.
+ * <p>
+ * Tests run on the {@code jdk.incubator.vector} API when the module is present (started with
+ * {@code --add-modules jdk.incubator.vector}) and the {@code caught.simd} system property isn't {@code false},
+ * otherwise on scalar loops. Both give the same results as the matching {@link Intersections} tests.
+ */
+public final class BatchIntersections {
+    private static final BatchKernel KERNEL = createKernel();
+
+    private BatchIntersections() {
+    }
+
+    private static BatchKernel createKernel() {
+        if (!Boolean.parseBoolean(System.getProperty("caught.simd", "true"))
+                || ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return new ScalarBatchKernel();
+        }
+        try {
+            return (BatchKernel) Class.forName("ru.ckateptb.caught.math.VectorBatchKernel").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return new ScalarBatchKernel();
+        }
+    }
+
+    /**
+     * @return true if tests run on the vector API
+     */
+    public static boolean isVectorized() {
+        return !(KERNEL instanceof ScalarBatchKernel);
+    }
+
+    /**
+     * @return words needed by a bitset holding the given number of boxes
+     */
+    public static int words(int count) {
+        return (count + 63) >>> 6;
+    }
+
+    /**
+     * Same test as {@link Intersections#aabbIntersectsAabb}.
+     *
+     * @return number of boxes intersecting the query box
+     */
+    public static int aabbIntersectsAabbs(double qMinX, double qMinY, double qMinZ, double qMaxX, double qMaxY, double qMaxZ,
+                                          double[] minX, double[] minY, double[] minZ, double[] maxX, double[] maxY, double[] maxZ,
+                                          int count, long[] result) {
+        Arrays.fill(result, 0, words(count), 0);
+        return KERNEL.aabbIntersectsAabbs(qMinX, qMinY, qMinZ, qMaxX, qMaxY, qMaxZ, minX, minY, minZ, maxX, maxY, maxZ, count, result);
+    }
+
+    /**
+     * Same test as {@link Intersections#sphereIntersectsAabb}.
+     *
+     * @return number of boxes intersecting the sphere
+     */
+    public static int sphereIntersectsAabbs(double cx, double cy, double cz, double radius,
+                                            double[] minX, double[] minY, double[] minZ, double[] maxX, double[] maxY, double[] maxZ,
+                                            int count, long[] result) {
+        Arrays.fill(result, 0, words(count), 0);
+        return KERNEL.sphereIntersectsAabbs(cx, cy, cz, radius, minX, minY, minZ, maxX, maxY, maxZ, count, result);
+    }
+
+    /**
+     * Same test as {@link Intersections#rayIntersectsAabb} against boxes grown by the radius, conservative near their
+     * edges for thick rays.
+     *
+     * @return number of boxes crossed by the ray
+     */
+    public static int rayIntersectsAabbs(double ox, double oy, double oz, double dx, double dy, double dz, double length, double radius,
+                                         double[] minX, double[] minY, double[] minZ, double[] maxX, double[] maxY, double[] maxZ,
+                                         int count, long[] result) {
+        Arrays.fill(result, 0, words(count), 0);
+        return KERNEL.rayIntersectsAabbs(ox, oy, oz, dx, dy, dz, length, radius, minX, minY, minZ, maxX, maxY, maxZ, count, result);
+    }
+}
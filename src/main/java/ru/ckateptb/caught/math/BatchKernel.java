@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.ckateptb.caught.math;
+
+/**
+ * Tests one shape against many boxes given in structure of arrays form, see {@link BatchIntersections}.
+ */
+interface BatchKernel {
+    int aabbIntersectsAabbs(double qMinX, double qMinY, double qMinZ, double qMaxX, double qMaxY, double qMaxZ,
+                            double[] minX, double[] minY, double[] minZ, double[] maxX, double[] maxY, double[] maxZ,
+                            int count, long[] result);
+
+    int sphereIntersectsAabbs(double cx, double cy, double cz, double radius,
+                              double[] minX, double[] minY, double[] minZ, double[] maxX, double[] maxY, double[] maxZ,
+                              int count, long[] result);
+
+    int rayIntersectsAabbs(double ox, double oy, double oz, double dx, double dy, double dz, double length, double radius,
+                           double[] minX, double[] minY, double[] minZ, double[] maxX, double[] maxY, double[] maxZ,
+                           int count, long[] result);
+}
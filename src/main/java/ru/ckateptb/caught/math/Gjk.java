@@ -0,0 +1,304 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package ru.ckateptb.caught.math;
+
+/**
+ * Gilbert-Johnson-Keerthi test between a solid cylinder and a box or another cylinder, see Ericson "Real-Time Collision
+ * Detection" 9.5. After every support point the simplex is reduced to the feature closest to the origin with the
+ * closest point routines of 5.1.2, 5.1.5 and 5.1.6.
+ * <p>
+ * Shapes are described in the frame of the box, which is centered at the origin and aligned with the axes. Touching
+ * shapes intersect, like in the other cylinder tests.
+ */
+final class Gjk {
+    // Smooth shapes approach their closest points geometrically, this is far more than separated shapes need
+    private static final int MAX_ITERATIONS = 64;
+    // Squared distance below which the origin is considered reached
+    private static final double TOLERANCE = 1e-18;
+
+    // First shape, always a cylinder
+    private double aCx, aCy, aCz, aUx, aUy, aUz, aHalfLength, aRadius;
+    // Second shape, a box when box is set, a cylinder otherwise
+    private boolean box;
+    private double bEx, bEy, bEz;
+    private double bCx, bCy, bCz, bUx, bUy, bUz, bHalfLength, bRadius;
+    // Simplex of the Minkowski difference
+    private final double[] x = new double[4];
+    private final double[] y = new double[4];
+    private final double[] z = new double[4];
+    private int size;
+    // Last support point, then the closest point found on the simplex and the vertices it lies on
+    private double sx, sy, sz;
+    private double px, py, pz;
+    private int mask;
+
+    private Gjk() {
+    }
+
+    static boolean cylinderIntersectsBox(double cx, double cy, double cz, double ux, double uy, double uz,
+                                         double halfLength, double radius, double ex, double ey, double ez) {
+        Gjk gjk = new Gjk();
+        gjk.cylinder(cx, cy, cz, ux, uy, uz, halfLength, radius);
+        gjk.box = true;
+        gjk.bEx = ex;
+        gjk.bEy = ey;
+        gjk.bEz = ez;
+        return gjk.intersects();
+    }
+
+    static boolean cylinderIntersectsCylinder(double aCx, double aCy, double aCz, double aUx, double aUy, double aUz,
+                                              double aHalfLength, double aRadius,
+                                              double bCx, double bCy, double bCz, double bUx, double bUy, double bUz,
+                                              double bHalfLength, double bRadius) {
+        Gjk gjk = new Gjk();
+        gjk.cylinder(aCx, aCy, aCz, aUx, aUy, aUz, aHalfLength, aRadius);
+        gjk.bCx = bCx;
+        gjk.bCy = bCy;
+        gjk.bCz = bCz;
+        gjk.bUx = bUx;
+        gjk.bUy = bUy;
+        gjk.bUz = bUz;
+        gjk.bHalfLength = bHalfLength;
+        gjk.bRadius = bRadius;
+        return gjk.intersects();
+    }
+
+    private void cylinder(double cx, double cy, double cz, double ux, double uy, double uz, double halfLength, double radius) {
+        this.aCx = cx;
+        this.aCy = cy;
+        this.aCz = cz;
+        this.aUx = ux;
+        this.aUy = uy;
+        this.aUz = uz;
+        this.aHalfLength = halfLength;
+        this.aRadius = radius;
+    }
+
+    private boolean intersects() {
+        // Both centers are inside their shape, so their difference is a point of the Minkowski difference
+        double vx = aCx - (box ? 0 : bCx);
+        double vy = aCy - (box ? 0 : bCy);
+        double vz = aCz - (box ? 0 : bCz);
+        for (int i = 0; i < MAX_ITERATIONS; i++) {
+            if (Intersections.lengthSquared(vx, vy, vz) <= TOLERANCE) return true;
+            // Point of the difference furthest along -v
+            cylinderSupport(aCx, aCy, aCz, aUx, aUy, aUz, aHalfLength, aRadius, -vx, -vy, -vz);
+            double wx = sx, wy = sy, wz = sz;
+            if (box) {
+                sx = Math.copySign(bEx, vx);
+                sy = Math.copySign(bEy, vy);
+                sz = Math.copySign(bEz, vz);
+            } else {
+                cylinderSupport(bCx, bCy, bCz, bUx, bUy, bUz, bHalfLength, bRadius, vx, vy, vz);
+            }
+            wx -= sx;
+            wy -= sy;
+            wz -= sz;
+            // Every point of the difference is at least this far along v, so the plane through w separates the origin
+            if (Intersections.dot(vx, vy, vz, wx, wy, wz) > 0) return false;
+            x[size] = wx;
+            y[size] = wy;
+            z[size] = wz;
+            size++;
+            if (!reduce()) return true;
+            vx = px;
+            vy = py;
+            vz = pz;
+        }
+        // Still closing in, the shapes are touching within rounding
+        return true;
+    }
+
+    private void cylinderSupport(double cx, double cy, double cz, double ux, double uy, double uz, double halfLength, double radius,
+                                 double dx, double dy, double dz) {
+        double along = Intersections.dot(dx, dy, dz, ux, uy, uz);
+        double end = Math.copySign(halfLength, along);
+        double rx = dx - ux * along, ry = dy - uy * along, rz = dz - uz * along;
+        double length = Math.sqrt(Intersections.lengthSquared(rx, ry, rz));
+        double scale = length > Intersections.EPSILON ? radius / length : 0;
+        sx = cx + ux * end + rx * scale;
+        sy = cy + uy * end + ry * scale;
+        sz = cz + uz * end + rz * scale;
+    }
+
+    // Finds the point of the simplex closest to the origin and keeps only the vertices it lies on, false if the
+    // simplex is a tetrahedron enclosing the origin
+    private boolean reduce() {
+        switch (size) {
+            case 1 -> {
+                px = x[0];
+                py = y[0];
+                pz = z[0];
+                mask = 1;
+            }
+            case 2 -> segment(0, 1);
+            case 3 -> triangle(0, 1, 2);
+            default -> {
+                if (!tetrahedron()) return false;
+            }
+        }
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if ((mask & (1 << i)) == 0) continue;
+            x[kept] = x[i];
+            y[kept] = y[i];
+            z[kept] = z[i];
+            kept++;
+        }
+        size = kept;
+        return true;
+    }
+
+    private void segment(int a, int b) {
+        double abx = x[b] - x[a], aby = y[b] - y[a], abz = z[b] - z[a];
+        double length = Intersections.lengthSquared(abx, aby, abz);
+        double t = length > TOLERANCE ? -Intersections.dot(x[a], y[a], z[a], abx, aby, abz) / length : 0;
+        if (t <= 0) {
+            vertex(a);
+        } else if (t >= 1) {
+            vertex(b);
+        } else {
+            px = x[a] + abx * t;
+            py = y[a] + aby * t;
+            pz = z[a] + abz * t;
+            mask = (1 << a) | (1 << b);
+        }
+    }
+
+    private void vertex(int a) {
+        px = x[a];
+        py = y[a];
+        pz = z[a];
+        mask = 1 << a;
+    }
+
+    // Ericson 5.1.5 with the origin as the query point
+    private void triangle(int a, int b, int c) {
+        double abx = x[b] - x[a], aby = y[b] - y[a], abz = z[b] - z[a];
+        double acx = x[c] - x[a], acy = y[c] - y[a], acz = z[c] - z[a];
+        double d1 = -Intersections.dot(abx, aby, abz, x[a], y[a], z[a]);
+        double d2 = -Intersections.dot(acx, acy, acz, x[a], y[a], z[a]);
+        if (d1 <= 0 && d2 <= 0) {
+            vertex(a);
+            return;
+        }
+        double d3 = -Intersections.dot(abx, aby, abz, x[b], y[b], z[b]);
+        double d4 = -Intersections.dot(acx, acy, acz, x[b], y[b], z[b]);
+        if (d3 >= 0 && d4 <= d3) {
+            vertex(b);
+            return;
+        }
+        double vc = d1 * d4 - d3 * d2;
+        if (vc <= 0 && d1 >= 0 && d3 <= 0) {
+            segment(a, b);
+            return;
+        }
+        double d5 = -Intersections.dot(abx, aby, abz, x[c], y[c], z[c]);
+        double d6 = -Intersections.dot(acx, acy, acz, x[c], y[c], z[c]);
+        if (d6 >= 0 && d5 <= d6) {
+            vertex(c);
+            return;
+        }
+        double vb = d5 * d2 - d1 * d6;
+        if (vb <= 0 && d2 >= 0 && d6 <= 0) {
+            segment(a, c);
+            return;
+        }
+        double va = d3 * d6 - d5 * d4;
+        if (va <= 0 && d4 - d3 >= 0 && d5 - d6 >= 0) {
+            segment(b, c);
+            return;
+        }
+        double sum = va + vb + vc;
+        if (sum <= TOLERANCE) {
+            // Degenerate triangle, the closest point is on one of its edges
+            closestEdge(a, b, c);
+            return;
+        }
+        double v = vb / sum;
+        double w = vc / sum;
+        px = x[a] + abx * v + acx * w;
+        py = y[a] + aby * v + acy * w;
+        pz = z[a] + abz * v + acz * w;
+        mask = (1 << a) | (1 << b) | (1 << c);
+    }
+
+    private void closestEdge(int a, int b, int c) {
+        segment(a, b);
+        double bestX = px, bestY = py, bestZ = pz;
+        int bestMask = mask;
+        double best = Intersections.lengthSquared(px, py, pz);
+        segment(a, c);
+        if (Intersections.lengthSquared(px, py, pz) < best) {
+            best = Intersections.lengthSquared(px, py, pz);
+            bestX = px;
+            bestY = py;
+            bestZ = pz;
+            bestMask = mask;
+        }
+        segment(b, c);
+        if (Intersections.lengthSquared(px, py, pz) < best) return;
+        px = bestX;
+        py = bestY;
+        pz = bestZ;
+        mask = bestMask;
+    }
+
+    // Ericson 5.1.6, the closest point is on a face the origin lies outside of, none means the origin is enclosed
+    private boolean tetrahedron() {
+        double best = Double.POSITIVE_INFINITY;
+        double bestX = 0, bestY = 0, bestZ = 0;
+        int bestMask = 0;
+        for (int face = 0; face < 4; face++) {
+            // Face opposite to vertex 3 - face
+            int opposite = 3 - face;
+            int a = opposite == 0 ? 1 : 0;
+            int b = opposite <= 1 ? 2 : 1;
+            int c = opposite <= 2 ? 3 : 2;
+            if (!outside(a, b, c, opposite)) continue;
+            triangle(a, b, c);
+            double distance = Intersections.lengthSquared(px, py, pz);
+            if (distance < best) {
+                best = distance;
+                bestX = px;
+                bestY = py;
+                bestZ = pz;
+                bestMask = mask;
+            }
+        }
+        if (best == Double.POSITIVE_INFINITY) return false;
+        px = bestX;
+        py = bestY;
+        pz = bestZ;
+        mask = bestMask;
+        return true;
+    }
+
+    // Whether the origin and the opposite vertex lie on different sides of the face, a flat tetrahedron has no inside
+    private boolean outside(int a, int b, int c, int opposite) {
+        double abx = x[b] - x[a], aby = y[b] - y[a], abz = z[b] - z[a];
+        double acx = x[c] - x[a], acy = y[c] - y[a], acz = z[c] - z[a];
+        double nx = aby * acz - abz * acy;
+        double ny = abz * acx - abx * acz;
+        double nz = abx * acy - aby * acx;
+        double origin = -Intersections.dot(nx, ny, nz, x[a], y[a], z[a]);
+        double vertex = Intersections.dot(nx, ny, nz, x[opposite] - x[a], y[opposite] - y[a], z[opposite] - z[a]);
+        return Math.abs(vertex) <= TOLERANCE || origin * vertex < 0;
+    }
+}
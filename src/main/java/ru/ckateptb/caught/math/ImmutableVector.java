@@ -23,6 +23,7 @@ import org.bukkit.block.Block;
 import org.bukkit.block.BlockFace;
 import org.bukkit.entity.Entity;
 import org.bukkit.util.Vector;
+import ru.ckateptb.caught.block.UnloadedChunkPolicy;
 import ru.ckateptb.caught.collider.AxisAlignedBoundingBoxCollider;
 import ru.ckateptb.caught.collider.RayCollider;
 import ru.ckateptb.caught.collider.SphereCollider;
@@ -169,11 +170,11 @@ public class ImmutableVector extends Vector {
     }
 
     public boolean isInAABB(AxisAlignedBoundingBoxCollider collider) {
-        return isInAABB(collider.getMin(), collider.getMax());
+        return collider.contains(x, y, z);
     }
 
     public boolean isInSphere(SphereCollider collider) {
-        return isInSphere(collider.getCenter(), collider.getRadius());
+        return collider.contains(x, y, z);
     }
 
     @Override
@@ -334,6 +335,16 @@ public class ImmutableVector extends Vector {
     }
 
     public double getDistanceAboveGround(World world, boolean ignoreLiquids) {
+        return getDistanceAboveGround(world, ignoreLiquids, UnloadedChunkPolicy.LOAD);
+    }
+
+    /**
+     * @param policy how an unloaded column is treated, a solid column puts the ground right here
+     */
+    public double getDistanceAboveGround(World world, boolean ignoreLiquids, UnloadedChunkPolicy policy) {
+        if (policy != UnloadedChunkPolicy.LOAD && !world.isChunkLoaded(getBlockX() >> 4, getBlockZ() >> 4)) {
+            return policy == UnloadedChunkPolicy.SOLID ? 0 : y;
+        }
         return y - new RayCollider(world, this, MINUS_J, Math.min(world.getMaxHeight(), y), 0)
                 .getFirstBlock(ignoreLiquids, true)
                 .map(Map.Entry::getKey)
@@ -0,0 +1,970 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.ckateptb.caught.math;
+
+/**
+ * Allocation-free narrowphase kernel working on raw x/y/z components.
+ * <p>
+ * Oriented boxes are described by a center, a flat row-major basis ({@code basis[3 * i .. 3 * i + 2]} is the i-th unit axis)
+ * and the half extents along each axis.
+ */
+public final class Intersections {
+    // Guards the cross product axes against parallel edges, see Ericson "Real-Time Collision Detection" 4.4.1
+    static final double EPSILON = 1e-9;
+    private static final double GOLDEN_RATIO = (Math.sqrt(5) - 1) / 2;
+    // Bracket width in blocks at which the segment to cylinder distance search stops
+    private static final double SEARCH_TOLERANCE = 1e-6;
+    private static final double[] IDENTITY_BASIS = {1, 0, 0, 0, 1, 0, 0, 0, 1};
+
+    private Intersections() {
+    }
+
+    public static double dot(double ax, double ay, double az, double bx, double by, double bz) {
+        return ax * bx + ay * by + az * bz;
+    }
+
+    public static double lengthSquared(double x, double y, double z) {
+        return x * x + y * y + z * z;
+    }
+
+    public static double distanceSquared(double ax, double ay, double az, double bx, double by, double bz) {
+        return lengthSquared(ax - bx, ay - by, az - bz);
+    }
+
+    public static boolean sphereIntersectsSphere(double ax, double ay, double az, double aRadius,
+                                                 double bx, double by, double bz, double bRadius) {
+        double radius = aRadius + bRadius;
+        return distanceSquared(ax, ay, az, bx, by, bz) <= radius * radius;
+    }
+
+    public static boolean sphereContains(double cx, double cy, double cz, double radius, double px, double py, double pz) {
+        return distanceSquared(cx, cy, cz, px, py, pz) <= radius * radius;
+    }
+
+    /**
+     * Same semantics as {@link org.bukkit.util.BoundingBox#overlaps(org.bukkit.util.BoundingBox)}: touching boxes do not overlap.
+     */
+    public static boolean aabbIntersectsAabb(double aMinX, double aMinY, double aMinZ, double aMaxX, double aMaxY, double aMaxZ,
+                                             double bMinX, double bMinY, double bMinZ, double bMaxX, double bMaxY, double bMaxZ) {
+        return aMinX < bMaxX && aMaxX > bMinX
+                && aMinY < bMaxY && aMaxY > bMinY
+                && aMinZ < bMaxZ && aMaxZ > bMinZ;
+    }
+
+    /**
+     * Same semantics as {@link org.bukkit.util.Vector#isInAABB(org.bukkit.util.Vector, org.bukkit.util.Vector)}.
+     */
+    public static boolean aabbContains(double minX, double minY, double minZ, double maxX, double maxY, double maxZ,
+                                       double px, double py, double pz) {
+        return px >= minX && px <= maxX && py >= minY && py <= maxY && pz >= minZ && pz <= maxZ;
+    }
+
+    public static double distanceSquaredToAabb(double px, double py, double pz,
+                                               double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        double result = 0;
+        if (px < minX) result += (minX - px) * (minX - px);
+        else if (px > maxX) result += (px - maxX) * (px - maxX);
+        if (py < minY) result += (minY - py) * (minY - py);
+        else if (py > maxY) result += (py - maxY) * (py - maxY);
+        if (pz < minZ) result += (minZ - pz) * (minZ - pz);
+        else if (pz > maxZ) result += (pz - maxZ) * (pz - maxZ);
+        return result;
+    }
+
+    public static boolean sphereIntersectsAabb(double cx, double cy, double cz, double radius,
+                                               double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        return distanceSquaredToAabb(cx, cy, cz, minX, minY, minZ, maxX, maxY, maxZ) <= radius * radius;
+    }
+
+    public static double distanceSquaredToObb(double px, double py, double pz,
+                                              double cx, double cy, double cz, double[] basis, double ex, double ey, double ez) {
+        double dx = px - cx;
+        double dy = py - cy;
+        double dz = pz - cz;
+        return excessSquared(dot(dx, dy, dz, basis[0], basis[1], basis[2]), ex)
+                + excessSquared(dot(dx, dy, dz, basis[3], basis[4], basis[5]), ey)
+                + excessSquared(dot(dx, dy, dz, basis[6], basis[7], basis[8]), ez);
+    }
+
+    private static double excessSquared(double distance, double extent) {
+        if (distance < -extent) return (distance + extent) * (distance + extent);
+        if (distance > extent) return (distance - extent) * (distance - extent);
+        return 0;
+    }
+
+    public static boolean sphereIntersectsObb(double sx, double sy, double sz, double radius,
+                                              double cx, double cy, double cz, double[] basis, double ex, double ey, double ez) {
+        return distanceSquaredToObb(sx, sy, sz, cx, cy, cz, basis, ex, ey, ez) <= radius * radius;
+    }
+
+    /**
+     * Separating axis test between two oriented boxes, performed in the frame of box A
+     * so the 15 candidate axes never have to be built explicitly.
+     */
+    public static boolean obbIntersectsObb(double aCx, double aCy, double aCz, double[] a, double aEx, double aEy, double aEz,
+                                           double bCx, double bCy, double bCz, double[] b, double bEx, double bEy, double bEz) {
+        // Rotation expressing B in A's frame
+        double r00 = a[0] * b[0] + a[1] * b[1] + a[2] * b[2];
+        double r01 = a[0] * b[3] + a[1] * b[4] + a[2] * b[5];
+        double r02 = a[0] * b[6] + a[1] * b[7] + a[2] * b[8];
+        double r10 = a[3] * b[0] + a[4] * b[1] + a[5] * b[2];
+        double r11 = a[3] * b[3] + a[4] * b[4] + a[5] * b[5];
+        double r12 = a[3] * b[6] + a[4] * b[7] + a[5] * b[8];
+        double r20 = a[6] * b[0] + a[7] * b[1] + a[8] * b[2];
+        double r21 = a[6] * b[3] + a[7] * b[4] + a[8] * b[5];
+        double r22 = a[6] * b[6] + a[7] * b[7] + a[8] * b[8];
+
+        // Translation expressed in A's frame
+        double dx = bCx - aCx;
+        double dy = bCy - aCy;
+        double dz = bCz - aCz;
+        double t0 = dx * a[0] + dy * a[1] + dz * a[2];
+        double t1 = dx * a[3] + dy * a[4] + dz * a[5];
+        double t2 = dx * a[6] + dy * a[7] + dz * a[8];
+
+        double ar00 = Math.abs(r00) + EPSILON;
+        double ar01 = Math.abs(r01) + EPSILON;
+        double ar02 = Math.abs(r02) + EPSILON;
+        double ar10 = Math.abs(r10) + EPSILON;
+        double ar11 = Math.abs(r11) + EPSILON;
+        double ar12 = Math.abs(r12) + EPSILON;
+        double ar20 = Math.abs(r20) + EPSILON;
+        double ar21 = Math.abs(r21) + EPSILON;
+        double ar22 = Math.abs(r22) + EPSILON;
+
+        // A's face axes
+        if (Math.abs(t0) > aEx + bEx * ar00 + bEy * ar01 + bEz * ar02) return false;
+        if (Math.abs(t1) > aEy + bEx * ar10 + bEy * ar11 + bEz * ar12) return false;
+        if (Math.abs(t2) > aEz + bEx * ar20 + bEy * ar21 + bEz * ar22) return false;
+
+        // B's face axes
+        if (Math.abs(t0 * r00 + t1 * r10 + t2 * r20) > aEx * ar00 + aEy * ar10 + aEz * ar20 + bEx) return false;
+        if (Math.abs(t0 * r01 + t1 * r11 + t2 * r21) > aEx * ar01 + aEy * ar11 + aEz * ar21 + bEy) return false;
+        if (Math.abs(t0 * r02 + t1 * r12 + t2 * r22) > aEx * ar02 + aEy * ar12 + aEz * ar22 + bEz) return false;
+
+        // Edge cross products
+        if (Math.abs(t2 * r10 - t1 * r20) > aEy * ar20 + aEz * ar10 + bEy * ar02 + bEz * ar01) return false;
+        if (Math.abs(t2 * r11 - t1 * r21) > aEy * ar21 + aEz * ar11 + bEx * ar02 + bEz * ar00) return false;
+        if (Math.abs(t2 * r12 - t1 * r22) > aEy * ar22 + aEz * ar12 + bEx * ar01 + bEy * ar00) return false;
+        if (Math.abs(t0 * r20 - t2 * r00) > aEx * ar20 + aEz * ar00 + bEy * ar12 + bEz * ar11) return false;
+        if (Math.abs(t0 * r21 - t2 * r01) > aEx * ar21 + aEz * ar01 + bEx * ar12 + bEz * ar10) return false;
+        if (Math.abs(t0 * r22 - t2 * r02) > aEx * ar22 + aEz * ar02 + bEx * ar11 + bEy * ar10) return false;
+        if (Math.abs(t1 * r00 - t0 * r10) > aEx * ar10 + aEy * ar00 + bEy * ar22 + bEz * ar21) return false;
+        if (Math.abs(t1 * r01 - t0 * r11) > aEx * ar11 + aEy * ar01 + bEx * ar22 + bEz * ar20) return false;
+        return !(Math.abs(t1 * r02 - t0 * r12) > aEx * ar12 + aEy * ar02 + bEx * ar21 + bEy * ar20);
+    }
+
+    /**
+     * Separating axis test between an oriented box and an axis aligned box given by its center and half extents.
+     * Equivalent to {@link #obbIntersectsObb} with an identity basis for the second box, but without building it.
+     */
+    public static boolean obbIntersectsAabb(double aCx, double aCy, double aCz, double[] a, double aEx, double aEy, double aEz,
+                                            double bCx, double bCy, double bCz, double bEx, double bEy, double bEz) {
+        // With B's basis being the identity, R is simply A's basis
+        double r00 = a[0], r01 = a[1], r02 = a[2];
+        double r10 = a[3], r11 = a[4], r12 = a[5];
+        double r20 = a[6], r21 = a[7], r22 = a[8];
+
+        double dx = bCx - aCx;
+        double dy = bCy - aCy;
+        double dz = bCz - aCz;
+        double t0 = dx * r00 + dy * r01 + dz * r02;
+        double t1 = dx * r10 + dy * r11 + dz * r12;
+        double t2 = dx * r20 + dy * r21 + dz * r22;
+
+        double ar00 = Math.abs(r00) + EPSILON;
+        double ar01 = Math.abs(r01) + EPSILON;
+        double ar02 = Math.abs(r02) + EPSILON;
+        double ar10 = Math.abs(r10) + EPSILON;
+        double ar11 = Math.abs(r11) + EPSILON;
+        double ar12 = Math.abs(r12) + EPSILON;
+        double ar20 = Math.abs(r20) + EPSILON;
+        double ar21 = Math.abs(r21) + EPSILON;
+        double ar22 = Math.abs(r22) + EPSILON;
+
+        // World axes first, they are the cheapest: the translation is already expressed in B's frame
+        if (Math.abs(dx) > aEx * ar00 + aEy * ar10 + aEz * ar20 + bEx) return false;
+        if (Math.abs(dy) > aEx * ar01 + aEy * ar11 + aEz * ar21 + bEy) return false;
+        if (Math.abs(dz) > aEx * ar02 + aEy * ar12 + aEz * ar22 + bEz) return false;
+
+        if (Math.abs(t0) > aEx + bEx * ar00 + bEy * ar01 + bEz * ar02) return false;
+        if (Math.abs(t1) > aEy + bEx * ar10 + bEy * ar11 + bEz * ar12) return false;
+        if (Math.abs(t2) > aEz + bEx * ar20 + bEy * ar21 + bEz * ar22) return false;
+
+        if (Math.abs(t2 * r10 - t1 * r20) > aEy * ar20 + aEz * ar10 + bEy * ar02 + bEz * ar01) return false;
+        if (Math.abs(t2 * r11 - t1 * r21) > aEy * ar21 + aEz * ar11 + bEx * ar02 + bEz * ar00) return false;
+        if (Math.abs(t2 * r12 - t1 * r22) > aEy * ar22 + aEz * ar12 + bEx * ar01 + bEy * ar00) return false;
+        if (Math.abs(t0 * r20 - t2 * r00) > aEx * ar20 + aEz * ar00 + bEy * ar12 + bEz * ar11) return false;
+        if (Math.abs(t0 * r21 - t2 * r01) > aEx * ar21 + aEz * ar01 + bEx * ar12 + bEz * ar10) return false;
+        if (Math.abs(t0 * r22 - t2 * r02) > aEx * ar22 + aEz * ar02 + bEx * ar11 + bEy * ar10) return false;
+        if (Math.abs(t1 * r00 - t0 * r10) > aEx * ar10 + aEy * ar00 + bEy * ar22 + bEz * ar21) return false;
+        if (Math.abs(t1 * r01 - t0 * r11) > aEx * ar11 + aEy * ar01 + bEx * ar22 + bEz * ar20) return false;
+        return !(Math.abs(t1 * r02 - t0 * r12) > aEx * ar12 + aEy * ar02 + bEx * ar21 + bEy * ar20);
+    }
+
+    /**
+     * Slab test of the segment {@code origin + t * direction, t in [0, length]} against an axis aligned box.
+     *
+     * @param direction unit direction of the segment
+     * @param result    optional array receiving the entry and exit distances on hit
+     */
+    public static boolean rayIntersectsAabb(double ox, double oy, double oz, double dx, double dy, double dz, double length,
+                                            double minX, double minY, double minZ, double maxX, double maxY, double maxZ,
+                                            double[] result) {
+        double entry = 0;
+        double exit = length;
+        if (Math.abs(dx) < EPSILON) {
+            if (ox < minX || ox > maxX) return false;
+        } else {
+            double t1 = (minX - ox) / dx;
+            double t2 = (maxX - ox) / dx;
+            entry = Math.max(entry, Math.min(t1, t2));
+            exit = Math.min(exit, Math.max(t1, t2));
+            if (entry > exit) return false;
+        }
+        if (Math.abs(dy) < EPSILON) {
+            if (oy < minY || oy > maxY) return false;
+        } else {
+            double t1 = (minY - oy) / dy;
+            double t2 = (maxY - oy) / dy;
+            entry = Math.max(entry, Math.min(t1, t2));
+            exit = Math.min(exit, Math.max(t1, t2));
+            if (entry > exit) return false;
+        }
+        if (Math.abs(dz) < EPSILON) {
+            if (oz < minZ || oz > maxZ) return false;
+        } else {
+            double t1 = (minZ - oz) / dz;
+            double t2 = (maxZ - oz) / dz;
+            entry = Math.max(entry, Math.min(t1, t2));
+            exit = Math.min(exit, Math.max(t1, t2));
+            if (entry > exit) return false;
+        }
+        return interval(entry, exit, result);
+    }
+
+    /**
+     * @param direction unit direction of the segment
+     * @param result    optional array receiving the entry and exit distances on hit
+     */
+    public static boolean rayIntersectsSphere(double ox, double oy, double oz, double dx, double dy, double dz, double length,
+                                              double cx, double cy, double cz, double radius, double[] result) {
+        double mx = ox - cx;
+        double my = oy - cy;
+        double mz = oz - cz;
+        double b = dot(mx, my, mz, dx, dy, dz);
+        double c = lengthSquared(mx, my, mz) - radius * radius;
+        if (c > 0 && b > 0) return false; // Starts outside and points away
+        double discriminant = b * b - c;
+        if (discriminant < 0) return false;
+        double root = Math.sqrt(discriminant);
+        double entry = Math.max(0, -b - root);
+        double exit = Math.min(length, -b + root);
+        return entry <= exit && interval(entry, exit, result);
+    }
+
+    /**
+     * Slab test performed in the local frame of the oriented box.
+     *
+     * @param direction unit direction of the segment
+     * @param result    optional array receiving the entry and exit distances on hit
+     */
+    public static boolean rayIntersectsObb(double ox, double oy, double oz, double dx, double dy, double dz, double length,
+                                           double cx, double cy, double cz, double[] basis, double ex, double ey, double ez,
+                                           double[] result) {
+        double mx = ox - cx;
+        double my = oy - cy;
+        double mz = oz - cz;
+        return rayIntersectsAabb(
+                dot(mx, my, mz, basis[0], basis[1], basis[2]),
+                dot(mx, my, mz, basis[3], basis[4], basis[5]),
+                dot(mx, my, mz, basis[6], basis[7], basis[8]),
+                dot(dx, dy, dz, basis[0], basis[1], basis[2]),
+                dot(dx, dy, dz, basis[3], basis[4], basis[5]),
+                dot(dx, dy, dz, basis[6], basis[7], basis[8]),
+                length, -ex, -ey, -ez, ex, ey, ez, result);
+    }
+
+    /**
+     * Squared distance between segments {@code p1 + s * (q1 - p1)} and {@code p2 + t * (q2 - p2)},
+     * see Ericson "Real-Time Collision Detection" 5.1.9.
+     *
+     * @param result optional array receiving the parameters s and t of the closest points
+     */
+    public static double segmentDistanceSquared(double p1x, double p1y, double p1z, double q1x, double q1y, double q1z,
+                                                double p2x, double p2y, double p2z, double q2x, double q2y, double q2z,
+                                                double[] result) {
+        double d1x = q1x - p1x, d1y = q1y - p1y, d1z = q1z - p1z;
+        double d2x = q2x - p2x, d2y = q2y - p2y, d2z = q2z - p2z;
+        double rx = p1x - p2x, ry = p1y - p2y, rz = p1z - p2z;
+        double a = lengthSquared(d1x, d1y, d1z);
+        double e = lengthSquared(d2x, d2y, d2z);
+        double f = dot(d2x, d2y, d2z, rx, ry, rz);
+        double s;
+        double t;
+        if (a <= EPSILON && e <= EPSILON) {
+            s = 0;
+            t = 0;
+        } else if (a <= EPSILON) {
+            s = 0;
+            t = clamp(f / e, 0, 1);
+        } else {
+            double c = dot(d1x, d1y, d1z, rx, ry, rz);
+            if (e <= EPSILON) {
+                t = 0;
+                s = clamp(-c / a, 0, 1);
+            } else {
+                double b = dot(d1x, d1y, d1z, d2x, d2y, d2z);
+                double denominator = a * e - b * b;
+                s = denominator != 0 ? clamp((b * f - c * e) / denominator, 0, 1) : 0;
+                t = (b * s + f) / e;
+                if (t < 0) {
+                    t = 0;
+                    s = clamp(-c / a, 0, 1);
+                } else if (t > 1) {
+                    t = 1;
+                    s = clamp((b - c) / a, 0, 1);
+                }
+            }
+        }
+        if (result != null) {
+            result[0] = s;
+            result[1] = t;
+        }
+        return distanceSquared(p1x + d1x * s, p1y + d1y * s, p1z + d1z * s, p2x + d2x * t, p2y + d2y * t, p2z + d2z * t);
+    }
+
+    public static double distanceSquaredToSegment(double px, double py, double pz,
+                                                  double ax, double ay, double az, double bx, double by, double bz) {
+        double dx = bx - ax, dy = by - ay, dz = bz - az;
+        double length = lengthSquared(dx, dy, dz);
+        double t = length <= EPSILON ? 0 : clamp(dot(px - ax, py - ay, pz - az, dx, dy, dz) / length, 0, 1);
+        return distanceSquared(px, py, pz, ax + dx * t, ay + dy * t, az + dz * t);
+    }
+
+    /**
+     * Exact squared distance between the segment {@code a + t * (b - a)} and an axis aligned box.
+     * <p>
+     * The planes of the box split the segment in at most seven pieces, on each of them the squared distance is a
+     * single quadratic in t which is minimized in closed form. Each axis crosses its two planes in a known order, so the
+     * pieces are visited by merging the three axes without sorting.
+     */
+    public static double segmentDistanceSquaredToAabb(double ax, double ay, double az, double bx, double by, double bz,
+                                                      double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        double dx = bx - ax, dy = by - ay, dz = bz - az;
+        // Pending plane crossings of each axis, nearest first, infinite once consumed or outside the segment
+        double x0 = Double.POSITIVE_INFINITY, x1 = Double.POSITIVE_INFINITY;
+        if (dx != 0) {
+            double t1 = crossing((minX - ax) / dx), t2 = crossing((maxX - ax) / dx);
+            x0 = Math.min(t1, t2);
+            x1 = Math.max(t1, t2);
+        }
+        double y0 = Double.POSITIVE_INFINITY, y1 = Double.POSITIVE_INFINITY;
+        if (dy != 0) {
+            double t1 = crossing((minY - ay) / dy), t2 = crossing((maxY - ay) / dy);
+            y0 = Math.min(t1, t2);
+            y1 = Math.max(t1, t2);
+        }
+        double z0 = Double.POSITIVE_INFINITY, z1 = Double.POSITIVE_INFINITY;
+        if (dz != 0) {
+            double t1 = crossing((minZ - az) / dz), t2 = crossing((maxZ - az) / dz);
+            z0 = Math.min(t1, t2);
+            z1 = Math.max(t1, t2);
+        }
+        double best = Double.POSITIVE_INFINITY;
+        double from = 0;
+        while (from < 1 && best > 0) {
+            double to = Math.min(1, Math.min(x0, Math.min(y0, z0)));
+            best = Math.min(best, pieceDistanceSquared(from, to, ax, ay, az, dx, dy, dz, minX, minY, minZ, maxX, maxY, maxZ));
+            if (x0 == to) {
+                x0 = x1;
+                x1 = Double.POSITIVE_INFINITY;
+            }
+            if (y0 == to) {
+                y0 = y1;
+                y1 = Double.POSITIVE_INFINITY;
+            }
+            if (z0 == to) {
+                z0 = z1;
+                z1 = Double.POSITIVE_INFINITY;
+            }
+            from = to;
+        }
+        return best;
+    }
+
+    private static double crossing(double t) {
+        return t > 0 && t < 1 ? t : Double.POSITIVE_INFINITY;
+    }
+
+    // Minimum of the squared distance over a piece of the segment that crosses no box plane
+    private static double pieceDistanceSquared(double from, double to, double ax, double ay, double az, double dx, double dy, double dz,
+                                               double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        double middle = (from + to) * 0.5;
+        // Coefficients of a * t^2 + b * t + c over the piece, only axes outside the box contribute
+        double a = 0, b = 0, c = 0;
+        double offset = outside(ax + dx * middle, ax, minX, maxX);
+        if (offset != 0) {
+            a += dx * dx;
+            b += 2 * dx * offset;
+            c += offset * offset;
+        }
+        offset = outside(ay + dy * middle, ay, minY, maxY);
+        if (offset != 0) {
+            a += dy * dy;
+            b += 2 * dy * offset;
+            c += offset * offset;
+        }
+        offset = outside(az + dz * middle, az, minZ, maxZ);
+        if (offset != 0) {
+            a += dz * dz;
+            b += 2 * dz * offset;
+            c += offset * offset;
+        }
+        double t = a > EPSILON ? clamp(-b / (2 * a), from, to) : from;
+        return Math.max(0, (a * t + b) * t + c);
+    }
+
+    // Offset of the segment start from the box plane the sample lies beyond, 0 if the sample is within the slab
+    private static double outside(double sample, double origin, double min, double max) {
+        if (sample < min) return origin - min;
+        if (sample > max) return origin - max;
+        return 0;
+    }
+
+    /**
+     * Exact squared distance from a point to a solid cylinder.
+     *
+     * @param ux         unit axis of the cylinder
+     * @param halfLength half of the cylinder length along its axis
+     */
+    public static double distanceSquaredToCylinder(double px, double py, double pz,
+                                                   double cx, double cy, double cz, double ux, double uy, double uz,
+                                                   double halfLength, double radius) {
+        double mx = px - cx, my = py - cy, mz = pz - cz;
+        double axial = dot(mx, my, mz, ux, uy, uz);
+        double radial = Math.sqrt(Math.max(0, lengthSquared(mx, my, mz) - axial * axial));
+        double outsideAxial = Math.max(Math.abs(axial) - halfLength, 0);
+        double outsideRadial = Math.max(radial - radius, 0);
+        return outsideAxial * outsideAxial + outsideRadial * outsideRadial;
+    }
+
+    public static boolean sphereIntersectsCylinder(double sx, double sy, double sz, double sphereRadius,
+                                                   double cx, double cy, double cz, double ux, double uy, double uz,
+                                                   double halfLength, double radius) {
+        return distanceSquaredToCylinder(sx, sy, sz, cx, cy, cz, ux, uy, uz, halfLength, radius) <= sphereRadius * sphereRadius;
+    }
+
+    /**
+     * Squared distance between the segment {@code a + t * (b - a)} and a solid cylinder, found iteratively.
+     * The distance to a convex set is convex along a segment, so a golden section search converges to the minimum. It
+     * stops once the bracket is narrower than a millionth of a block, the result is never below the exact distance and
+     * exceeds it by at most that much.
+     *
+     * @param threshold squared distance at which the search may stop early
+     */
+    public static double segmentDistanceSquaredToCylinder(double ax, double ay, double az, double bx, double by, double bz,
+                                                          double cx, double cy, double cz, double ux, double uy, double uz,
+                                                          double halfLength, double radius, double threshold) {
+        double dx = bx - ax, dy = by - ay, dz = bz - az;
+        double tolerance = SEARCH_TOLERANCE / Math.max(SEARCH_TOLERANCE, Math.sqrt(lengthSquared(dx, dy, dz)));
+        double low = 0;
+        double high = 1;
+        double best = Math.min(
+                distanceSquaredToCylinder(ax, ay, az, cx, cy, cz, ux, uy, uz, halfLength, radius),
+                distanceSquaredToCylinder(bx, by, bz, cx, cy, cz, ux, uy, uz, halfLength, radius));
+        double left = high - GOLDEN_RATIO * (high - low);
+        double right = low + GOLDEN_RATIO * (high - low);
+        double leftValue = distanceSquaredToCylinder(ax + dx * left, ay + dy * left, az + dz * left, cx, cy, cz, ux, uy, uz, halfLength, radius);
+        double rightValue = distanceSquaredToCylinder(ax + dx * right, ay + dy * right, az + dz * right, cx, cy, cz, ux, uy, uz, halfLength, radius);
+        while (best > threshold && high - low > tolerance) {
+            best = Math.min(best, Math.min(leftValue, rightValue));
+            if (leftValue < rightValue) {
+                high = right;
+                right = left;
+                rightValue = leftValue;
+                left = high - GOLDEN_RATIO * (high - low);
+                leftValue = distanceSquaredToCylinder(ax + dx * left, ay + dy * left, az + dz * left, cx, cy, cz, ux, uy, uz, halfLength, radius);
+            } else {
+                low = left;
+                left = right;
+                leftValue = rightValue;
+                right = low + GOLDEN_RATIO * (high - low);
+                rightValue = distanceSquaredToCylinder(ax + dx * right, ay + dy * right, az + dz * right, cx, cy, cz, ux, uy, uz, halfLength, radius);
+            }
+        }
+        return Math.min(best, Math.min(leftValue, rightValue));
+    }
+
+    /**
+     * Exact test of a solid cylinder against an oriented box. Boxes the separating axis test and the enclosing capsule
+     * can't reject and the inscribed capsule can't accept, which only happens near the rim, are decided by {@link Gjk}.
+     *
+     * @param basis box axes flattened row by row
+     */
+    public static boolean cylinderIntersectsObb(double cx, double cy, double cz, double ux, double uy, double uz,
+                                                double halfLength, double radius,
+                                                double bCx, double bCy, double bCz, double[] basis, double ex, double ey, double ez) {
+        // Work in the frame of the box
+        double mx = cx - bCx, my = cy - bCy, mz = cz - bCz;
+        double tx = dot(mx, my, mz, basis[0], basis[1], basis[2]);
+        double ty = dot(mx, my, mz, basis[3], basis[4], basis[5]);
+        double tz = dot(mx, my, mz, basis[6], basis[7], basis[8]);
+        double ax = dot(ux, uy, uz, basis[0], basis[1], basis[2]);
+        double ay = dot(ux, uy, uz, basis[3], basis[4], basis[5]);
+        double az = dot(ux, uy, uz, basis[6], basis[7], basis[8]);
+        if (!cylinderMayIntersectBox(tx, ty, tz, ax, ay, az, halfLength, radius, ex, ey, ez)) return false;
+        // The capsule inscribed in the cylinder
+        double inner = Math.min(halfLength, radius);
+        double segment = halfLength - inner;
+        if (segmentDistanceSquaredToAabb(tx - ax * segment, ty - ay * segment, tz - az * segment,
+                tx + ax * segment, ty + ay * segment, tz + az * segment, -ex, -ey, -ez, ex, ey, ez) <= inner * inner) return true;
+        return Gjk.cylinderIntersectsBox(tx, ty, tz, ax, ay, az, halfLength, radius, ex, ey, ez);
+    }
+
+    /**
+     * Exact test of a solid cylinder against an axis aligned box, see {@link #cylinderIntersectsObb}.
+     */
+    public static boolean cylinderIntersectsAabb(double cx, double cy, double cz, double ux, double uy, double uz,
+                                                 double halfLength, double radius,
+                                                 double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        return cylinderIntersectsObb(cx, cy, cz, ux, uy, uz, halfLength, radius,
+                (minX + maxX) * 0.5, (minY + maxY) * 0.5, (minZ + maxZ) * 0.5, IDENTITY_BASIS,
+                (maxX - minX) * 0.5, (maxY - minY) * 0.5, (maxZ - minZ) * 0.5);
+    }
+
+    /**
+     * Conservative test of a solid cylinder against an oriented box: it never misses an intersection but may report boxes
+     * that only come close to the rim of the cylinder. It is a separating axis test over the box axes, the cylinder axis
+     * and their cross products, followed by the capsule enclosing the cylinder. Curved surfaces have infinitely many
+     * candidate axes, so no finite set of them is exact.
+     *
+     * @param basis box axes flattened row by row
+     */
+    public static boolean cylinderMayIntersectObb(double cx, double cy, double cz, double ux, double uy, double uz,
+                                                  double halfLength, double radius,
+                                                  double bCx, double bCy, double bCz, double[] basis, double ex, double ey, double ez) {
+        // Work in the frame of the box
+        double mx = cx - bCx, my = cy - bCy, mz = cz - bCz;
+        return cylinderMayIntersectBox(dot(mx, my, mz, basis[0], basis[1], basis[2]),
+                dot(mx, my, mz, basis[3], basis[4], basis[5]),
+                dot(mx, my, mz, basis[6], basis[7], basis[8]),
+                dot(ux, uy, uz, basis[0], basis[1], basis[2]),
+                dot(ux, uy, uz, basis[3], basis[4], basis[5]),
+                dot(ux, uy, uz, basis[6], basis[7], basis[8]), halfLength, radius, ex, ey, ez);
+    }
+
+    /**
+     * Conservative test of a solid cylinder against an axis aligned box, see {@link #cylinderMayIntersectObb}.
+     */
+    public static boolean cylinderMayIntersectAabb(double cx, double cy, double cz, double ux, double uy, double uz,
+                                                   double halfLength, double radius,
+                                                   double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        return cylinderMayIntersectObb(cx, cy, cz, ux, uy, uz, halfLength, radius,
+                (minX + maxX) * 0.5, (minY + maxY) * 0.5, (minZ + maxZ) * 0.5, IDENTITY_BASIS,
+                (maxX - minX) * 0.5, (maxY - minY) * 0.5, (maxZ - minZ) * 0.5);
+    }
+
+    // Cylinder center t and axis a in the frame of a box centered at the origin
+    private static boolean cylinderMayIntersectBox(double tx, double ty, double tz, double ax, double ay, double az,
+                                                   double halfLength, double radius, double ex, double ey, double ez) {
+        return !separatesCylinderBox(1, 0, 0, tx, ty, tz, ax, ay, az, halfLength, radius, ex, ey, ez)
+                && !separatesCylinderBox(0, 1, 0, tx, ty, tz, ax, ay, az, halfLength, radius, ex, ey, ez)
+                && !separatesCylinderBox(0, 0, 1, tx, ty, tz, ax, ay, az, halfLength, radius, ex, ey, ez)
+                && !separatesCylinderBox(ax, ay, az, tx, ty, tz, ax, ay, az, halfLength, radius, ex, ey, ez)
+                && !separatesCylinderBox(0, az, -ay, tx, ty, tz, ax, ay, az, halfLength, radius, ex, ey, ez)
+                && !separatesCylinderBox(-az, 0, ax, tx, ty, tz, ax, ay, az, halfLength, radius, ex, ey, ez)
+                && !separatesCylinderBox(ay, -ax, 0, tx, ty, tz, ax, ay, az, halfLength, radius, ex, ey, ez)
+                // The cylinder lies within the capsule around its axis, which rejects most boxes near the rim
+                && segmentDistanceSquaredToAabb(tx - ax * halfLength, ty - ay * halfLength, tz - az * halfLength,
+                tx + ax * halfLength, ty + ay * halfLength, tz + az * halfLength, -ex, -ey, -ez, ex, ey, ez) <= radius * radius;
+    }
+
+    private static boolean separatesCylinderBox(double nx, double ny, double nz, double tx, double ty, double tz,
+                                                double ax, double ay, double az, double halfLength, double radius,
+                                                double ex, double ey, double ez) {
+        double length = lengthSquared(nx, ny, nz);
+        if (length <= EPSILON) return false;
+        double box = ex * Math.abs(nx) + ey * Math.abs(ny) + ez * Math.abs(nz);
+        return Math.abs(dot(tx, ty, tz, nx, ny, nz)) > box + cylinderProjection(nx, ny, nz, length, ax, ay, az, halfLength, radius);
+    }
+
+    // Half length of the projection of a cylinder onto an axis n of squared length {@code length}
+    private static double cylinderProjection(double nx, double ny, double nz, double length,
+                                             double ux, double uy, double uz, double halfLength, double radius) {
+        double along = dot(nx, ny, nz, ux, uy, uz);
+        return halfLength * Math.abs(along) + radius * Math.sqrt(Math.max(0, length - along * along));
+    }
+
+    /**
+     * Exact test between two solid cylinders. Pairs the separating axis test and the enclosing capsules can't reject and
+     * the inscribed capsules can't accept, which only happens near the rims, are decided by {@link Gjk}.
+     */
+    public static boolean cylinderIntersectsCylinder(double aCx, double aCy, double aCz, double aUx, double aUy, double aUz,
+                                                     double aHalfLength, double aRadius,
+                                                     double bCx, double bCy, double bCz, double bUx, double bUy, double bUz,
+                                                     double bHalfLength, double bRadius) {
+        if (!cylinderMayIntersectCylinder(aCx, aCy, aCz, aUx, aUy, aUz, aHalfLength, aRadius,
+                bCx, bCy, bCz, bUx, bUy, bUz, bHalfLength, bRadius)) return false;
+        // The capsules inscribed in the cylinders
+        double aInner = Math.min(aHalfLength, aRadius), aSegment = aHalfLength - aInner;
+        double bInner = Math.min(bHalfLength, bRadius), bSegment = bHalfLength - bInner;
+        if (segmentDistanceSquared(aCx - aUx * aSegment, aCy - aUy * aSegment, aCz - aUz * aSegment,
+                aCx + aUx * aSegment, aCy + aUy * aSegment, aCz + aUz * aSegment,
+                bCx - bUx * bSegment, bCy - bUy * bSegment, bCz - bUz * bSegment,
+                bCx + bUx * bSegment, bCy + bUy * bSegment, bCz + bUz * bSegment, null) <= (aInner + bInner) * (aInner + bInner)) {
+            return true;
+        }
+        return Gjk.cylinderIntersectsCylinder(aCx, aCy, aCz, aUx, aUy, aUz, aHalfLength, aRadius,
+                bCx, bCy, bCz, bUx, bUy, bUz, bHalfLength, bRadius);
+    }
+
+    /**
+     * Conservative test between two solid cylinders: it never misses an intersection but may report cylinders whose rims
+     * only come close. It is a separating axis test over both axes, their cross product and the offset between the
+     * centers made perpendicular to each axis, followed by the capsules enclosing them.
+     */
+    public static boolean cylinderMayIntersectCylinder(double aCx, double aCy, double aCz, double aUx, double aUy, double aUz,
+                                                       double aHalfLength, double aRadius,
+                                                       double bCx, double bCy, double bCz, double bUx, double bUy, double bUz,
+                                                       double bHalfLength, double bRadius) {
+        double tx = bCx - aCx, ty = bCy - aCy, tz = bCz - aCz;
+        double along = dot(tx, ty, tz, aUx, aUy, aUz);
+        double other = dot(tx, ty, tz, bUx, bUy, bUz);
+        return !separatesCylinders(aUx, aUy, aUz, tx, ty, tz, aUx, aUy, aUz, aHalfLength, aRadius, bUx, bUy, bUz, bHalfLength, bRadius)
+                && !separatesCylinders(bUx, bUy, bUz, tx, ty, tz, aUx, aUy, aUz, aHalfLength, aRadius, bUx, bUy, bUz, bHalfLength, bRadius)
+                && !separatesCylinders(aUy * bUz - aUz * bUy, aUz * bUx - aUx * bUz, aUx * bUy - aUy * bUx, tx, ty, tz,
+                aUx, aUy, aUz, aHalfLength, aRadius, bUx, bUy, bUz, bHalfLength, bRadius)
+                && !separatesCylinders(tx - aUx * along, ty - aUy * along, tz - aUz * along, tx, ty, tz,
+                aUx, aUy, aUz, aHalfLength, aRadius, bUx, bUy, bUz, bHalfLength, bRadius)
+                && !separatesCylinders(tx - bUx * other, ty - bUy * other, tz - bUz * other, tx, ty, tz,
+                aUx, aUy, aUz, aHalfLength, aRadius, bUx, bUy, bUz, bHalfLength, bRadius)
+                // Both cylinders lie within the capsules around their axes
+                && segmentDistanceSquared(aCx - aUx * aHalfLength, aCy - aUy * aHalfLength, aCz - aUz * aHalfLength,
+                aCx + aUx * aHalfLength, aCy + aUy * aHalfLength, aCz + aUz * aHalfLength,
+                bCx - bUx * bHalfLength, bCy - bUy * bHalfLength, bCz - bUz * bHalfLength,
+                bCx + bUx * bHalfLength, bCy + bUy * bHalfLength, bCz + bUz * bHalfLength, null) <= (aRadius + bRadius) * (aRadius + bRadius);
+    }
+
+    private static boolean separatesCylinders(double nx, double ny, double nz, double tx, double ty, double tz,
+                                              double aUx, double aUy, double aUz, double aHalfLength, double aRadius,
+                                              double bUx, double bUy, double bUz, double bHalfLength, double bRadius) {
+        double length = lengthSquared(nx, ny, nz);
+        if (length <= EPSILON) return false;
+        return Math.abs(dot(tx, ty, tz, nx, ny, nz)) > cylinderProjection(nx, ny, nz, length, aUx, aUy, aUz, aHalfLength, aRadius)
+                + cylinderProjection(nx, ny, nz, length, bUx, bUy, bUz, bHalfLength, bRadius);
+    }
+
+    /**
+     * Exact intersection of a segment with a solid cylinder: the radial quadratic clipped by the slab of the caps.
+     *
+     * @param direction unit direction of the segment
+     * @param result    optional array receiving the entry and exit distances on hit
+     */
+    public static boolean rayIntersectsCylinder(double ox, double oy, double oz, double dx, double dy, double dz, double length,
+                                                double cx, double cy, double cz, double ux, double uy, double uz,
+                                                double halfLength, double radius, double[] result) {
+        double entry = cylinderBound(ox, oy, oz, dx, dy, dz, length, cx, cy, cz, ux, uy, uz, halfLength, radius, false);
+        if (Double.isNaN(entry)) return false;
+        double exit = cylinderBound(ox, oy, oz, dx, dy, dz, length, cx, cy, cz, ux, uy, uz, halfLength, radius, true);
+        return interval(entry, exit, result);
+    }
+
+    // Entry or exit distance of the segment through the cylinder, NaN if it misses
+    private static double cylinderBound(double ox, double oy, double oz, double dx, double dy, double dz, double length,
+                                        double cx, double cy, double cz, double ux, double uy, double uz,
+                                        double halfLength, double radius, boolean exitBound) {
+        double mx = ox - cx, my = oy - cy, mz = oz - cz;
+        double axial = dot(mx, my, mz, ux, uy, uz);
+        double axialDirection = dot(dx, dy, dz, ux, uy, uz);
+        double entry = 0;
+        double exit = length;
+        if (Math.abs(axialDirection) < EPSILON) {
+            if (Math.abs(axial) > halfLength) return Double.NaN;
+        } else {
+            double t1 = (-halfLength - axial) / axialDirection;
+            double t2 = (halfLength - axial) / axialDirection;
+            entry = Math.max(entry, Math.min(t1, t2));
+            exit = Math.min(exit, Math.max(t1, t2));
+            if (entry > exit) return Double.NaN;
+        }
+        // Components perpendicular to the axis
+        double wx = mx - ux * axial, wy = my - uy * axial, wz = mz - uz * axial;
+        double vx = dx - ux * axialDirection, vy = dy - uy * axialDirection, vz = dz - uz * axialDirection;
+        double a = lengthSquared(vx, vy, vz);
+        double b = dot(wx, wy, wz, vx, vy, vz);
+        double c = lengthSquared(wx, wy, wz) - radius * radius;
+        if (a < EPSILON) {
+            if (c > 0) return Double.NaN;
+        } else {
+            double discriminant = b * b - a * c;
+            if (discriminant < 0) return Double.NaN;
+            double root = Math.sqrt(discriminant);
+            entry = Math.max(entry, (-b - root) / a);
+            exit = Math.min(exit, (-b + root) / a);
+        }
+        if (entry > exit) return Double.NaN;
+        return exitBound ? exit : entry;
+    }
+
+    // Entry or exit distance of the segment through the sphere, NaN if it misses
+    private static double sphereBound(double ox, double oy, double oz, double dx, double dy, double dz, double length,
+                                      double cx, double cy, double cz, double radius, boolean exitBound) {
+        double mx = ox - cx, my = oy - cy, mz = oz - cz;
+        double b = dot(mx, my, mz, dx, dy, dz);
+        double c = lengthSquared(mx, my, mz) - radius * radius;
+        double discriminant = b * b - c;
+        if (discriminant < 0) return Double.NaN;
+        double root = Math.sqrt(discriminant);
+        double entry = Math.max(0, -b - root);
+        double exit = Math.min(length, -b + root);
+        if (entry > exit) return Double.NaN;
+        return exitBound ? exit : entry;
+    }
+
+    /**
+     * Exact intersection of a segment with a capsule, the union of its cylindrical body and its two end spheres.
+     *
+     * @param direction unit direction of the segment
+     * @param result    optional array receiving the entry and exit distances on hit
+     */
+    public static boolean rayIntersectsCapsule(double ox, double oy, double oz, double dx, double dy, double dz, double length,
+                                               double ax, double ay, double az, double bx, double by, double bz,
+                                               double radius, double[] result) {
+        double entry = Double.POSITIVE_INFINITY;
+        double exit = Double.NEGATIVE_INFINITY;
+        double axisX = bx - ax, axisY = by - ay, axisZ = bz - az;
+        double axisLength = Math.sqrt(lengthSquared(axisX, axisY, axisZ));
+        if (axisLength > EPSILON) {
+            double cx = (ax + bx) * 0.5, cy = (ay + by) * 0.5, cz = (az + bz) * 0.5;
+            double ux = axisX / axisLength, uy = axisY / axisLength, uz = axisZ / axisLength;
+            double bodyEntry = cylinderBound(ox, oy, oz, dx, dy, dz, length, cx, cy, cz, ux, uy, uz, axisLength * 0.5, radius, false);
+            if (!Double.isNaN(bodyEntry)) {
+                entry = bodyEntry;
+                exit = cylinderBound(ox, oy, oz, dx, dy, dz, length, cx, cy, cz, ux, uy, uz, axisLength * 0.5, radius, true);
+            }
+        }
+        double sphereEntry = sphereBound(ox, oy, oz, dx, dy, dz, length, ax, ay, az, radius, false);
+        if (!Double.isNaN(sphereEntry)) {
+            entry = Math.min(entry, sphereEntry);
+            exit = Math.max(exit, sphereBound(ox, oy, oz, dx, dy, dz, length, ax, ay, az, radius, true));
+        }
+        sphereEntry = sphereBound(ox, oy, oz, dx, dy, dz, length, bx, by, bz, radius, false);
+        if (!Double.isNaN(sphereEntry)) {
+            entry = Math.min(entry, sphereEntry);
+            exit = Math.max(exit, sphereBound(ox, oy, oz, dx, dy, dz, length, bx, by, bz, radius, true));
+        }
+        return entry <= exit && interval(entry, exit, result);
+    }
+
+    /**
+     * First contact of a sphere moving along {@code center + t * direction, t in [0, length]} with an axis aligned box.
+     * The ray is cast against the box grown by the radius, a hit in an edge or corner region of the grown box is
+     * refined against the capsules of the box edges, see Ericson "Real-Time Collision Detection" 5.5.7.
+     *
+     * @param direction unit direction of the motion
+     * @param result    optional array receiving the distance travelled before contact on hit
+     */
+    public static boolean sweptSphereIntersectsAabb(double cx, double cy, double cz, double radius,
+                                                    double dx, double dy, double dz, double length,
+                                                    double minX, double minY, double minZ, double maxX, double maxY, double maxZ,
+                                                    double[] result) {
+        double t = slabEntry(cx, cy, cz, dx, dy, dz, length, minX - radius, minY - radius, minZ - radius,
+                maxX + radius, maxY + radius, maxZ + radius, false);
+        if (Double.isNaN(t)) return false;
+        double px = cx + dx * t, py = cy + dy * t, pz = cz + dz * t;
+        // Bit per axis on which the entry point lies below or above the original box
+        int below = (px < minX ? 1 : 0) | (py < minY ? 2 : 0) | (pz < minZ ? 4 : 0);
+        int above = (px > maxX ? 1 : 0) | (py > maxY ? 2 : 0) | (pz > maxZ ? 4 : 0);
+        int outside = below | above;
+        if (Integer.bitCount(outside) <= 1) return contact(t, result); // Face region, the grown box is exact there
+        double best = Double.POSITIVE_INFINITY;
+        if (outside == 7) {
+            // Corner region, the contact is on one of the three edges meeting at the corner
+            for (int axis = 1; axis <= 4; axis <<= 1) {
+                best = Math.min(best, edgeContact(cx, cy, cz, dx, dy, dz, length, radius,
+                        minX, minY, minZ, maxX, maxY, maxZ, above, above ^ axis));
+            }
+        } else {
+            best = edgeContact(cx, cy, cz, dx, dy, dz, length, radius,
+                    minX, minY, minZ, maxX, maxY, maxZ, below ^ 7, above);
+        }
+        return best != Double.POSITIVE_INFINITY && contact(best, result);
+    }
+
+    // Entry distance into the capsule around the box edge between two corners, infinite if it misses
+    private static double edgeContact(double ox, double oy, double oz, double dx, double dy, double dz, double length, double radius,
+                                      double minX, double minY, double minZ, double maxX, double maxY, double maxZ,
+                                      int from, int to) {
+        double ax = (from & 1) != 0 ? maxX : minX, ay = (from & 2) != 0 ? maxY : minY, az = (from & 4) != 0 ? maxZ : minZ;
+        double bx = (to & 1) != 0 ? maxX : minX, by = (to & 2) != 0 ? maxY : minY, bz = (to & 4) != 0 ? maxZ : minZ;
+        // Only one of the coordinates differs, so the edge runs along an axis and its length is that difference
+        double ux = bx - ax, uy = by - ay, uz = bz - az;
+        double axisLength = Math.abs(ux + uy + uz);
+        double entry = Double.POSITIVE_INFINITY;
+        if (axisLength > EPSILON) {
+            double body = cylinderBound(ox, oy, oz, dx, dy, dz, length, (ax + bx) * 0.5, (ay + by) * 0.5, (az + bz) * 0.5,
+                    ux / axisLength, uy / axisLength, uz / axisLength, axisLength * 0.5, radius, false);
+            if (!Double.isNaN(body)) entry = body;
+        }
+        double cap = sphereBound(ox, oy, oz, dx, dy, dz, length, ax, ay, az, radius, false);
+        if (!Double.isNaN(cap)) entry = Math.min(entry, cap);
+        cap = sphereBound(ox, oy, oz, dx, dy, dz, length, bx, by, bz, radius, false);
+        if (!Double.isNaN(cap)) entry = Math.min(entry, cap);
+        return entry;
+    }
+
+    /**
+     * First contact of an axis aligned box moving along {@code t * direction, t in [0, length]} with another one, the
+     * slab test of the center of the moving box against the other box grown by its half extents. Touching boxes are
+     * separated as in {@link #aabbIntersectsAabb}, so a box resting on or sliding along a face, or moving away from
+     * it, does not report a contact.
+     *
+     * @param direction unit direction of the motion
+     * @param result    optional array receiving the distance travelled before contact on hit
+     */
+    public static boolean sweptAabbIntersectsAabb(double aMinX, double aMinY, double aMinZ, double aMaxX, double aMaxY, double aMaxZ,
+                                                  double dx, double dy, double dz, double length,
+                                                  double bMinX, double bMinY, double bMinZ, double bMaxX, double bMaxY, double bMaxZ,
+                                                  double[] result) {
+        double ex = (aMaxX - aMinX) * 0.5, ey = (aMaxY - aMinY) * 0.5, ez = (aMaxZ - aMinZ) * 0.5;
+        double entry = slabEntry(aMinX + ex, aMinY + ey, aMinZ + ez, dx, dy, dz, length,
+                bMinX - ex, bMinY - ey, bMinZ - ez, bMaxX + ex, bMaxY + ey, bMaxZ + ez, true);
+        return !Double.isNaN(entry) && contact(entry, result);
+    }
+
+    // Entry distance of the segment into the box, NaN if it misses. An open box only counts points strictly inside,
+    // so a segment running along a face or leaving it from the start misses
+    private static double slabEntry(double ox, double oy, double oz, double dx, double dy, double dz, double length,
+                                    double minX, double minY, double minZ, double maxX, double maxY, double maxZ,
+                                    boolean open) {
+        double near = Double.NEGATIVE_INFINITY;
+        double far = Double.POSITIVE_INFINITY;
+        if (Math.abs(dx) < EPSILON) {
+            if (open ? ox <= minX || ox >= maxX : ox < minX || ox > maxX) return Double.NaN;
+        } else {
+            double t1 = (minX - ox) / dx;
+            double t2 = (maxX - ox) / dx;
+            near = Math.min(t1, t2);
+            far = Math.max(t1, t2);
+        }
+        if (Math.abs(dy) < EPSILON) {
+            if (open ? oy <= minY || oy >= maxY : oy < minY || oy > maxY) return Double.NaN;
+        } else {
+            double t1 = (minY - oy) / dy;
+            double t2 = (maxY - oy) / dy;
+            near = Math.max(near, Math.min(t1, t2));
+            far = Math.min(far, Math.max(t1, t2));
+        }
+        if (Math.abs(dz) < EPSILON) {
+            if (open ? oz <= minZ || oz >= maxZ : oz < minZ || oz > maxZ) return Double.NaN;
+        } else {
+            double t1 = (minZ - oz) / dz;
+            double t2 = (maxZ - oz) / dz;
+            near = Math.max(near, Math.min(t1, t2));
+            far = Math.min(far, Math.max(t1, t2));
+        }
+        boolean hit = open ? near < far && near < length && far > 0 : near <= far && near <= length && far >= 0;
+        return hit ? Math.max(near, 0) : Double.NaN;
+    }
+
+    /**
+     * First contact of a capsule moving along {@code t * direction, t in [0, length]} with an axis aligned box.
+     * The distance between the moving segment and the box is convex in t, so the contact is bracketed by a golden
+     * section search for the closest approach and refined by bisection. Contacts shallower than
+     * {@code tolerance} may be missed and the reported distance stops short of the contact by at most that much.
+     *
+     * @param direction unit direction of the motion
+     * @param result    optional array receiving the distance travelled before contact on hit
+     */
+    public static boolean sweptCapsuleIntersectsAabb(double ax, double ay, double az, double bx, double by, double bz, double radius,
+                                                     double dx, double dy, double dz, double length,
+                                                     double minX, double minY, double minZ, double maxX, double maxY, double maxZ,
+                                                     double tolerance, double[] result) {
+        double gap = capsuleGap(ax, ay, az, bx, by, bz, radius, dx, dy, dz, 0, minX, minY, minZ, maxX, maxY, maxZ);
+        if (gap <= 0) return contact(0, result);
+        if (gap > length) return false; // The gap closes by at most the distance travelled
+        double low = 0;
+        double high = length;
+        if (capsuleGap(ax, ay, az, bx, by, bz, radius, dx, dy, dz, length, minX, minY, minZ, maxX, maxY, maxZ) > 0) {
+            // Both ends are apart, look for a point in contact around the closest approach
+            double from = 0;
+            double to = length;
+            double left = to - GOLDEN_RATIO * (to - from);
+            double right = from + GOLDEN_RATIO * (to - from);
+            double leftGap = capsuleGap(ax, ay, az, bx, by, bz, radius, dx, dy, dz, left, minX, minY, minZ, maxX, maxY, maxZ);
+            double rightGap = capsuleGap(ax, ay, az, bx, by, bz, radius, dx, dy, dz, right, minX, minY, minZ, maxX, maxY, maxZ);
+            while (true) {
+                if (leftGap <= 0 || rightGap <= 0) {
+                    high = leftGap <= 0 ? left : right;
+                    break;
+                }
+                if (to - from <= tolerance) return false;
+                if (leftGap < rightGap) {
+                    to = right;
+                    right = left;
+                    rightGap = leftGap;
+                    left = to - GOLDEN_RATIO * (to - from);
+                    leftGap = capsuleGap(ax, ay, az, bx, by, bz, radius, dx, dy, dz, left, minX, minY, minZ, maxX, maxY, maxZ);
+                } else {
+                    from = left;
+                    left = right;
+                    leftGap = rightGap;
+                    right = from + GOLDEN_RATIO * (to - from);
+                    rightGap = capsuleGap(ax, ay, az, bx, by, bz, radius, dx, dy, dz, right, minX, minY, minZ, maxX, maxY, maxZ);
+                }
+            }
+        }
+        // The gap is positive at low and not at high, and decreasing in between
+        while (high - low > tolerance) {
+            double middle = (low + high) * 0.5;
+            if (capsuleGap(ax, ay, az, bx, by, bz, radius, dx, dy, dz, middle, minX, minY, minZ, maxX, maxY, maxZ) > 0) {
+                low = middle;
+            } else {
+                high = middle;
+            }
+        }
+        return contact(low, result);
+    }
+
+    // Distance between the surface of the capsule moved by t along the direction and the box, negative when they overlap
+    private static double capsuleGap(double ax, double ay, double az, double bx, double by, double bz, double radius,
+                                     double dx, double dy, double dz, double t,
+                                     double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        double ox = dx * t, oy = dy * t, oz = dz * t;
+        return Math.sqrt(segmentDistanceSquaredToAabb(ax + ox, ay + oy, az + oz, bx + ox, by + oy, bz + oz,
+                minX, minY, minZ, maxX, maxY, maxZ)) - radius;
+    }
+
+    public static double clamp(double value, double min, double max) {
+        return value < min ? min : Math.min(value, max);
+    }
+
+    private static boolean contact(double distance, double[] result) {
+        if (result != null) result[0] = distance;
+        return true;
+    }
+
+    private static boolean interval(double entry, double exit, double[] result) {
+        if (result != null) {
+            result[0] = entry;
+            result[1] = exit;
+        }
+        return true;
+    }
+}
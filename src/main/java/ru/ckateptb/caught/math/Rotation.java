@@ -24,6 +24,7 @@ public class Rotation {
     private final double q1;
     private final double q2;
     private final double q3;
+    private volatile double[] matrix; // Row major, see matrix()
 
     private Rotation(double q0, double q1, double q2, double q3) {
         this.q0 = q0;
@@ -51,35 +52,48 @@ public class Rotation {
      * @return the 3x3 matrix corresponding to the instance
      */
     public double[][] getMatrix() {
-        // products
-        double q0q0 = q0 * q0;
-        double q0q1 = q0 * q1;
-        double q0q2 = q0 * q2;
-        double q0q3 = q0 * q3;
-        double q1q1 = q1 * q1;
-        double q1q2 = q1 * q2;
-        double q1q3 = q1 * q3;
-        double q2q2 = q2 * q2;
-        double q2q3 = q2 * q3;
-        double q3q3 = q3 * q3;
-        // create the matrix
-        double[][] m = new double[3][];
-        m[0] = new double[3];
-        m[1] = new double[3];
-        m[2] = new double[3];
-
-        m[0][0] = 2.0 * (q0q0 + q1q1) - 1.0;
-        m[1][0] = 2.0 * (q1q2 - q0q3);
-        m[2][0] = 2.0 * (q1q3 + q0q2);
-
-        m[0][1] = 2.0 * (q1q2 + q0q3);
-        m[1][1] = 2.0 * (q0q0 + q2q2) - 1.0;
-        m[2][1] = 2.0 * (q2q3 - q0q1);
-
-        m[0][2] = 2.0 * (q1q3 - q0q2);
-        m[1][2] = 2.0 * (q2q3 + q0q1);
-        m[2][2] = 2.0 * (q0q0 + q3q3) - 1.0;
-        return m;
+        double[] matrix = matrix();
+        return new double[][]{
+                {matrix[0], matrix[1], matrix[2]},
+                {matrix[3], matrix[4], matrix[5]},
+                {matrix[6], matrix[7], matrix[8]}
+        };
+    }
+
+    /**
+     * Copies the matrix of {@link #getMatrix()} row by row.
+     *
+     * @param out an array with nine items to put the matrix to
+     * @return out
+     */
+    public double[] copyMatrix(final double[] out) {
+        System.arraycopy(matrix(), 0, out, 0, 9);
+        return out;
+    }
+
+    // Computed once, rows are the images of the unit vectors under the inverse rotation
+    private double[] matrix() {
+        double[] matrix = this.matrix;
+        if (matrix == null) {
+            // products
+            double q0q0 = q0 * q0;
+            double q0q1 = q0 * q1;
+            double q0q2 = q0 * q2;
+            double q0q3 = q0 * q3;
+            double q1q1 = q1 * q1;
+            double q1q2 = q1 * q2;
+            double q1q3 = q1 * q3;
+            double q2q2 = q2 * q2;
+            double q2q3 = q2 * q3;
+            double q3q3 = q3 * q3;
+            matrix = new double[]{
+                    2.0 * (q0q0 + q1q1) - 1.0, 2.0 * (q1q2 + q0q3), 2.0 * (q1q3 - q0q2),
+                    2.0 * (q1q2 - q0q3), 2.0 * (q0q0 + q2q2) - 1.0, 2.0 * (q2q3 + q0q1),
+                    2.0 * (q1q3 + q0q2), 2.0 * (q2q3 - q0q1), 2.0 * (q0q0 + q3q3) - 1.0
+            };
+            this.matrix = matrix;
+        }
+        return matrix;
     }
 
     /**
@@ -171,4 +185,57 @@ public class Rotation {
                 -r.q2 * q0 + r.q0 * q2 + (r.q3 * q1 - r.q1 * q3),
                 -r.q3 * q0 + r.q0 * q3 + (r.q1 * q2 - r.q2 * q1));
     }
-}
\ No newline at end of file
+
+    /**
+     * @return the inverse rotation, the same as {@link #applyInverseTo(ImmutableVector)} for every vector
+     */
+    public Rotation revert() {
+        return new Rotation(-q0, q1, q2, q3);
+    }
+
+    /**
+     * Rotates the points of a buffer in place, one coordinate per array.
+     *
+     * @param from index of the first point
+     * @param to   index after the last point
+     */
+    public void applyTo(final double[] x, final double[] y, final double[] z, int from, int to) {
+        applyTo(x, y, z, from, to, 0, 0, 0);
+    }
+
+    /**
+     * Rotates the points of a buffer in place then translates them, one coordinate per array.
+     *
+     * @param from index of the first point
+     * @param to   index after the last point
+     */
+    public void applyTo(final double[] x, final double[] y, final double[] z, int from, int to, double dx, double dy, double dz) {
+        double[] m = matrix();
+        transform(x, y, z, from, to, m[0], m[1], m[2], m[3], m[4], m[5], m[6], m[7], m[8], dx, dy, dz);
+    }
+
+    /**
+     * Applies the inverse of the rotation to the points of a buffer in place, one coordinate per array.
+     *
+     * @param from index of the first point
+     * @param to   index after the last point
+     */
+    public void applyInverseTo(final double[] x, final double[] y, final double[] z, int from, int to) {
+        double[] m = matrix();
+        // The inverse of a rotation matrix is its transpose
+        transform(x, y, z, from, to, m[0], m[3], m[6], m[1], m[4], m[7], m[2], m[5], m[8], 0, 0, 0);
+    }
+
+    private static void transform(double[] x, double[] y, double[] z, int from, int to,
+                                  double m00, double m01, double m02, double m10, double m11, double m12,
+                                  double m20, double m21, double m22, double dx, double dy, double dz) {
+        for (int i = from; i < to; i++) {
+            double px = x[i];
+            double py = y[i];
+            double pz = z[i];
+            x[i] = m00 * px + m01 * py + m02 * pz + dx;
+            y[i] = m10 * px + m11 * py + m12 * pz + dy;
+            z[i] = m20 * px + m21 * py + m22 * pz + dz;
+        }
+    }
+}
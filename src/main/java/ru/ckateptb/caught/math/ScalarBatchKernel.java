@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.ckateptb.caught.math;
+
+/**
+ * Plain loops over {@link Intersections}, used when the vector API isn't available.
+ */
+final class ScalarBatchKernel implements BatchKernel {
+    @Override
+    public int aabbIntersectsAabbs(double qMinX, double qMinY, double qMinZ, double qMaxX, double qMaxY, double qMaxZ,
+                                   double[] minX, double[] minY, double[] minZ, double[] maxX, double[] maxY, double[] maxZ,
+                                   int count, long[] result) {
+        int hits = 0;
+        for (int i = 0; i < count; i++) {
+            if (Intersections.aabbIntersectsAabb(qMinX, qMinY, qMinZ, qMaxX, qMaxY, qMaxZ, minX[i], minY[i], minZ[i], maxX[i], maxY[i], maxZ[i])) {
+                result[i >>> 6] |= 1L << i;
+                hits++;
+            }
+        }
+        return hits;
+    }
+
+    @Override
+    public int sphereIntersectsAabbs(double cx, double cy, double cz, double radius,
+                                     double[] minX, double[] minY, double[] minZ, double[] maxX, double[] maxY, double[] maxZ,
+                                     int count, long[] result) {
+        int hits = 0;
+        for (int i = 0; i < count; i++) {
+            if (Intersections.sphereIntersectsAabb(cx, cy, cz, radius, minX[i], minY[i], minZ[i], maxX[i], maxY[i], maxZ[i])) {
+                result[i >>> 6] |= 1L << i;
+                hits++;
+            }
+        }
+        return hits;
+    }
+
+    @Override
+    public int rayIntersectsAabbs(double ox, double oy, double oz, double dx, double dy, double dz, double length, double radius,
+                                  double[] minX, double[] minY, double[] minZ, double[] maxX, double[] maxY, double[] maxZ,
+                                  int count, long[] result) {
+        int hits = 0;
+        for (int i = 0; i < count; i++) {
+            if (Intersections.rayIntersectsAabb(ox, oy, oz, dx, dy, dz, length, minX[i] - radius, minY[i] - radius, minZ[i] - radius,
+                    maxX[i] + radius, maxY[i] + radius, maxZ[i] + radius, null)) {
+                result[i >>> 6] |= 1L << i;
+                hits++;
+            }
+        }
+        return hits;
+    }
+}
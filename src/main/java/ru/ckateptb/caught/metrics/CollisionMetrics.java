@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.ckateptb.caught.metrics;
+
+/**
+ * Global switch of the query instrumentation. While no sink is installed queries only pay for one volatile read.
+ */
+public final class CollisionMetrics {
+    private static volatile CollisionMetricsSink sink;
+
+    private CollisionMetrics() {
+    }
+
+    /**
+     * @return the installed sink, or null when metrics are disabled
+     */
+    public static CollisionMetricsSink getSink() {
+        return sink;
+    }
+
+    /**
+     * @param sink receives every following query, null disables metrics
+     */
+    public static void setSink(CollisionMetricsSink sink) {
+        CollisionMetrics.sink = sink;
+    }
+}
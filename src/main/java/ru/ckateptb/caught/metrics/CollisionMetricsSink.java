@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.ckateptb.caught.metrics;
+
+/**
+ * Receives one record per collider query while installed with {@link CollisionMetrics#setSink(CollisionMetricsSink)}.
+ * Block queries may also run on worker threads, so implementations must be thread safe.
+ */
+@FunctionalInterface
+public interface CollisionMetricsSink {
+    /**
+     * @param query      the finished query
+     * @param shapeType  shape of the querying collider, see {@link ru.ckateptb.caught.collider.IntersectionMatrix}
+     * @param nanos      wall time of the query, callbacks included
+     * @param candidates entities or blocks that passed the broadphase and reached the exact test
+     * @param hits       candidates that passed the exact test
+     * @param voxels     block cells visited, 0 for entity and position queries
+     */
+    void record(CollisionQuery query, int shapeType, long nanos, int candidates, int hits, int voxels);
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.ckateptb.caught.metrics;
+
+/**
+ * Collider queries reported to a {@link CollisionMetricsSink}.
+ */
+public enum CollisionQuery {
+    /**
+     * {@link ru.ckateptb.caught.Collider#handleEntityCollision}
+     */
+    ENTITY,
+    /**
+     * {@link ru.ckateptb.caught.Collider#handleBlockCollisions}, on the main thread or off it
+     */
+    BLOCK,
+    /**
+     * {@link ru.ckateptb.caught.Collider#handlePositionCollisions}
+     */
+    POSITION,
+    /**
+     * {@link ru.ckateptb.caught.collider.RayCollider#getBlock}, on the main thread or off it
+     */
+    RAY_BLOCK,
+    /**
+     * {@link ru.ckateptb.caught.collider.RayCollider#getEntity}
+     */
+    RAY_ENTITY,
+    /**
+     * {@link ru.ckateptb.caught.sweep.Sweep}, blocks and entities of one sweep are reported together
+     */
+    SWEEP
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.ckateptb.caught.metrics;
+
+import ru.ckateptb.caught.collider.IntersectionMatrix;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Aggregates records per query and shape type, latencies go to a histogram with power of two buckets.
+ */
+public class HistogramMetricsSink implements CollisionMetricsSink {
+    private static final int TYPES = IntersectionMatrix.MAX_TYPES + 1; // Shifted by one for UNKNOWN
+    private static final CollisionQuery[] QUERIES = CollisionQuery.values();
+
+    private final AtomicReferenceArray<Stats> stats = new AtomicReferenceArray<>(QUERIES.length * TYPES);
+
+    @Override
+    public void record(CollisionQuery query, int shapeType, long nanos, int candidates, int hits, int voxels) {
+        int index = query.ordinal() * TYPES + shapeType + 1;
+        Stats entry = stats.get(index);
+        if (entry == null) {
+            stats.compareAndSet(index, null, new Stats(query, shapeType));
+            entry = stats.get(index);
+        }
+        entry.record(nanos, candidates, hits, voxels);
+    }
+
+    /**
+     * @return statistics of the query issued by the given shape type, null if it wasn't recorded yet
+     */
+    public Stats get(CollisionQuery query, int shapeType) {
+        return stats.get(query.ordinal() * TYPES + shapeType + 1);
+    }
+
+    /**
+     * @return statistics of every recorded query and shape type
+     */
+    public List<Stats> getAll() {
+        List<Stats> all = new ArrayList<>();
+        for (int i = 0; i < stats.length(); i++) {
+            Stats entry = stats.get(i);
+            if (entry != null) all.add(entry);
+        }
+        return all;
+    }
+
+    /**
+     * @return one line per recorded query and shape type
+     */
+    public List<String> report() {
+        List<String> lines = new ArrayList<>();
+        for (Stats entry : getAll()) {
+            lines.add(entry.toString());
+        }
+        return lines;
+    }
+
+    public void reset() {
+        for (int i = 0; i < stats.length(); i++) {
+            stats.set(i, null);
+        }
+    }
+
+    public static class Stats {
+        private static final int BUCKETS = 64;
+
+        private final CollisionQuery query;
+        private final int shapeType;
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+        private final LongAdder candidates = new LongAdder();
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder voxels = new LongAdder();
+        // Bucket i counts latencies in [2^(i-1), 2^i) nanoseconds
+        private final AtomicLongArray latencies = new AtomicLongArray(BUCKETS);
+
+        private Stats(CollisionQuery query, int shapeType) {
+            this.query = query;
+            this.shapeType = shapeType;
+        }
+
+        private void record(long nanos, int candidates, int hits, int voxels) {
+            this.calls.increment();
+            this.nanos.add(nanos);
+            this.candidates.add(candidates);
+            this.hits.add(hits);
+            this.voxels.add(voxels);
+            this.latencies.incrementAndGet(BUCKETS - Long.numberOfLeadingZeros(Math.max(nanos, 0)));
+        }
+
+        public CollisionQuery getQuery() {
+            return query;
+        }
+
+        public int getShapeType() {
+            return shapeType;
+        }
+
+        public long getCalls() {
+            return calls.sum();
+        }
+
+        public long getTotalNanos() {
+            return nanos.sum();
+        }
+
+        public long getCandidates() {
+            return candidates.sum();
+        }
+
+        public long getHits() {
+            return hits.sum();
+        }
+
+        public long getVoxels() {
+            return voxels.sum();
+        }
+
+        /**
+         * @return share of broadphase candidates that passed the exact test, low values mean the broadphase is loose
+         */
+        public double getHitRatio() {
+            long candidates = getCandidates();
+            return candidates == 0 ? 0 : (double) getHits() / candidates;
+        }
+
+        /**
+         * @param percentile in [0, 1]
+         * @return upper bound of the histogram bucket holding the percentile, in nanoseconds
+         */
+        public long getLatencyPercentile(double percentile) {
+            long total = 0;
+            long[] counts = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = latencies.get(i);
+                total += counts[i];
+            }
+            long rank = (long) Math.ceil(percentile * total);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= rank && seen > 0) return i == BUCKETS - 1 ? Long.MAX_VALUE : 1L << i;
+            }
+            return 0;
+        }
+
+        @Override
+        public String toString() {
+            long calls = getCalls();
+            return String.format("%s %s: calls=%d avg=%dns p50<%dns p99<%dns candidates=%d hits=%d ratio=%.3f voxels=%d",
+                    query, IntersectionMatrix.getTypeName(shapeType), calls, calls == 0 ? 0 : getTotalNanos() / calls,
+                    getLatencyPercentile(0.5), getLatencyPercentile(0.99), getCandidates(), getHits(), getHitRatio(), getVoxels());
+        }
+    }
+}
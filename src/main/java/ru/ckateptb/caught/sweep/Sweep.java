@@ -0,0 +1,317 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.ckateptb.caught.sweep;
+
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.entity.Entity;
+import org.bukkit.util.BoundingBox;
+import org.bukkit.util.Vector;
+import ru.ckateptb.caught.Collider;
+import ru.ckateptb.caught.block.BlockShape;
+import ru.ckateptb.caught.block.BlockShapeSource;
+import ru.ckateptb.caught.block.UnloadedChunkPolicy;
+import ru.ckateptb.caught.block.VoxelTraversal;
+import ru.ckateptb.caught.block.WorldBlockShapeSource;
+import ru.ckateptb.caught.broadphase.EntityBroadphase;
+import ru.ckateptb.caught.callback.CollisionCallbackResult;
+import ru.ckateptb.caught.collider.AxisAlignedBoundingBoxCollider;
+import ru.ckateptb.caught.collider.CapsuleCollider;
+import ru.ckateptb.caught.collider.IntersectionMatrix;
+import ru.ckateptb.caught.collider.SphereCollider;
+import ru.ckateptb.caught.math.ImmutableVector;
+import ru.ckateptb.caught.math.Intersections;
+import ru.ckateptb.caught.metrics.CollisionMetrics;
+import ru.ckateptb.caught.metrics.CollisionMetricsSink;
+import ru.ckateptb.caught.metrics.CollisionQuery;
+
+import java.util.Optional;
+import java.util.function.Predicate;
+
+/**
+ * Continuous collision queries: the earliest contact of a collider moving along a displacement, found in one pass over
+ * the volume it sweeps. Unlike discrete scans at sub-steps of the motion, a sweep can't tunnel through thin obstacles.
+ * <p>
+ * Spheres, axis aligned boxes and capsules can be swept, they translate without rotating. Blocks are visited in order
+ * of distance along the motion, so the walk stops soon after the first contact.
+ */
+public final class Sweep {
+    /**
+     * Precision of capsule sweeps, see {@link Intersections#sweptCapsuleIntersectsAabb}.
+     */
+    public static final double TOLERANCE = 1e-4;
+    // A step of the central voxel walk spans at most the diagonal of a voxel, see VoxelTraversal
+    private static final double STEP = Math.sqrt(3);
+
+    private Sweep() {
+    }
+
+    public static Optional<SweepHit> sweep(Collider collider, Vector displacement, boolean ignorePassable, boolean ignoreLiquids,
+                                           Predicate<Block> blockFilter, boolean livingOnly, boolean armorStandCollision,
+                                           Predicate<Entity> entityFilter) {
+        return sweep(collider, displacement, ignorePassable, ignoreLiquids, UnloadedChunkPolicy.LOAD, blockFilter,
+                livingOnly, armorStandCollision, entityFilter);
+    }
+
+    /**
+     * Sweeps against blocks first, then against the entities met before the first block.
+     *
+     * @param policy how blocks of unloaded chunks are treated
+     * @return the earliest contact with a block or an entity
+     */
+    public static Optional<SweepHit> sweep(Collider collider, Vector displacement, boolean ignorePassable, boolean ignoreLiquids,
+                                           UnloadedChunkPolicy policy, Predicate<Block> blockFilter,
+                                           boolean livingOnly, boolean armorStandCollision, Predicate<Entity> entityFilter) {
+        Motion motion = Motion.of(collider, displacement);
+        Search search = new Search(motion.length);
+        CollisionMetricsSink sink = CollisionMetrics.getSink();
+        long start = sink == null ? 0 : System.nanoTime();
+        blocks(motion, search, ignorePassable, ignoreLiquids, policy, blockFilter);
+        entities(motion, search, livingOnly, armorStandCollision, entityFilter);
+        return finish(motion, search, sink, start);
+    }
+
+    /**
+     * @param policy how blocks of unloaded chunks are treated, blocks of unloaded chunks skip the filter
+     * @return the earliest contact with a block
+     */
+    public static Optional<SweepHit> sweepBlocks(Collider collider, Vector displacement, boolean ignorePassable, boolean ignoreLiquids,
+                                                 UnloadedChunkPolicy policy, Predicate<Block> filter) {
+        Motion motion = Motion.of(collider, displacement);
+        Search search = new Search(motion.length);
+        CollisionMetricsSink sink = CollisionMetrics.getSink();
+        long start = sink == null ? 0 : System.nanoTime();
+        blocks(motion, search, ignorePassable, ignoreLiquids, policy, filter);
+        return finish(motion, search, sink, start);
+    }
+
+    /**
+     * @return the earliest contact with an entity
+     */
+    public static Optional<SweepHit> sweepEntities(Collider collider, Vector displacement, boolean livingOnly, boolean armorStandCollision,
+                                                   Predicate<Entity> filter) {
+        Motion motion = Motion.of(collider, displacement);
+        Search search = new Search(motion.length);
+        CollisionMetricsSink sink = CollisionMetrics.getSink();
+        long start = sink == null ? 0 : System.nanoTime();
+        entities(motion, search, livingOnly, armorStandCollision, filter);
+        return finish(motion, search, sink, start);
+    }
+
+    private static void blocks(Motion motion, Search search, boolean ignorePassable, boolean ignoreLiquids,
+                               UnloadedChunkPolicy policy, Predicate<Block> filter) {
+        World world = motion.world;
+        int minHeight = world.getMinHeight();
+        int maxHeight = world.getMaxHeight();
+        BlockShapeSource source = new WorldBlockShapeSource(world, policy);
+        // Shapes taller than a block (fences, walls) reach into the voxel above their own
+        double reach = motion.reach + BlockShape.MAX_HEIGHT - 1;
+        VoxelTraversal.traverse(motion.cx, motion.cy, motion.cz, motion.dx, motion.dy, motion.dz, motion.length, reach,
+                (x, y, z, distance, face) -> {
+                    search.voxels++;
+                    // The walk visits voxels in order of entry distance, up to reordering within one of its steps
+                    if (distance > search.distance + STEP) return CollisionCallbackResult.END;
+                    if (distance > search.distance || y < minHeight || y >= maxHeight) return CollisionCallbackResult.CONTINUE;
+                    BlockShape shape = source.getShape(x, y, z);
+                    if (shape == null) return CollisionCallbackResult.CONTINUE;
+                    if (shape.isPassable()) {
+                        if (shape.isLiquid()) {
+                            if (ignoreLiquids) return CollisionCallbackResult.CONTINUE;
+                        } else if (ignorePassable) return CollisionCallbackResult.CONTINUE;
+                    }
+                    if (shape.isEmpty()) return CollisionCallbackResult.CONTINUE;
+                    search.candidates++;
+                    double impact = motion.impact(x + shape.getMinX(), y + shape.getMinY(), z + shape.getMinZ(),
+                            x + shape.getMaxX(), y + shape.getMaxY(), z + shape.getMaxZ());
+                    if (!search.isCloser(impact)) return CollisionCallbackResult.CONTINUE;
+                    if (!WorldBlockShapeSource.accepts(filter, shape, world.getBlockAt(x, y, z))) return CollisionCallbackResult.CONTINUE;
+                    search.distance = impact;
+                    search.shape = shape;
+                    search.entity = null;
+                    search.x = x;
+                    search.y = y;
+                    search.z = z;
+                    return CollisionCallbackResult.CONTINUE;
+                });
+    }
+
+    private static void entities(Motion motion, Search search, boolean livingOnly, boolean armorStandCollision,
+                                 Predicate<Entity> filter) {
+        // Bounds of the collider over the part of the motion before the closest contact so far
+        double ox = motion.dx * search.distance, oy = motion.dy * search.distance, oz = motion.dz * search.distance;
+        ImmutableVector min = motion.min.add(Math.min(ox, 0), Math.min(oy, 0), Math.min(oz, 0));
+        ImmutableVector max = motion.max.add(Math.max(ox, 0), Math.max(oy, 0), Math.max(oz, 0));
+        filter = filter.and(Collider.entityFilter(livingOnly, armorStandCollision));
+        EntityBroadphase broadphase = EntityBroadphase.getActive();
+        if (broadphase != null) {
+            broadphase.query(motion.world, min, max, filter, (entity, bounds) -> {
+                entity(motion, search, entity, bounds.getMinX(), bounds.getMinY(), bounds.getMinZ(),
+                        bounds.getMaxX(), bounds.getMaxY(), bounds.getMaxZ());
+                return CollisionCallbackResult.CONTINUE;
+            });
+        } else {
+            for (Entity entity : motion.world.getNearbyEntities(BoundingBox.of(min, max), filter)) {
+                BoundingBox bounds = entity.getBoundingBox();
+                entity(motion, search, entity, bounds.getMinX(), bounds.getMinY(), bounds.getMinZ(),
+                        bounds.getMaxX(), bounds.getMaxY(), bounds.getMaxZ());
+            }
+        }
+    }
+
+    private static void entity(Motion motion, Search search, Entity entity,
+                               double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        search.candidates++;
+        double impact = motion.impact(minX, minY, minZ, maxX, maxY, maxZ);
+        if (!search.isCloser(impact)) return;
+        search.distance = impact;
+        search.shape = null;
+        search.entity = entity;
+    }
+
+    private static Optional<SweepHit> finish(Motion motion, Search search, CollisionMetricsSink sink, long start) {
+        SweepHit hit = null;
+        if (search.shape != null || search.entity != null) {
+            double distance = search.distance;
+            double time = motion.length > 0 ? distance / motion.length : 0;
+            ImmutableVector position = motion.collider.getPosition().add(motion.dx * distance, motion.dy * distance, motion.dz * distance);
+            hit = search.entity != null
+                    ? new SweepHit(motion.world, distance, time, position, search.entity)
+                    : new SweepHit(motion.world, distance, time, position, search.x, search.y, search.z, search.shape);
+        }
+        if (sink != null) {
+            sink.record(CollisionQuery.SWEEP, motion.collider.getShapeType(), System.nanoTime() - start,
+                    search.candidates, hit == null ? 0 : 1, search.voxels);
+        }
+        return Optional.ofNullable(hit);
+    }
+
+    // Closest contact found so far, with the counts reported to the metrics sink
+    private static final class Search {
+        private double distance;
+        private BlockShape shape;
+        private Entity entity;
+        private int x;
+        private int y;
+        private int z;
+        private int voxels;
+        private int candidates;
+
+        private Search(double length) {
+            this.distance = length;
+        }
+
+        // A contact at the very end of the motion still counts while nothing else was found
+        private boolean isCloser(double impact) {
+            return shape == null && entity == null ? impact <= distance : impact < distance;
+        }
+    }
+
+    /**
+     * Collider moving along a unit direction, with the first contact against a box computed by the swept tests of
+     * {@link Intersections}.
+     */
+    private abstract static class Motion {
+        final Collider collider;
+        final World world;
+        final ImmutableVector min;
+        final ImmutableVector max;
+        // Center and half size of the collider bounds, the voxel walk follows the center
+        final double cx, cy, cz;
+        final double reach;
+        final double dx, dy, dz;
+        final double length;
+        final double[] result = new double[1];
+
+        Motion(Collider collider, Vector displacement) {
+            this.collider = collider;
+            this.world = collider.getWorld();
+            this.min = collider.getMin();
+            this.max = collider.getMax();
+            this.cx = (min.getX() + max.getX()) * 0.5;
+            this.cy = (min.getY() + max.getY()) * 0.5;
+            this.cz = (min.getZ() + max.getZ()) * 0.5;
+            this.reach = Math.max(max.getX() - min.getX(), Math.max(max.getY() - min.getY(), max.getZ() - min.getZ())) * 0.5;
+            this.length = displacement.length();
+            // Without motion any direction works, the tests then only check the start position
+            Vector direction = length > 0 ? displacement.clone().multiply(1 / length) : ImmutableVector.PLUS_J;
+            this.dx = direction.getX();
+            this.dy = direction.getY();
+            this.dz = direction.getZ();
+        }
+
+        static Motion of(Collider collider, Vector displacement) {
+            return switch (collider.getShapeType()) {
+                case IntersectionMatrix.SPHERE -> new SphereMotion((SphereCollider) collider, displacement);
+                case IntersectionMatrix.AXIS_ALIGNED_BOUNDING_BOX -> new BoxMotion((AxisAlignedBoundingBoxCollider) collider, displacement);
+                case IntersectionMatrix.CAPSULE -> new CapsuleMotion((CapsuleCollider) collider, displacement);
+                default -> throw new IllegalArgumentException("Only spheres, axis aligned boxes and capsules can be swept");
+            };
+        }
+
+        /**
+         * @return the distance travelled before touching the box, NaN if the motion ends first
+         */
+        abstract double impact(double minX, double minY, double minZ, double maxX, double maxY, double maxZ);
+    }
+
+    private static final class SphereMotion extends Motion {
+        private final double radius;
+
+        private SphereMotion(SphereCollider collider, Vector displacement) {
+            super(collider, displacement);
+            this.radius = collider.radius;
+        }
+
+        @Override
+        double impact(double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+            return Intersections.sweptSphereIntersectsAabb(cx, cy, cz, radius, dx, dy, dz, length,
+                    minX, minY, minZ, maxX, maxY, maxZ, result) ? result[0] : Double.NaN;
+        }
+    }
+
+    private static final class BoxMotion extends Motion {
+        private BoxMotion(AxisAlignedBoundingBoxCollider collider, Vector displacement) {
+            super(collider, displacement);
+        }
+
+        @Override
+        double impact(double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+            return Intersections.sweptAabbIntersectsAabb(min.getX(), min.getY(), min.getZ(), max.getX(), max.getY(), max.getZ(),
+                    dx, dy, dz, length, minX, minY, minZ, maxX, maxY, maxZ, result) ? result[0] : Double.NaN;
+        }
+    }
+
+    private static final class CapsuleMotion extends Motion {
+        private final ImmutableVector start;
+        private final ImmutableVector end;
+        private final double radius;
+
+        private CapsuleMotion(CapsuleCollider collider, Vector displacement) {
+            super(collider, displacement);
+            this.start = collider.getStart();
+            this.end = collider.getEnd();
+            this.radius = collider.getRadius();
+        }
+
+        @Override
+        double impact(double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+            return Intersections.sweptCapsuleIntersectsAabb(start.getX(), start.getY(), start.getZ(), end.getX(), end.getY(), end.getZ(),
+                    radius, dx, dy, dz, length, minX, minY, minZ, maxX, maxY, maxZ, TOLERANCE, result) ? result[0] : Double.NaN;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.ckateptb.caught.sweep;
+
+import lombok.Getter;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.entity.Entity;
+import ru.ckateptb.caught.block.BlockShape;
+import ru.ckateptb.caught.math.ImmutableVector;
+
+/**
+ * Earliest contact found by a {@link Sweep}, either with a block or with an entity.
+ */
+@Getter
+public class SweepHit {
+    private final World world;
+    private final double distance; // Distance travelled before the contact.
+    private final double time; // Fraction of the displacement travelled before the contact, in [0, 1].
+    private final ImmutableVector position; // Position of the collider at the contact.
+    private final int x;
+    private final int y;
+    private final int z;
+    private final BlockShape shape; // Shape of the block hit, null for entities.
+    private final Entity entity; // Entity hit, null for blocks.
+
+    SweepHit(World world, double distance, double time, ImmutableVector position, int x, int y, int z, BlockShape shape) {
+        this.world = world;
+        this.distance = distance;
+        this.time = time;
+        this.position = position;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.shape = shape;
+        this.entity = null;
+    }
+
+    SweepHit(World world, double distance, double time, ImmutableVector position, Entity entity) {
+        this.world = world;
+        this.distance = distance;
+        this.time = time;
+        this.position = position;
+        this.x = 0;
+        this.y = 0;
+        this.z = 0;
+        this.shape = null;
+        this.entity = entity;
+    }
+
+    public boolean isBlock() {
+        return shape != null;
+    }
+
+    /**
+     * @return the block hit, null for entities
+     */
+    public Block getBlock() {
+        return shape == null ? null : world.getBlockAt(x, y, z);
+    }
+}
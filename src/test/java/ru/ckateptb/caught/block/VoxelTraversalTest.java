@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package ru.ckateptb.caught.block;
+
+import org.bukkit.block.BlockFace;
+import org.junit.jupiter.api.Test;
+import ru.ckateptb.caught.callback.CollisionCallbackResult;
+import ru.ckateptb.caught.math.Intersections;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VoxelTraversalTest {
+    private final Random random = new Random(3);
+
+    @Test
+    void edgeTieStepsThroughFaceNeighbours() {
+        double diagonal = Math.sqrt(0.5);
+        List<Voxel> voxels = traverse(0.5, 0.5, 0.5, diagonal, diagonal, 0, 3, 0);
+        // Crossing the edge at x = y = 1 steps along x first, then along y at the same distance
+        assertEquals(List.of("0 0 0 SELF", "1 0 0 WEST", "1 1 0 DOWN", "2 1 0 WEST", "2 2 0 DOWN"), describe(voxels));
+        assertEquals(voxels.get(1).distance, voxels.get(2).distance);
+        assertWalk(voxels);
+    }
+
+    @Test
+    void cornerTieStepsThroughFaceNeighbours() {
+        double diagonal = Math.sqrt(1.0 / 3);
+        List<Voxel> voxels = traverse(0.5, 0.5, 0.5, -diagonal, -diagonal, -diagonal, 1.5, 0);
+        assertEquals(List.of("0 0 0 SELF", "-1 0 0 EAST", "-1 -1 0 UP", "-1 -1 -1 SOUTH"), describe(voxels));
+        assertWalk(voxels);
+    }
+
+    @Test
+    void segmentEndingOnABoundaryStopsThere() {
+        List<Voxel> voxels = traverse(0.5, 0.5, 0.5, 1, 0, 0, 0.5, 0);
+        // Only touched at the last point, the voxel behind the face is not entered
+        assertEquals(List.of("0 0 0 SELF"), describe(voxels));
+    }
+
+    @Test
+    void thinRayVisitsCrossedVoxelsInOrder() {
+        for (int i = 0; i < 300; i++) {
+            double ox = random.nextDouble() * 6 - 3, oy = random.nextDouble() * 6 - 3, oz = random.nextDouble() * 6 - 3;
+            double[] direction = direction(i);
+            double length = random.nextDouble() * 12;
+            List<Voxel> voxels = traverse(ox, oy, oz, direction[0], direction[1], direction[2], length, 0);
+            assertWalk(voxels);
+            Set<Long> visited = keys(voxels);
+            double[] interval = new double[2];
+            for (int x = -16; x < 16; x++) {
+                for (int y = -16; y < 16; y++) {
+                    for (int z = -16; z < 16; z++) {
+                        // Voxels the ray only touches on an edge or a corner may be skipped
+                        if (!Intersections.rayIntersectsAabb(ox, oy, oz, direction[0], direction[1], direction[2], length,
+                                x, y, z, x + 1, y + 1, z + 1, interval) || interval[1] - interval[0] <= 1e-9) continue;
+                        assertTrue(visited.contains(key(x, y, z)), "missed voxel " + x + " " + y + " " + z);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void thickRayVisitsEveryGrownVoxelOnce() {
+        for (int i = 0; i < 300; i++) {
+            double ox = random.nextDouble() * 6 - 3, oy = random.nextDouble() * 6 - 3, oz = random.nextDouble() * 6 - 3;
+            double[] direction = direction(i);
+            double length = random.nextDouble() * 12;
+            // Whole radii make grown boxes meet exactly on the voxel grid
+            double radius = i % 2 == 0 ? random.nextDouble() * 2 : 1 + random.nextInt(2);
+            List<Voxel> voxels = traverse(ox, oy, oz, direction[0], direction[1], direction[2], length, radius);
+            Set<Long> visited = keys(voxels);
+            assertEquals(voxels.size(), visited.size(), "a voxel was reported twice");
+            Set<Long> expected = new HashSet<>();
+            for (int x = -20; x < 20; x++) {
+                for (int y = -20; y < 20; y++) {
+                    for (int z = -20; z < 20; z++) {
+                        if (Intersections.rayIntersectsAabb(ox, oy, oz, direction[0], direction[1], direction[2], length,
+                                x - radius, y - radius, z - radius, x + 1 + radius, y + 1 + radius, z + 1 + radius, null)) {
+                            expected.add(key(x, y, z));
+                        }
+                    }
+                }
+            }
+            assertEquals(expected, visited);
+        }
+    }
+
+    // Random unit direction, some of them axis aligned or within a plane
+    private double[] direction(int i) {
+        double dx = i % 11 == 0 ? 0 : random.nextGaussian();
+        double dy = i % 7 == 0 ? 0 : random.nextGaussian();
+        double dz = i % 13 == 0 && dx != 0 ? 0 : random.nextGaussian();
+        double length = Math.sqrt(dx * dx + dy * dy + dz * dz);
+        return new double[]{dx / length, dy / length, dz / length};
+    }
+
+    // Entered in order of distance, each voxel once and each one a face neighbour of the previous one
+    private static void assertWalk(List<Voxel> voxels) {
+        assertEquals(BlockFace.SELF, voxels.get(0).face);
+        for (int i = 1; i < voxels.size(); i++) {
+            Voxel previous = voxels.get(i - 1);
+            Voxel voxel = voxels.get(i);
+            assertTrue(voxel.distance >= previous.distance, "voxels out of order");
+            assertEquals(1, Math.abs(voxel.x - previous.x) + Math.abs(voxel.y - previous.y) + Math.abs(voxel.z - previous.z),
+                    "voxels not face neighbours");
+            assertEquals(previous.x, voxel.x + voxel.face.getModX());
+            assertEquals(previous.y, voxel.y + voxel.face.getModY());
+            assertEquals(previous.z, voxel.z + voxel.face.getModZ());
+        }
+        assertEquals(voxels.size(), keys(voxels).size(), "a voxel was reported twice");
+    }
+
+    private static List<Voxel> traverse(double ox, double oy, double oz, double dx, double dy, double dz, double length, double radius) {
+        List<Voxel> voxels = new ArrayList<>();
+        VoxelTraversal.traverse(ox, oy, oz, dx, dy, dz, length, radius, (x, y, z, distance, face) -> {
+            voxels.add(new Voxel(x, y, z, face, distance));
+            return CollisionCallbackResult.CONTINUE;
+        });
+        return voxels;
+    }
+
+    private static List<String> describe(List<Voxel> voxels) {
+        return voxels.stream().map(voxel -> voxel.x + " " + voxel.y + " " + voxel.z + " " + voxel.face).toList();
+    }
+
+    private static Set<Long> keys(List<Voxel> voxels) {
+        Set<Long> keys = new HashSet<>();
+        for (Voxel voxel : voxels) {
+            keys.add(key(voxel.x, voxel.y, voxel.z));
+        }
+        return keys;
+    }
+
+    private static long key(int x, int y, int z) {
+        return ((long) (x & 0xFFFFF) << 40) | ((long) (y & 0xFFFFF) << 20) | (z & 0xFFFFF);
+    }
+
+    private record Voxel(int x, int y, int z, BlockFace face, double distance) {
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package ru.ckateptb.caught.broadphase;
+
+import org.bukkit.World;
+import org.bukkit.util.Vector;
+import org.junit.jupiter.api.Test;
+import ru.ckateptb.caught.Collider;
+import ru.ckateptb.caught.callback.CollisionCallbackResult;
+import ru.ckateptb.caught.collider.AxisAlignedBoundingBoxCollider;
+import ru.ckateptb.caught.collider.SphereCollider;
+
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ColliderTreeTest {
+    private final World world = (World) Proxy.newProxyInstance(World.class.getClassLoader(), new Class<?>[]{World.class}, (proxy, method, args) -> switch (method.getName()) {
+        case "equals" -> proxy == args[0];
+        case "hashCode" -> System.identityHashCode(proxy);
+        case "toString", "getName" -> "world";
+        default -> throw new UnsupportedOperationException(method.getName());
+    });
+    private final Random random = new Random(11);
+
+    @Test
+    void sortedInsertsStayBalanced() {
+        ColliderTree tree = new ColliderTree(world);
+        // Without rotations every box would pair with the previous subtree and the height would grow linearly
+        for (int i = 0; i < 1024; i++) {
+            tree.insert(box(i * 2, 0, 0, 1));
+        }
+        assertTrue(tree.getHeight() <= 2 * 10, "height " + tree.getHeight());
+    }
+
+    @Test
+    void removalsStayBalanced() {
+        ColliderTree tree = new ColliderTree(world);
+        int[] ids = new int[1024];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = tree.insert(box(i * 2, 0, 0, 1));
+        }
+        // Removing one end leaves the other side of the root much deeper until it is rotated up
+        for (int i = 0; i < ids.length - 64; i++) {
+            assertTrue(tree.remove(ids[i]));
+        }
+        assertEquals(64, tree.size());
+        assertTrue(tree.getHeight() <= 2 * 6, "height " + tree.getHeight());
+    }
+
+    @Test
+    void queriesMatchBruteForce() {
+        ColliderTree tree = new ColliderTree(world);
+        Map<Integer, Collider> colliders = new HashMap<>();
+        for (int i = 0; i < 300; i++) {
+            Collider collider = randomCollider();
+            colliders.put(tree.insert(collider), collider);
+        }
+        for (int round = 0; round < 50; round++) {
+            // Moves, removals and inserts all rebalance the tree
+            for (int id : Set.copyOf(colliders.keySet())) {
+                int action = random.nextInt(10);
+                if (action < 5) {
+                    Collider moved = colliders.get(id).at(randomPoint());
+                    tree.update(id, moved, new Vector(random.nextGaussian(), 0, random.nextGaussian()));
+                    colliders.put(id, moved);
+                } else if (action == 5) {
+                    tree.remove(id);
+                    colliders.remove(id);
+                }
+            }
+            while (colliders.size() < 300) {
+                Collider collider = randomCollider();
+                colliders.put(tree.insert(collider), collider);
+            }
+            assertEquals(colliders.size(), tree.size());
+            for (int query = 0; query < 20; query++) {
+                Collider region = randomCollider();
+                Set<Integer> expected = new HashSet<>();
+                colliders.forEach((id, collider) -> {
+                    if (region.intersects(collider)) expected.add(id);
+                });
+                Set<Integer> found = new HashSet<>();
+                tree.query(region, id -> {
+                    assertTrue(found.add(id), "collider " + id + " visited twice");
+                    return CollisionCallbackResult.CONTINUE;
+                });
+                assertEquals(expected, found);
+            }
+        }
+    }
+
+    @Test
+    void pairsMatchBruteForce() {
+        ColliderTree tree = new ColliderTree(world);
+        Map<Integer, Collider> colliders = new HashMap<>();
+        for (int i = 0; i < 200; i++) {
+            Collider collider = randomCollider();
+            colliders.put(tree.insert(collider), collider);
+        }
+        Set<Long> expected = new HashSet<>();
+        colliders.forEach((a, first) -> colliders.forEach((b, second) -> {
+            if (a < b && first.intersects(second)) expected.add(pair(a, b));
+        }));
+        Set<Long> found = new HashSet<>();
+        tree.queryPairs((a, b) -> {
+            assertTrue(found.add(pair(Math.min(a, b), Math.max(a, b))), "pair visited twice");
+            return CollisionCallbackResult.CONTINUE;
+        });
+        assertEquals(expected, found);
+    }
+
+    private Collider randomCollider() {
+        Vector point = randomPoint();
+        if (random.nextBoolean()) {
+            return new SphereCollider(world, point, 0.2 + random.nextDouble() * 2);
+        }
+        return box(point.getX(), point.getY(), point.getZ(), 0.2 + random.nextDouble() * 2);
+    }
+
+    private Vector randomPoint() {
+        return new Vector(random.nextDouble() * 40 - 20, random.nextDouble() * 10, random.nextDouble() * 40 - 20);
+    }
+
+    private AxisAlignedBoundingBoxCollider box(double x, double y, double z, double size) {
+        return new AxisAlignedBoundingBoxCollider(world, new Vector(0, 0, 0), new Vector(size, size, size), new Vector(x, y, z));
+    }
+
+    private static long pair(int a, int b) {
+        return ((long) a << 32) | b;
+    }
+}
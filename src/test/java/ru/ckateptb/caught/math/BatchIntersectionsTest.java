@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package ru.ckateptb.caught.math;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The vector kernel must give the same bits as the scalar one, including for boxes touching the query and for counts
+ * that leave a partial vector.
+ */
+class BatchIntersectionsTest {
+    private static final int MAX_COUNT = 150;
+
+    private final Random random = new Random(42);
+    private final BatchKernel scalar = new ScalarBatchKernel();
+    private final double[] minX = new double[MAX_COUNT];
+    private final double[] minY = new double[MAX_COUNT];
+    private final double[] minZ = new double[MAX_COUNT];
+    private final double[] maxX = new double[MAX_COUNT];
+    private final double[] maxY = new double[MAX_COUNT];
+    private final double[] maxZ = new double[MAX_COUNT];
+    private final long[] expected = new long[BatchIntersections.words(MAX_COUNT)];
+    private final long[] actual = new long[BatchIntersections.words(MAX_COUNT)];
+
+    @Test
+    void runsOnTheVectorApi() {
+        assertTrue(BatchIntersections.isVectorized(), "the vector kernel should load with jdk.incubator.vector");
+    }
+
+    @Test
+    void aabbMatchesScalar() {
+        for (int i = 0; i < 500; i++) {
+            int count = fill();
+            double x = coordinate(), y = coordinate(), z = coordinate();
+            double ex = size(), ey = size(), ez = size();
+            clear();
+            int hits = scalar.aabbIntersectsAabbs(x, y, z, x + ex, y + ey, z + ez, minX, minY, minZ, maxX, maxY, maxZ, count, expected);
+            assertEquals(hits, BatchIntersections.aabbIntersectsAabbs(x, y, z, x + ex, y + ey, z + ez,
+                    minX, minY, minZ, maxX, maxY, maxZ, count, actual));
+            assertArrayEquals(expected, actual);
+        }
+    }
+
+    @Test
+    void sphereMatchesScalar() {
+        for (int i = 0; i < 500; i++) {
+            int count = fill();
+            double x = coordinate(), y = coordinate(), z = coordinate();
+            double radius = size();
+            clear();
+            int hits = scalar.sphereIntersectsAabbs(x, y, z, radius, minX, minY, minZ, maxX, maxY, maxZ, count, expected);
+            assertEquals(hits, BatchIntersections.sphereIntersectsAabbs(x, y, z, radius, minX, minY, minZ, maxX, maxY, maxZ, count, actual));
+            assertArrayEquals(expected, actual);
+        }
+    }
+
+    @Test
+    void rayMatchesScalar() {
+        for (int i = 0; i < 500; i++) {
+            int count = fill();
+            double x = coordinate(), y = coordinate(), z = coordinate();
+            // Axis aligned directions hit the parallel slab branch
+            double dx = i % 5 == 0 ? 0 : random.nextGaussian();
+            double dy = i % 7 == 0 ? 0 : random.nextGaussian();
+            double dz = random.nextGaussian();
+            double length = Math.sqrt(dx * dx + dy * dy + dz * dz);
+            double radius = i % 2 == 0 ? 0 : size();
+            clear();
+            int hits = scalar.rayIntersectsAabbs(x, y, z, dx / length, dy / length, dz / length, 20, radius,
+                    minX, minY, minZ, maxX, maxY, maxZ, count, expected);
+            assertEquals(hits, BatchIntersections.rayIntersectsAabbs(x, y, z, dx / length, dy / length, dz / length, 20, radius,
+                    minX, minY, minZ, maxX, maxY, maxZ, count, actual));
+            assertArrayEquals(expected, actual);
+        }
+    }
+
+    // Boxes on a half block grid, so that queries often touch them exactly
+    private int fill() {
+        int count = 1 + random.nextInt(MAX_COUNT);
+        for (int i = 0; i < count; i++) {
+            minX[i] = coordinate();
+            minY[i] = coordinate();
+            minZ[i] = coordinate();
+            maxX[i] = minX[i] + size();
+            maxY[i] = minY[i] + size();
+            maxZ[i] = minZ[i] + size();
+        }
+        return count;
+    }
+
+    private double coordinate() {
+        return (random.nextInt(40) - 20) * 0.5;
+    }
+
+    private double size() {
+        return (1 + random.nextInt(8)) * 0.5;
+    }
+
+    private void clear() {
+        Arrays.fill(expected, 0);
+        Arrays.fill(actual, 0);
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package ru.ckateptb.caught.math;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The exact cylinder tests against the distance from points sampled in the cylinder, shapes closer than the sampling
+ * step are not checked.
+ */
+class CylinderIntersectionsTest {
+    private static final double SAMPLING = 0.03;
+
+    private final Random random = new Random(5);
+
+    @Test
+    void obbMatchesSampling() {
+        int tightened = 0;
+        for (int i = 0; i < 500; i++) {
+            double[] center = point(), axis = unit();
+            double halfLength = 0.05 + random.nextDouble(), radius = 0.05 + random.nextDouble();
+            double[] basis = basis();
+            double ex = 0.1 + random.nextDouble(), ey = 0.1 + random.nextDouble(), ez = 0.1 + random.nextDouble();
+            boolean hit = Intersections.cylinderIntersectsObb(center[0], center[1], center[2], axis[0], axis[1], axis[2],
+                    halfLength, radius, 0, 0, 0, basis, ex, ey, ez);
+            double distance = sampledDistance(center, axis, halfLength, radius,
+                    (x, y, z) -> Intersections.distanceSquaredToObb(x, y, z, 0, 0, 0, basis, ex, ey, ez));
+            check(hit, distance);
+            if (!hit && Intersections.cylinderMayIntersectObb(center[0], center[1], center[2], axis[0], axis[1], axis[2],
+                    halfLength, radius, 0, 0, 0, basis, ex, ey, ez)) {
+                tightened++;
+            }
+        }
+        // Some boxes near the rim pass the conservative test
+        assertTrue(tightened > 0);
+    }
+
+    @Test
+    void cylinderMatchesSampling() {
+        for (int i = 0; i < 500; i++) {
+            double[] center = point(), axis = unit(), other = unit();
+            double halfLength = 0.05 + random.nextDouble(), radius = 0.05 + random.nextDouble();
+            double otherHalfLength = 0.05 + random.nextDouble(), otherRadius = 0.05 + random.nextDouble();
+            boolean hit = Intersections.cylinderIntersectsCylinder(center[0], center[1], center[2], axis[0], axis[1], axis[2],
+                    halfLength, radius, 0, 0, 0, other[0], other[1], other[2], otherHalfLength, otherRadius);
+            assertEquals(hit, Intersections.cylinderIntersectsCylinder(0, 0, 0, other[0], other[1], other[2], otherHalfLength, otherRadius,
+                    center[0], center[1], center[2], axis[0], axis[1], axis[2], halfLength, radius), "not symmetric");
+            double distance = sampledDistance(center, axis, halfLength, radius,
+                    (x, y, z) -> Intersections.distanceSquaredToCylinder(x, y, z, 0, 0, 0, other[0], other[1], other[2], otherHalfLength, otherRadius));
+            check(hit, distance);
+        }
+    }
+
+    private void check(boolean hit, double distance) {
+        if (distance <= 0) assertTrue(hit, "missed an intersection");
+        if (distance > SAMPLING) assertFalse(hit, "reported shapes " + distance + " apart");
+    }
+
+    // Smallest distance from points spread through the cylinder to the other shape
+    private static double sampledDistance(double[] center, double[] axis, double halfLength, double radius, Distance distance) {
+        double[] u = perpendicular(axis);
+        double[] v = {axis[1] * u[2] - axis[2] * u[1], axis[2] * u[0] - axis[0] * u[2], axis[0] * u[1] - axis[1] * u[0]};
+        double best = Double.POSITIVE_INFINITY;
+        for (int i = 0; i <= 40; i++) {
+            double t = -halfLength + 2 * halfLength * i / 40;
+            for (int j = 0; j <= 10; j++) {
+                double r = radius * j / 10;
+                for (int k = 0; k < 72; k++) {
+                    double cos = Math.cos(2 * Math.PI * k / 72) * r, sin = Math.sin(2 * Math.PI * k / 72) * r;
+                    best = Math.min(best, distance.squared(center[0] + axis[0] * t + u[0] * cos + v[0] * sin,
+                            center[1] + axis[1] * t + u[1] * cos + v[1] * sin, center[2] + axis[2] * t + u[2] * cos + v[2] * sin));
+                }
+            }
+        }
+        return Math.sqrt(best);
+    }
+
+    private static double[] perpendicular(double[] axis) {
+        double[] other = Math.abs(axis[0]) < 0.9 ? new double[]{1, 0, 0} : new double[]{0, 1, 0};
+        double along = Intersections.dot(other[0], other[1], other[2], axis[0], axis[1], axis[2]);
+        return normalize(other[0] - axis[0] * along, other[1] - axis[1] * along, other[2] - axis[2] * along);
+    }
+
+    private double[] basis() {
+        double[] first = unit();
+        double[] second = perpendicular(first);
+        return new double[]{first[0], first[1], first[2], second[0], second[1], second[2],
+                first[1] * second[2] - first[2] * second[1], first[2] * second[0] - first[0] * second[2], first[0] * second[1] - first[1] * second[0]};
+    }
+
+    private double[] point() {
+        return new double[]{random.nextDouble() * 4 - 2, random.nextDouble() * 4 - 2, random.nextDouble() * 4 - 2};
+    }
+
+    private double[] unit() {
+        return normalize(random.nextGaussian(), random.nextGaussian(), random.nextGaussian());
+    }
+
+    private static double[] normalize(double x, double y, double z) {
+        double length = Math.sqrt(Intersections.lengthSquared(x, y, z));
+        return new double[]{x / length, y / length, z / length};
+    }
+
+    private interface Distance {
+        double squared(double x, double y, double z);
+    }
+}
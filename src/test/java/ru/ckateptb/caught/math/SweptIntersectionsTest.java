@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package ru.ckateptb.caught.math;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Sweeps must agree with the discrete test repeated along the motion: a shape that overlaps the box at some step by
+ * more than {@link #MARGIN} is hit no later than that step, and the reported contact touches the box within the margin.
+ */
+class SweptIntersectionsTest {
+    private static final int STEPS = 2000;
+    private static final double MARGIN = 1e-3;
+
+    private final Random random = new Random(7);
+    private final double[] result = new double[1];
+
+    @Test
+    void sphereMatchesSubsteps() {
+        for (int i = 0; i < 2000; i++) {
+            Motion motion = new Motion(random);
+            double radius = random.nextDouble() * 1.2;
+            boolean hit = Intersections.sweptSphereIntersectsAabb(motion.x, motion.y, motion.z, radius,
+                    motion.dx, motion.dy, motion.dz, motion.length, motion.minX, motion.minY, motion.minZ,
+                    motion.maxX, motion.maxY, motion.maxZ, result);
+            check(motion, hit, (x, y, z, margin) -> margin + radius >= 0
+                    && Intersections.sphereIntersectsAabb(x, y, z, radius + margin, motion.minX, motion.minY, motion.minZ,
+                    motion.maxX, motion.maxY, motion.maxZ));
+        }
+    }
+
+    @Test
+    void aabbMatchesSubsteps() {
+        for (int i = 0; i < 2000; i++) {
+            Motion motion = new Motion(random);
+            double ex = 0.01 + random.nextDouble(), ey = 0.01 + random.nextDouble(), ez = 0.01 + random.nextDouble();
+            boolean hit = Intersections.sweptAabbIntersectsAabb(motion.x - ex, motion.y - ey, motion.z - ez,
+                    motion.x + ex, motion.y + ey, motion.z + ez, motion.dx, motion.dy, motion.dz, motion.length,
+                    motion.minX, motion.minY, motion.minZ, motion.maxX, motion.maxY, motion.maxZ, result);
+            check(motion, hit, (x, y, z, margin) -> Intersections.aabbIntersectsAabb(
+                    x - ex - margin, y - ey - margin, z - ez - margin, x + ex + margin, y + ey + margin, z + ez + margin,
+                    motion.minX, motion.minY, motion.minZ, motion.maxX, motion.maxY, motion.maxZ));
+        }
+    }
+
+    @Test
+    void capsuleMatchesSubsteps() {
+        for (int i = 0; i < 2000; i++) {
+            Motion motion = new Motion(random);
+            double radius = 0.05 + random.nextDouble();
+            double ax = random.nextGaussian() * 0.7, ay = random.nextGaussian() * 0.7, az = random.nextGaussian() * 0.7;
+            boolean hit = Intersections.sweptCapsuleIntersectsAabb(motion.x - ax, motion.y - ay, motion.z - az,
+                    motion.x + ax, motion.y + ay, motion.z + az, radius, motion.dx, motion.dy, motion.dz, motion.length,
+                    motion.minX, motion.minY, motion.minZ, motion.maxX, motion.maxY, motion.maxZ, MARGIN * 0.1, result);
+            check(motion, hit, (x, y, z, margin) -> {
+                double reach = Math.max(0, radius + margin);
+                return Intersections.segmentDistanceSquaredToAabb(x - ax, y - ay, z - az, x + ax, y + ay, z + az,
+                        motion.minX, motion.minY, motion.minZ, motion.maxX, motion.maxY, motion.maxZ) <= reach * reach;
+            });
+        }
+    }
+
+    @Test
+    void slidingBoxDoesNotHit() {
+        // Resting on the top face of the other box, then sliding along it and lifting off
+        assertFalse(Intersections.sweptAabbIntersectsAabb(0, 1, 0, 1, 2, 1, 1, 0, 0, 5, -3, 0, -3, 3, 1, 3, result));
+        assertFalse(Intersections.sweptAabbIntersectsAabb(0, 1, 0, 1, 2, 1, 0, 1, 0, 5, -3, 0, -3, 3, 1, 3, result));
+        assertTrue(Intersections.sweptAabbIntersectsAabb(0, 1, 0, 1, 2, 1, 0, -1, 0, 5, -3, 0, -3, 3, 1, 3, result));
+    }
+
+    private void check(Motion motion, boolean hit, Overlap overlap) {
+        double first = firstOverlap(motion, overlap);
+        if (!Double.isNaN(first)) {
+            assertTrue(hit, () -> "missed a contact at " + first + " of " + motion);
+            assertTrue(result[0] <= first + 1e-9, () -> "contact at " + result[0] + " after an overlap at " + first + " of " + motion);
+        }
+        if (hit) {
+            double t = result[0];
+            assertTrue(t >= 0 && t <= motion.length, () -> "contact at " + t + " outside of " + motion);
+            assertTrue(overlap.test(motion.x + motion.dx * t, motion.y + motion.dy * t, motion.z + motion.dz * t, MARGIN),
+                    () -> "contact at " + t + " does not touch the box of " + motion);
+        }
+    }
+
+    // First step at which the shape shrunk by the margin overlaps the box, NaN if none does
+    private static double firstOverlap(Motion motion, Overlap overlap) {
+        for (int step = 0; step <= STEPS; step++) {
+            double t = motion.length * step / STEPS;
+            if (overlap.test(motion.x + motion.dx * t, motion.y + motion.dy * t, motion.z + motion.dz * t, -MARGIN)) {
+                return t;
+            }
+        }
+        return Double.NaN;
+    }
+
+    private interface Overlap {
+        // Whether the shape at the given position, grown by the margin, overlaps the box
+        boolean test(double x, double y, double z, double margin);
+    }
+
+    private static final class Motion {
+        private final double x, y, z;
+        private final double dx, dy, dz;
+        private final double length;
+        private final double minX, minY, minZ;
+        private final double maxX, maxY, maxZ;
+
+        private Motion(Random random) {
+            minX = random.nextDouble() * 2 - 1;
+            minY = random.nextDouble() * 2 - 1;
+            minZ = random.nextDouble() * 2 - 1;
+            maxX = minX + 0.01 + random.nextDouble() * 1.5;
+            maxY = minY + 0.01 + random.nextDouble() * 1.5;
+            maxZ = minZ + 0.01 + random.nextDouble() * 1.5;
+            x = random.nextDouble() * 8 - 4;
+            y = random.nextDouble() * 8 - 4;
+            z = random.nextDouble() * 8 - 4;
+            double gx = random.nextGaussian(), gy = random.nextGaussian(), gz = random.nextGaussian();
+            double norm = Math.sqrt(gx * gx + gy * gy + gz * gz);
+            dx = gx / norm;
+            dy = gy / norm;
+            dz = gz / norm;
+            length = random.nextDouble() * 8;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("motion from (%f, %f, %f) along (%f, %f, %f) for %f against box (%f, %f, %f) (%f, %f, %f)",
+                    x, y, z, dx, dy, dz, length, minX, minY, minZ, maxX, maxY, maxZ);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2022 CKATEPTb <https://github.com/CKATEPTb>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.ckateptb.caught.math;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Vector API kernel, tests a full register of boxes per step and writes the lane mask straight into the bitset.
+ * Only loaded when the jdk.incubator.vector module is present, the tail shorter than a register uses the scalar tests.
+ */
+final class VectorBatchKernel implements BatchKernel {
+    // At most 8 lanes of doubles, so a register never straddles two bitset words
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    @Override
+    public int aabbIntersectsAabbs(double qMinX, double qMinY, double qMinZ, double qMaxX, double qMaxY, double qMaxZ,
+                                   double[] minX, double[] minY, double[] minZ, double[] maxX, double[] maxY, double[] maxZ,
+                                   int count, long[] result) {
+        int bound = SPECIES.loopBound(count);
+        int hits = 0;
+        for (int i = 0; i < bound; i += SPECIES.length()) {
+            VectorMask<Double> mask = DoubleVector.fromArray(SPECIES, minX, i).compare(VectorOperators.LT, qMaxX)
+                    .and(DoubleVector.fromArray(SPECIES, maxX, i).compare(VectorOperators.GT, qMinX))
+                    .and(DoubleVector.fromArray(SPECIES, minY, i).compare(VectorOperators.LT, qMaxY))
+                    .and(DoubleVector.fromArray(SPECIES, maxY, i).compare(VectorOperators.GT, qMinY))
+                    .and(DoubleVector.fromArray(SPECIES, minZ, i).compare(VectorOperators.LT, qMaxZ))
+                    .and(DoubleVector.fromArray(SPECIES, maxZ, i).compare(VectorOperators.GT, qMinZ));
+            hits += write(mask, i, result);
+        }
+        for (int i = bound; i < count; i++) {
+            if (Intersections.aabbIntersectsAabb(qMinX, qMinY, qMinZ, qMaxX, qMaxY, qMaxZ, minX[i], minY[i], minZ[i], maxX[i], maxY[i], maxZ[i])) {
+                result[i >>> 6] |= 1L << i;
+                hits++;
+            }
+        }
+        return hits;
+    }
+
+    @Override
+    public int sphereIntersectsAabbs(double cx, double cy, double cz, double radius,
+                                     double[] minX, double[] minY, double[] minZ, double[] maxX, double[] maxY, double[] maxZ,
+                                     int count, long[] result) {
+        int bound = SPECIES.loopBound(count);
+        int hits = 0;
+        DoubleVector centerX = DoubleVector.broadcast(SPECIES, cx);
+        DoubleVector centerY = DoubleVector.broadcast(SPECIES, cy);
+        DoubleVector centerZ = DoubleVector.broadcast(SPECIES, cz);
+        double radiusSquared = radius * radius;
+        for (int i = 0; i < bound; i += SPECIES.length()) {
+            // Distance outside the box along each axis, 0 inside its slab
+            DoubleVector dx = DoubleVector.fromArray(SPECIES, minX, i).sub(centerX).max(centerX.sub(DoubleVector.fromArray(SPECIES, maxX, i))).max(0);
+            DoubleVector dy = DoubleVector.fromArray(SPECIES, minY, i).sub(centerY).max(centerY.sub(DoubleVector.fromArray(SPECIES, maxY, i))).max(0);
+            DoubleVector dz = DoubleVector.fromArray(SPECIES, minZ, i).sub(centerZ).max(centerZ.sub(DoubleVector.fromArray(SPECIES, maxZ, i))).max(0);
+            VectorMask<Double> mask = dx.mul(dx).add(dy.mul(dy)).add(dz.mul(dz)).compare(VectorOperators.LE, radiusSquared);
+            hits += write(mask, i, result);
+        }
+        for (int i = bound; i < count; i++) {
+            if (Intersections.sphereIntersectsAabb(cx, cy, cz, radius, minX[i], minY[i], minZ[i], maxX[i], maxY[i], maxZ[i])) {
+                result[i >>> 6] |= 1L << i;
+                hits++;
+            }
+        }
+        return hits;
+    }
+
+    @Override
+    public int rayIntersectsAabbs(double ox, double oy, double oz, double dx, double dy, double dz, double length, double radius,
+                                  double[] minX, double[] minY, double[] minZ, double[] maxX, double[] maxY, double[] maxZ,
+                                  int count, long[] result) {
+        int bound = SPECIES.loopBound(count);
+        int hits = 0;
+        for (int i = 0; i < bound; i += SPECIES.length()) {
+            DoubleVector entry = DoubleVector.zero(SPECIES);
+            DoubleVector exit = DoubleVector.broadcast(SPECIES, length);
+            VectorMask<Double> mask = SPECIES.maskAll(true);
+            DoubleVector min = DoubleVector.fromArray(SPECIES, minX, i).sub(radius);
+            DoubleVector max = DoubleVector.fromArray(SPECIES, maxX, i).add(radius);
+            if (Math.abs(dx) < Intersections.EPSILON) {
+                mask = mask.and(min.compare(VectorOperators.LE, ox)).and(max.compare(VectorOperators.GE, ox));
+            } else {
+                DoubleVector t1 = min.sub(ox).div(dx);
+                DoubleVector t2 = max.sub(ox).div(dx);
+                entry = entry.max(t1.min(t2));
+                exit = exit.min(t1.max(t2));
+            }
+            min = DoubleVector.fromArray(SPECIES, minY, i).sub(radius);
+            max = DoubleVector.fromArray(SPECIES, maxY, i).add(radius);
+            if (Math.abs(dy) < Intersections.EPSILON) {
+                mask = mask.and(min.compare(VectorOperators.LE, oy)).and(max.compare(VectorOperators.GE, oy));
+            } else {
+                DoubleVector t1 = min.sub(oy).div(dy);
+                DoubleVector t2 = max.sub(oy).div(dy);
+                entry = entry.max(t1.min(t2));
+                exit = exit.min(t1.max(t2));
+            }
+            min = DoubleVector.fromArray(SPECIES, minZ, i).sub(radius);
+            max = DoubleVector.fromArray(SPECIES, maxZ, i).add(radius);
+            if (Math.abs(dz) < Intersections.EPSILON) {
+                mask = mask.and(min.compare(VectorOperators.LE, oz)).and(max.compare(VectorOperators.GE, oz));
+            } else {
+                DoubleVector t1 = min.sub(oz).div(dz);
+                DoubleVector t2 = max.sub(oz).div(dz);
+                entry = entry.max(t1.min(t2));
+                exit = exit.min(t1.max(t2));
+            }
+            hits += write(mask.and(entry.compare(VectorOperators.LE, exit)), i, result);
+        }
+        for (int i = bound; i < count; i++) {
+            if (Intersections.rayIntersectsAabb(ox, oy, oz, dx, dy, dz, length, minX[i] - radius, minY[i] - radius, minZ[i] - radius,
+                    maxX[i] + radius, maxY[i] + radius, maxZ[i] + radius, null)) {
+                result[i >>> 6] |= 1L << i;
+                hits++;
+            }
+        }
+        return hits;
+    }
+
+    private static int write(VectorMask<Double> mask, int index, long[] result) {
+        long bits = mask.toLong();
+        result[index >>> 6] |= bits << index;
+        return Long.bitCount(bits);
+    }
+}